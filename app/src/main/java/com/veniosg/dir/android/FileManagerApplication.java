@@ -29,7 +29,9 @@ import com.veniosg.dir.android.util.CopyHelper;
 
 import java.lang.reflect.Field;
 
+import static com.veniosg.dir.android.fragment.PreferenceFragment.getBackgroundBandwidthCap;
 import static com.veniosg.dir.android.misc.ThumbnailHelper.imageDecoder;
+import static com.veniosg.dir.mvvm.model.storage.IoArbiterInjector.ioArbiter;
 import static com.veniosg.dir.mvvm.model.storage.operation.ui.OperationStatusDisplayerInjector.operationStatusDisplayer;
 
 public class FileManagerApplication extends Application {
@@ -46,6 +48,7 @@ public class FileManagerApplication extends Application {
         mMimeTypes = MimeTypes.newInstance(this);
 
         operationStatusDisplayer(this).initChannels();
+        ioArbiter().setBandwidthCap(getBackgroundBandwidthCap(this));
         forceActionOverflow();
         initImageLoader();
     }
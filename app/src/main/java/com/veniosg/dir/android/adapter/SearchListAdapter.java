@@ -21,6 +21,7 @@ import android.support.v7.widget.RecyclerView;
 import android.view.ViewGroup;
 
 import com.veniosg.dir.android.adapter.FileListViewHolder.OnItemClickListener;
+import com.veniosg.dir.mvvm.model.search.PathList;
 
 import java.util.List;
 
@@ -36,7 +37,9 @@ public class SearchListAdapter extends RecyclerView.Adapter<SearchListViewHolder
     }
 
     public void notifyDataUpdated(@NonNull List<String> updatedData) {
-        int firstUpdatedIndex = firstDifferentItemIndex(data, updatedData);
+        int firstUpdatedIndex = updatedData instanceof PathList
+                ? ((PathList) updatedData).firstDifferentIndex(data)
+                : firstDifferentItemIndex(data, updatedData);
         if (firstUpdatedIndex != -1) {  // Lists are not equal
             int oldCount = data.size();
             int newCount = updatedData.size();
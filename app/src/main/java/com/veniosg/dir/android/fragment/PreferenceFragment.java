@@ -34,7 +34,10 @@ import static android.os.Environment.getExternalStorageState;
 import static android.preference.PreferenceManager.getDefaultSharedPreferences;
 import static com.veniosg.dir.IntentConstants.ACTION_REFRESH_THEME;
 import static com.veniosg.dir.android.ui.Themer.DIR;
+import static com.veniosg.dir.mvvm.model.storage.IoArbiter.UNLIMITED;
+import static com.veniosg.dir.mvvm.model.storage.IoArbiterInjector.ioArbiter;
 import static java.lang.Integer.parseInt;
+import static java.lang.Long.parseLong;
 
 public class PreferenceFragment extends android.preference.PreferenceFragment
         implements SharedPreferences.OnSharedPreferenceChangeListener {
@@ -44,6 +47,8 @@ public class PreferenceFragment extends android.preference.PreferenceFragment
     private static final String PREFS_SORTBY = "sortby";
     private static final String PREFS_ASCENDING = "ascending";
     protected static final String PREFS_THEME = "themeindex";
+    private static final String PREFS_BACKGROUND_BANDWIDTH = "backgroundbandwidth";
+    private static final String PREFS_VERIFY_COPIES = "verifycopies";
 
     @Override
     public void onCreate(Bundle savedInstanceState) {
@@ -57,6 +62,7 @@ public class PreferenceFragment extends android.preference.PreferenceFragment
         // Set the onSharedPreferenceChanged listener summary to its initial value
         changeListPreferenceSummaryToCurrentValue((ListPreference) findPreference(PREFS_SORTBY));
         changeListPreferenceSummaryToCurrentValue((ListPreference) findPreference(PREFS_THEME));
+        changeListPreferenceSummaryToCurrentValue((ListPreference) findPreference(PREFS_BACKGROUND_BANDWIDTH));
     }
 
     @Override
@@ -78,6 +84,9 @@ public class PreferenceFragment extends android.preference.PreferenceFragment
         } else if (key.equals(PREFS_THEME)) {
             changeListPreferenceSummaryToCurrentValue((ListPreference) findPreference(key));
             LocalBroadcastManager.getInstance(getActivity()).sendBroadcast(new Intent(ACTION_REFRESH_THEME));
+        } else if (key.equals(PREFS_BACKGROUND_BANDWIDTH)) {
+            changeListPreferenceSummaryToCurrentValue((ListPreference) findPreference(key));
+            ioArbiter().setBandwidthCap(getBackgroundBandwidthCap(getActivity()));
         }
     }
 
@@ -121,6 +130,20 @@ public class PreferenceFragment extends android.preference.PreferenceFragment
         return getDefaultSharedPreferences(context).getString(PREFS_DEFAULTPICKFILEPATH, defaultPath);
     }
 
+    /**
+     * @return Most bytes per second background transfers may move, or IoArbiter#UNLIMITED.
+     */
+    public static long getBackgroundBandwidthCap(Context context) {
+        /* entryValues must be a string-array while we need integers */
+        long kibPerSecond = parseLong(getDefaultSharedPreferences(context)
+                .getString(PREFS_BACKGROUND_BANDWIDTH, String.valueOf(UNLIMITED)));
+        return kibPerSecond * 1024;
+    }
+
+    public static boolean getVerifyCopies(Context context) {
+        return getDefaultSharedPreferences(context).getBoolean(PREFS_VERIFY_COPIES, false);
+    }
+
     /**
      * Get the current theme as selected in preferences.
      *
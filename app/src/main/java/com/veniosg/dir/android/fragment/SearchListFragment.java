@@ -28,12 +28,16 @@ import android.support.v7.widget.LinearLayoutManager;
 import android.support.v7.widget.RecyclerView;
 import android.view.KeyEvent;
 import android.view.LayoutInflater;
+import android.view.Menu;
+import android.view.MenuItem;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.EditText;
+import android.widget.PopupMenu;
 import android.widget.TextView;
 
 import com.veniosg.dir.R;
+import com.veniosg.dir.android.FileManagerApplication;
 import com.veniosg.dir.android.activity.FileManagerActivity;
 import com.veniosg.dir.android.adapter.FileListViewHolder.OnItemClickListener;
 import com.veniosg.dir.android.adapter.SearchListAdapter;
@@ -59,6 +63,12 @@ import static com.veniosg.dir.android.util.FileUtils.openFile;
 import static com.veniosg.dir.android.util.Logger.TAG_SEARCH;
 import static com.veniosg.dir.android.ui.Themer.getThemedResourceId;
 import static com.veniosg.dir.android.ui.widget.WaitingViewFlipper.PAGE_INDEX_CONTENT;
+import static com.veniosg.dir.mvvm.viewmodel.search.SearchViewModel.FIND_ANYTHING;
+import static com.veniosg.dir.mvvm.viewmodel.search.SearchViewModel.FIND_DIRECTORIES;
+import static com.veniosg.dir.mvvm.viewmodel.search.SearchViewModel.FIND_FILES;
+import static com.veniosg.dir.mvvm.viewmodel.search.SearchViewModel.MATCH_BEST_NAMES;
+import static com.veniosg.dir.mvvm.viewmodel.search.SearchViewModel.MATCH_CONTENTS;
+import static com.veniosg.dir.mvvm.viewmodel.search.SearchViewModel.MATCH_NAMES;
 import static java.lang.String.format;
 import static java.util.Collections.emptyList;
 import static java.util.Locale.ENGLISH;
@@ -70,6 +80,7 @@ public class SearchListFragment extends Fragment {
     private RecyclerView mRecyclerView;
     private EditText mQueryView;
     private View mUpView;
+    private View mOptionsView;
     private View mProgressIndicator;
     private SearchViewModel viewModel;
     private String hintText;
@@ -134,6 +145,7 @@ public class SearchListFragment extends Fragment {
         mFlipper = (WaitingViewFlipper) view.findViewById(R.id.flipper);
         mQueryView = (EditText) view.findViewById(R.id.searchQuery);
         mUpView = view.findViewById(R.id.homeAsUp);
+        mOptionsView = view.findViewById(R.id.searchOptions);
         mProgressIndicator = view.findViewById(R.id.progressHint);
 
         setupStaticViews();
@@ -167,6 +179,82 @@ public class SearchListFragment extends Fragment {
             }
         });
         mUpView.setOnClickListener(v -> getActivity().finish());
+        mOptionsView.setOnClickListener(this::showOptions);
+    }
+
+    private void showOptions(View anchor) {
+        PopupMenu popup = new PopupMenu(getContext(), anchor);
+        popup.inflate(R.menu.options_search);
+        Menu menu = popup.getMenu();
+        menu.findItem(matchTypeItemId()).setChecked(true);
+        menu.findItem(findTypeItemId()).setChecked(true);
+        menu.findItem(R.id.menu_including_archives).setChecked(viewModel.isIncludingArchives());
+        menu.findItem(R.id.menu_following_symlinks).setChecked(viewModel.isFollowingSymlinks());
+        menu.findItem(R.id.menu_skipping_clutter).setChecked(viewModel.isSkippingClutter());
+        popup.setOnMenuItemClickListener(this::onOptionSelected);
+        popup.show();
+    }
+
+    private boolean onOptionSelected(MenuItem item) {
+        boolean startedNewSearch;
+        switch (item.getItemId()) {
+            case R.id.menu_match_names:
+                startedNewSearch = viewModel.setMatchType(MATCH_NAMES);
+                break;
+            case R.id.menu_match_best_names:
+                startedNewSearch = viewModel.setMatchType(MATCH_BEST_NAMES);
+                break;
+            case R.id.menu_match_contents:
+                startedNewSearch = viewModel.setMatchType(MATCH_CONTENTS);
+                break;
+            case R.id.menu_find_anything:
+                startedNewSearch = viewModel.setFindType(FIND_ANYTHING);
+                break;
+            case R.id.menu_find_files:
+                startedNewSearch = viewModel.setFindType(FIND_FILES);
+                break;
+            case R.id.menu_find_directories:
+                startedNewSearch = viewModel.setFindType(FIND_DIRECTORIES);
+                break;
+            case R.id.menu_including_archives:
+                startedNewSearch = viewModel.setIncludingArchives(!item.isChecked());
+                break;
+            case R.id.menu_following_symlinks:
+                startedNewSearch = viewModel.setFollowingSymlinks(!item.isChecked());
+                break;
+            case R.id.menu_skipping_clutter:
+                startedNewSearch = viewModel.setSkippingClutter(!item.isChecked());
+                break;
+            default:
+                return false;
+        }
+
+        if (startedNewSearch) searchIdlingResource.setBusy();
+        return true;
+    }
+
+    private int matchTypeItemId() {
+        switch (viewModel.getMatchType()) {
+            case MATCH_BEST_NAMES:
+                return R.id.menu_match_best_names;
+            case MATCH_CONTENTS:
+                return R.id.menu_match_contents;
+            case MATCH_NAMES:
+            default:
+                return R.id.menu_match_names;
+        }
+    }
+
+    private int findTypeItemId() {
+        switch (viewModel.getFindType()) {
+            case FIND_FILES:
+                return R.id.menu_find_files;
+            case FIND_DIRECTORIES:
+                return R.id.menu_find_directories;
+            case FIND_ANYTHING:
+            default:
+                return R.id.menu_find_anything;
+        }
     }
 
     private void setupList() {
@@ -182,7 +270,8 @@ public class SearchListFragment extends Fragment {
             File root = new File(path);
 
             // Init search
-            viewModel.init(root);
+            viewModel.init(root, ((FileManagerApplication) getActivity().getApplicationContext())
+                    .getMimeTypes());
             viewModel.getLiveResults().observe(this, resultObserver);
 
             hintText = getResources().getString(R.string.search_hint, root.getName());
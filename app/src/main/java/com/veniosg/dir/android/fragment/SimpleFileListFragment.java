@@ -528,9 +528,11 @@ public class SimpleFileListFragment extends FileListFragment {
             pasteAction.getIcon().setLevel(copyHelper.getItemCount());
             pasteAction.setVisible(true);
             menu.findItem(R.id.menu_clear_clipboard).setVisible(true);
+            menu.findItem(R.id.menu_sync).setVisible(copyHelper.getOperationType() == COPY);
         } else {
             pasteAction.setVisible(false);
             menu.findItem(R.id.menu_clear_clipboard).setVisible(false);
+            menu.findItem(R.id.menu_sync).setVisible(false);
         }
     }
 
@@ -584,6 +586,12 @@ public class SimpleFileListFragment extends FileListFragment {
                 }
                 getActivity().supportInvalidateOptionsMenu();
                 return true;
+
+            case R.id.menu_sync:
+                ((FileManagerApplication) getActivity().getApplication()).getCopyHelper().sync(
+                        getActivity().getApplicationContext(), new File(getPath()));
+                getActivity().supportInvalidateOptionsMenu();
+                return true;
             default:
                 return false;
         }
@@ -38,6 +38,7 @@ import java.util.Comparator;
 import java.util.List;
 
 import static com.veniosg.dir.android.util.Utils.getIconForFile;
+import static com.veniosg.dir.mvvm.model.storage.IoArbiterInjector.ioArbiter;
 
 public class DirectoryScanner extends Thread {
 	/** List of contents is ready. */
@@ -122,6 +123,16 @@ public class DirectoryScanner extends Thread {
 	}
 
 	public void run() {
+		// Background transfers hold back while the user waits for the listing
+		ioArbiter().enterForeground();
+		try {
+			scan();
+		} finally {
+			ioArbiter().exitForeground();
+		}
+	}
+
+	private void scan() {
 		running = true;
 		init();
 
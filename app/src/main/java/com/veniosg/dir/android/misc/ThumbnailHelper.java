@@ -56,6 +56,7 @@ import static com.nostra13.universalimageloader.core.ImageLoader.getInstance;
 import static com.nostra13.universalimageloader.core.assist.ImageScaleType.EXACTLY;
 import static com.nostra13.universalimageloader.core.assist.ImageScaleType.IN_SAMPLE_POWER_OF_2;
 import static com.veniosg.dir.android.util.FileUtils.getViewIntentFor;
+import static com.veniosg.dir.mvvm.model.storage.IoArbiterInjector.ioArbiter;
 import static java.lang.Math.min;
 
 public class ThumbnailHelper {
@@ -127,6 +128,16 @@ public class ThumbnailHelper {
 
                 @Override
                 public Bitmap decode(ImageDecodingInfo idi) throws IOException {
+                    // Thumbnails are on screen, background transfers can wait
+                    ioArbiter().enterForeground();
+                    try {
+                        return decodeThumbnail(idi);
+                    } finally {
+                        ioArbiter().exitForeground();
+                    }
+                }
+
+                private Bitmap decodeThumbnail(ImageDecodingInfo idi) throws IOException {
                     FileHolder holder = (FileHolder) idi.getExtraForDownloader();
                     Bitmap bitmap = null;
 
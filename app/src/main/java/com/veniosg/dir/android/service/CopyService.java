@@ -16,26 +16,36 @@
 
 package com.veniosg.dir.android.service;
 
-import android.app.IntentService;
 import android.content.Context;
 import android.content.Intent;
 import android.net.Uri;
-import android.os.StatFs;
+import android.support.annotation.NonNull;
 
 import com.veniosg.dir.android.fragment.FileListFragment;
 import com.veniosg.dir.mvvm.model.FileHolder;
+import com.veniosg.dir.mvvm.model.storage.OperationManifest;
 import com.veniosg.dir.mvvm.model.storage.operation.CopyOperation;
 import com.veniosg.dir.mvvm.model.storage.operation.MoveOperation;
+import com.veniosg.dir.mvvm.model.storage.operation.MovePlanner.Plan;
+import com.veniosg.dir.mvvm.model.storage.operation.OperationScheduler.Job;
+import com.veniosg.dir.mvvm.model.storage.operation.SyncOperation;
+import com.veniosg.dir.mvvm.model.storage.operation.argument.CopyArguments;
+import com.veniosg.dir.mvvm.model.storage.operation.argument.MoveArguments;
+import com.veniosg.dir.mvvm.model.storage.operation.argument.SyncArguments;
 
 import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
 
-import static com.veniosg.dir.android.util.FileUtils.folderSize;
+import static com.veniosg.dir.android.fragment.PreferenceFragment.getVerifyCopies;
 import static com.veniosg.dir.android.util.Notifier.showNotEnoughSpaceNotification;
+import static com.veniosg.dir.mvvm.model.storage.OperationManifest.manifestOf;
 import static com.veniosg.dir.mvvm.model.storage.operation.FileOperationRunnerInjector.operationRunner;
+import static com.veniosg.dir.mvvm.model.storage.operation.OperationScheduler.PRIORITY_NORMAL;
+import static com.veniosg.dir.mvvm.model.storage.operation.OperationSchedulerInjector.operationScheduler;
 import static com.veniosg.dir.mvvm.model.storage.operation.argument.CopyArguments.copyArgs;
 import static com.veniosg.dir.mvvm.model.storage.operation.argument.MoveArguments.moveArgs;
+import static com.veniosg.dir.mvvm.model.storage.operation.argument.SyncArguments.syncArgs;
 import static com.veniosg.dir.mvvm.model.storage.operation.ui.OperationStatusDisplayerInjector.operationStatusDisplayer;
 
 /**
@@ -45,36 +55,61 @@ import static com.veniosg.dir.mvvm.model.storage.operation.ui.OperationStatusDis
  * <ol>
  * <li>Pass the files to be copied/moved as a list of FileHolders on EXTRA_FILES.</li>
  * <li>Pass the path to copy/move to as the data string of the intent.</li>
- * <li>Choose between copy or move by using ACTION_COPY or ACTION_MOVE respectively.</li>
+ * <li>Choose between copy, move or sync by using ACTION_COPY, ACTION_MOVE or ACTION_SYNC
+ * respectively.</li>
  * </ol>
  */
-public class CopyService extends IntentService {
+public class CopyService extends OperationService {
     private static final String ACTION_COPY = "com.veniosg.dir.action.COPY";
     private static final String ACTION_MOVE = "com.veniosg.dir.action.MOVE";
+    private static final String ACTION_SYNC = "com.veniosg.dir.action.SYNC";
     private static final String EXTRA_FILES = "com.veniosg.dir.action.FILES";
 
-    public CopyService() {
-        super(CopyService.class.getName());
-    }
-
     @Override
-    protected void onHandleIntent(Intent intent) {
-        if (intent.getData() == null) return;
+    protected Job submit(@NonNull Intent intent) {
+        if (intent.getData() == null) return null;
 
         List<FileHolder> files = intent.getParcelableArrayListExtra(EXTRA_FILES);
         File to = new File(intent.getData().getPath());
+        List<File> touched = new ArrayList<>(files.size() + 1);
+        for (FileHolder file : files) {
+            touched.add(file.getFile());
+        }
+        touched.add(to);
+        // Checking for space needs the manifest, so walking the files is part of the job
+        return operationScheduler().submit(PRIORITY_NORMAL, touched,
+                () -> handle(intent, files, to));
+    }
+
+    private void handle(Intent intent, List<FileHolder> files, File to) {
         long remSpace;
 
         if (ACTION_COPY.equals(intent.getAction())) {
-            remSpace = spaceRemainingAfterCopy(files, to);
+            CopyArguments args = copyArgs(files, to, manifestOf(files, true))
+                    .verifying(getVerifyCopies(this));
+            remSpace = spaceRemainingAfterCopy(args.getManifest(), to);
             if (remSpace > 0) {
-                copy(files, to);
+                copy(args);
             }
         } else if (ACTION_MOVE.equals(intent.getAction())) {
-            remSpace = spaceRemainingAfterMove(files, to);
+            MoveArguments args = moveArgs(files, to, manifestOf(files, true))
+                    .verifying(getVerifyCopies(this));
+            Plan plan = args.getPlan();
+            // Items from other devices need all their space on the target, however they're moved
+            remSpace = to.getUsableSpace() - plan.getBytesToCopy();
+            if (remSpace > 0 && remSpace <= plan.getLargestItemToRename()) {
+                // Items on the target's device are copied when SAF can't rename them. Deleting
+                // each file once copied frees its space on that same device, so they still fit.
+                args.movingPerFile(true);
+            }
             if (remSpace > 0) {
-                move(files, to);
+                move(args);
             }
+        } else if (ACTION_SYNC.equals(intent.getAction())) {
+            // How much a sync copies is only known as it compares files, so don't check upfront
+            remSpace = Long.MAX_VALUE;
+            sync(syncArgs(files, to, manifestOf(files, true))
+                    .comparingContents(getVerifyCopies(this)));
         } else {
             return;
         }
@@ -86,51 +121,20 @@ public class CopyService extends IntentService {
         }
     }
 
-    private void copy(final List<FileHolder> files, final File to) {
-        operationRunner(this).run(new CopyOperation(this, operationStatusDisplayer(this)), copyArgs(files, to));
+    private void copy(CopyArguments args) {
+        operationRunner(this).run(new CopyOperation(this, operationStatusDisplayer(this)), args);
     }
 
-    private void move(List<FileHolder> files, File to) {
-        operationRunner(this).run(new MoveOperation(this, operationStatusDisplayer(this)), moveArgs(files, to));
+    private void move(MoveArguments args) {
+        operationRunner(this).run(new MoveOperation(this, operationStatusDisplayer(this)), args);
     }
 
-    private static long spaceRemainingAfterCopy(List<FileHolder> of, File on) {
-        long needed = 0;
-
-        for (FileHolder f : of) {
-            needed += (f.getFile().isDirectory() ? folderSize(f.getFile()) : f.getFile().length());
-        }
-
-        return on.getUsableSpace() - needed;
+    private void sync(SyncArguments args) {
+        operationRunner(this).run(new SyncOperation(this, operationStatusDisplayer(this)), args);
     }
 
-    private static long spaceRemainingAfterMove(List<FileHolder> of, File on) {
-        long needed = 0;
-        // We know all clipboard files are on the same directory.
-        boolean onSameStorage = onSameStorage(of.get(0).getFile(), on);
-
-        for (FileHolder f : of) {
-            if (!onSameStorage) {
-                needed += (f.getFile().isDirectory() ? folderSize(f.getFile()) : f.getFile().length());
-            }
-        }
-
-        return on.getUsableSpace() - needed;
-    }
-
-    /**
-     * Bad but good enough for the common case. Someone, please write something better :)
-     *
-     * @return Whether these two files are on the same storage card/disk.
-     * May return false positives but never false negatives.
-     */
-    private static boolean onSameStorage(File file1, File file2) {
-        StatFs fs1 = new StatFs(file1.getAbsolutePath());
-        StatFs fs2 = new StatFs(file2.getAbsolutePath());
-        return fs1.getAvailableBlocksLong() == fs2.getAvailableBlocksLong()
-                && fs1.getBlockCountLong() == fs2.getBlockCountLong()
-                && fs1.getFreeBlocksLong() == fs2.getFreeBlocksLong()
-                && fs1.getBlockSizeLong() == fs2.getBlockSizeLong();
+    private static long spaceRemainingAfterCopy(OperationManifest manifest, File on) {
+        return on.getUsableSpace() - manifest.getSize();
     }
 
     public static void copyTo(Context c, List<FileHolder> mClipboard, File copyTo) {
@@ -153,4 +157,17 @@ public class CopyService extends IntentService {
                 : new ArrayList<>(mClipboard));
         c.startService(i);
     }
+
+    /**
+     * Bring the copies of files under syncTo up to date, copying only what changed.
+     */
+    public static void syncTo(Context c, List<FileHolder> files, File syncTo) {
+        Intent i = new Intent(ACTION_SYNC);
+        i.setClassName(c, CopyService.class.getName());
+        i.setData(Uri.fromFile(syncTo));
+        i.putParcelableArrayListExtra(EXTRA_FILES, files instanceof ArrayList
+                ? (ArrayList<FileHolder>) files
+                : new ArrayList<>(files));
+        c.startService(i);
+    }
 }
@@ -0,0 +1,98 @@
+package com.veniosg.dir.android.service;
+
+import android.app.Service;
+import android.content.Intent;
+import android.os.IBinder;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.veniosg.dir.mvvm.model.storage.operation.OperationScheduler;
+import com.veniosg.dir.mvvm.model.storage.operation.OperationScheduler.Job;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeSet;
+
+import static com.veniosg.dir.mvvm.model.storage.operation.OperationSchedulerInjector.operationScheduler;
+
+/**
+ * Hands each intent to the {@link OperationScheduler} and stays started until all jobs it
+ * submitted have finished. Unlike an IntentService, intents don't wait for each other.
+ * <p>
+ * Intents are redelivered if the process dies meanwhile. Operations journal their progress, so
+ * one cut short that way resumes. Each intent is released once its job and those of all earlier
+ * intents have finished, as the platform only releases intents in the order they arrived.
+ */
+abstract class OperationService extends Service {
+    private final Map<Job, Integer> jobs = new HashMap<>();
+    // Start ids of the jobs still running, oldest first
+    private final TreeSet<Integer> unfinished = new TreeSet<>();
+    private final OperationScheduler.Listener jobListener = new OperationScheduler.Listener() {
+        @Override
+        public void onJobFinished(@NonNull Job job) {
+            synchronized (jobs) {
+                Integer startId = jobs.remove(job);
+                if (startId == null) return;
+
+                unfinished.remove(startId);
+                releaseFinished();
+            }
+        }
+    };
+    private int lastStartId;
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        operationScheduler().addListener(jobListener);
+    }
+
+    @Override
+    public void onDestroy() {
+        operationScheduler().removeListener(jobListener);
+        super.onDestroy();
+    }
+
+    @Override
+    public int onStartCommand(@Nullable Intent intent, int flags, int startId) {
+        // Holding the lock until the job is known keeps it from finishing unnoticed
+        synchronized (jobs) {
+            lastStartId = startId;
+            Job job = intent == null ? null : submit(intent);
+            if (job != null) {
+                jobs.put(job, startId);
+                unfinished.add(startId);
+            } else {
+                releaseFinished();
+            }
+        }
+        return START_REDELIVER_INTENT;
+    }
+
+    /**
+     * Release every intent up to the oldest one whose job is still running, so that only
+     * unfinished work is redelivered. Stops the service once nothing is running.
+     */
+    private void releaseFinished() {
+        if (unfinished.isEmpty()) {
+            stopSelfResult(lastStartId);
+        } else {
+            // Releasing an intent releases all that arrived before it too
+            stopSelfResult(unfinished.first() - 1);
+        }
+    }
+
+    @Nullable
+    @Override
+    public IBinder onBind(Intent intent) {
+        return null;
+    }
+
+    /**
+     * Called on the main thread.
+     *
+     * @return The job that will handle the intent, or null if there's nothing to do.
+     */
+    @Nullable
+    protected abstract Job submit(@NonNull Intent intent);
+}
@@ -16,43 +16,44 @@
 
 package com.veniosg.dir.android.service;
 
-import android.app.IntentService;
 import android.content.Context;
 import android.content.Intent;
 import android.net.Uri;
+import android.support.annotation.NonNull;
 
 import com.veniosg.dir.mvvm.model.FileHolder;
 import com.veniosg.dir.mvvm.model.storage.operation.CompressOperation;
 import com.veniosg.dir.mvvm.model.storage.operation.ExtractOperation;
+import com.veniosg.dir.mvvm.model.storage.operation.OperationScheduler.Job;
 
 import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
 
 import static com.veniosg.dir.mvvm.model.storage.operation.FileOperationRunnerInjector.operationRunner;
+import static com.veniosg.dir.mvvm.model.storage.operation.OperationScheduler.PRIORITY_LOW;
 import static com.veniosg.dir.mvvm.model.storage.operation.argument.CompressArguments.compressArgs;
 import static com.veniosg.dir.mvvm.model.storage.operation.argument.ExtractArguments.extractArgs;
+import static com.veniosg.dir.mvvm.model.storage.operation.ui.OperationStatusDisplayerInjector.operationStatusDisplayer;
 import static java.util.Collections.singletonList;
 
-public class ZipService extends IntentService {
+public class ZipService extends OperationService {
     private static final String ACTION_COMPRESS = "com.veniosg.dir.action.COMPRESS";
     private static final String ACTION_EXTRACT = "com.veniosg.dir.action.EXTRACT";
     private static final String EXTRA_FILES = "com.veniosg.dir.action.FILES";
 
-    public ZipService() {
-        super(ZipService.class.getName());
-    }
-
     @Override
-    protected void onHandleIntent(Intent intent) {
+    protected Job submit(@NonNull Intent intent) {
         List<FileHolder> files = intent.getParcelableArrayListExtra(EXTRA_FILES);
         File to = new File(intent.getData().getPath());
 
+        // Archives take long, anything else can go first
         if (ACTION_COMPRESS.equals(intent.getAction())) {
-            operationRunner(this).run(new CompressOperation(this), compressArgs(to, files));
+            return operationRunner(this).submit(new CompressOperation(this, operationStatusDisplayer(this)), compressArgs(to, files), PRIORITY_LOW);
         } else if (ACTION_EXTRACT.equals(intent.getAction())) {
-            operationRunner(this).run(new ExtractOperation(this), extractArgs(to, files));
+            return operationRunner(this).submit(new ExtractOperation(this, operationStatusDisplayer(this)), extractArgs(to, files), PRIORITY_LOW);
         }
+        return null;
     }
 
     public static void extractTo(Context c, final FileHolder tbe, File extractTo) {
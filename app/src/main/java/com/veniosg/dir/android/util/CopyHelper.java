@@ -113,4 +113,16 @@ public class CopyHelper {
                 break;
 		}
 	}
+
+	/**
+	 * Bring the copies of the copied items under syncTo up to date, instead of pasting new
+	 * copies alongside them.
+	 */
+	public void sync(Context c, File syncTo) {
+		if (!syncTo.isDirectory() || mOperation != COPY)
+			return;
+
+		CopyService.syncTo(c, mClipboard, syncTo);
+		mClipboard.clear();
+	}
 }
\ No newline at end of file
@@ -30,6 +30,7 @@ import android.widget.Toast;
 
 import com.veniosg.dir.R;
 import com.veniosg.dir.mvvm.model.FileHolder;
+import com.veniosg.dir.mvvm.model.storage.TreeWalker;
 
 import java.io.File;
 import java.io.FileNotFoundException;
@@ -37,10 +38,13 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static android.content.Intent.ACTION_VIEW;
 import static com.veniosg.dir.android.provider.FileManagerProvider.FILE_PROVIDER_PREFIX;
 import static com.veniosg.dir.android.util.Logger.log;
+import static com.veniosg.dir.mvvm.model.storage.TreeWalker.treeWalker;
 import static java.lang.Integer.MAX_VALUE;
 import static java.util.Collections.unmodifiableList;
 
@@ -50,6 +54,7 @@ import static java.util.Collections.unmodifiableList;
  */
 public class FileUtils {
     public static final String NOMEDIA_FILE_NAME = ".nomedia";
+    private static final int TOTALS_PARALLELISM = 4;
 
     /**
      * Gets the extension of a file name, like ".png" or ".jpg".
@@ -130,15 +135,7 @@ public class FileUtils {
     }
 
     public static long folderSize(File directory) {
-        long length = 0;
-        File[] files = directory.listFiles();
-        if (files != null)
-            for (File file : files)
-                if (file.isFile())
-                    length += file.length();
-                else
-                    length += folderSize(file);
-        return length;
+        return totalsUnder(directory).getSize();
     }
 
     /**
@@ -156,27 +153,26 @@ public class FileUtils {
      * @param file The root of the tree to count.
      */
     public static int countFilesUnder(File file) {
-        int fileCount = 0;
-        if (!file.isDirectory()) {
-            fileCount++;
-        } else {
-            if (file.list() != null) {
-                for (File f : file.listFiles()) {
-                    fileCount += countFilesUnder(f);
-                }
-            }
-        }
-
-        return fileCount;
+        return totalsUnder(file).getFileCount();
     }
 
     public static int countFilesUnder(List<FileHolder> list) {
-        int fileCount = 0;
+        return totalsUnder(list).getFileCount();
+    }
+
+    /**
+     * Count files and their sizes in the subtrees of all items of list, in one walk.
+     */
+    public static Totals totalsUnder(List<FileHolder> list) {
+        Totals totals = new Totals();
         for (FileHolder fh : list) {
-            fileCount += countFilesUnder(fh.getFile());
+            try {
+                treeWalker().followingSymlinks(true).walk(fh.getFile(), totals);
+            } catch (IOException e) {
+                log(e);
+            }
         }
-
-        return fileCount;
+        return totals;
     }
 
     /**
@@ -298,25 +294,15 @@ public class FileUtils {
      * @return Whether the operation succeeded.
      */
     public static boolean delete(File fileOrDirectory) {
-        boolean res = true;
-
-        // Delete children if directory
-        File[] children = fileOrDirectory.listFiles();
-        boolean hasChildren = children != null && children.length != 0;
-        if (hasChildren) {
-            for (File childFile : children) {
-                if (childFile.isDirectory()) {
-                    res &= delete(childFile);
-                } else {
-                    res &= childFile.delete();
-                }
-            }
+        Deleter deleter = new Deleter();
+        try {
+            // Links are deleted themselves, never what they point to
+            treeWalker().followingRoot(false).walk(fileOrDirectory, deleter);
+        } catch (IOException e) {
+            log(e);
+            return false;
         }
-
-        // Delete the file itself
-        res &= fileOrDirectory.delete();
-
-        return res;
+        return deleter.deletedAll;
     }
 
     public static String getFileName(File file) {
@@ -424,6 +410,23 @@ public class FileUtils {
         return unmodifiableList(externalStorageRoots);
     }
 
+    /**
+     * Follows links, as copying does, so that the totals match what a copy would write. Lists
+     * several directories at once, as listing is mostly waiting on storage.
+     */
+    private static Totals totalsUnder(File file) {
+        Totals totals = new Totals();
+        try {
+            treeWalker().followingSymlinks(true)
+                    .breadthFirst()
+                    .parallelism(TOTALS_PARALLELISM)
+                    .walk(file, totals);
+        } catch (IOException e) {
+            log(e);
+        }
+        return totals;
+    }
+
     @NonNull
     public static List<String> getPathsUnder(File file) {
         List<String> paths = new ArrayList<>();
@@ -434,4 +437,43 @@ public class FileUtils {
         }
         return paths;
     }
+
+    /**
+     * Safe to walk in parallel.
+     */
+    public static class Totals extends TreeWalker.Visitor {
+        private final AtomicInteger fileCount = new AtomicInteger();
+        private final AtomicLong size = new AtomicLong();
+
+        private Totals() {
+        }
+
+        @Override
+        public void visitFile(@NonNull TreeWalker.Entry file) {
+            fileCount.incrementAndGet();
+            size.addAndGet(file.getAttributes().size());
+        }
+
+        public int getFileCount() {
+            return fileCount.get();
+        }
+
+        public long getSize() {
+            return size.get();
+        }
+    }
+
+    private static class Deleter extends TreeWalker.Visitor {
+        boolean deletedAll = true;
+
+        @Override
+        public void visitFile(@NonNull TreeWalker.Entry file) {
+            deletedAll &= file.getFile().delete();
+        }
+
+        @Override
+        public void postVisitDirectory(@NonNull TreeWalker.Entry directory) {
+            deletedAll &= directory.getFile().delete();
+        }
+    }
 }
@@ -25,10 +25,15 @@ import android.provider.MediaStore;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 
+import com.veniosg.dir.mvvm.model.storage.TreeWalker;
+
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
+import static com.veniosg.dir.mvvm.model.storage.TreeWalker.treeWalker;
+
 public abstract class MediaScannerUtils {
     private static final MediaScannerConnection.OnScanCompletedListener sLogScannerListener =
             new MediaScannerConnection.MediaScannerConnectionClient() {
@@ -63,7 +68,14 @@ public abstract class MediaScannerUtils {
         ArrayList<String> filePaths = new ArrayList<>();
         getPathsUnder(filePaths, parentFile);
 
-        MediaScannerConnection.scanFile(c.getApplicationContext(), filePaths.toArray(new String[filePaths.size()]), null,
+        informPathsAdded(c, filePaths);
+    }
+
+    /**
+     * Request a MediaScanner scan for paths already known, such as those of a copy.
+     */
+    public static void informPathsAdded(Context c, List<String> paths) {
+        MediaScannerConnection.scanFile(c.getApplicationContext(), paths.toArray(new String[paths.size()]), null,
                 sLogScannerListener);
     }
 
@@ -79,18 +91,23 @@ public abstract class MediaScannerUtils {
         getPathsUnder(paths, from);
     }
 
-    private static void getPathsUnder(@NonNull List<String> pathList, @NonNull File folder) {
-        File[] files = folder.listFiles();
-        if (files != null) {
-            for (File f : files) {
-                if (f.isDirectory()) {
-                    getPathsUnder(pathList, f);
-                } else {
-                    pathList.add(f.getAbsolutePath());
+    private static void getPathsUnder(@NonNull final List<String> pathList, @NonNull File folder) {
+        try {
+            treeWalker().walk(folder, new TreeWalker.Visitor() {
+                @Override
+                public void visitFile(@NonNull TreeWalker.Entry file) {
+                    pathList.add(file.getFile().getAbsolutePath());
                 }
-            }
+
+                @Override
+                public void postVisitDirectory(@NonNull TreeWalker.Entry directory) {
+                    pathList.add(directory.getFile().getAbsolutePath());
+                }
+            });
+        } catch (IOException e) {
+            // Already gone, the folder itself is all we know about
+            pathList.add(folder.getAbsolutePath());
         }
-        pathList.add(folder.getAbsolutePath());
     }
 
     public static void informFolderDeleted(Context c, File parentFile) {
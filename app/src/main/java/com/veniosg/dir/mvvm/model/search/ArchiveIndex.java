@@ -0,0 +1,109 @@
+package com.veniosg.dir.mvvm.model.search;
+
+import android.support.annotation.NonNull;
+
+import com.veniosg.dir.mvvm.model.storage.FileAttributes;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Lists the entries of zip archives, reading only their central directory. Listings are kept
+ * for the most recently used archives and reused for as long as the archive's size and
+ * modification time stay the same.
+ */
+class ArchiveIndex {
+    private final Map<String, Listing> listings;
+
+    ArchiveIndex(final int maxArchives) {
+        listings = new LinkedHashMap<String, Listing>(maxArchives, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Listing> eldest) {
+                return size() > maxArchives;
+            }
+        };
+    }
+
+    /**
+     * @param attributes The current attributes of archive, used to tell if a cached listing is
+     *                   still valid.
+     */
+    @NonNull
+    Listing entriesOf(@NonNull File archive, @NonNull FileAttributes attributes)
+            throws IOException {
+        String path = archive.getAbsolutePath();
+        synchronized (listings) {
+            Listing cached = listings.get(path);
+            if (cached != null && cached.isValidFor(attributes)) return cached;
+        }
+
+        Listing listing = read(archive, attributes);
+        synchronized (listings) {
+            listings.put(path, listing);
+        }
+        return listing;
+    }
+
+    private static Listing read(File archive, FileAttributes attributes) throws IOException {
+        try (ZipFile zip = new ZipFile(archive)) {
+            int count = zip.size();
+            String[] names = new String[count];
+            FileAttributes[] entryAttributes = new FileAttributes[count];
+
+            int i = 0;
+            Enumeration<? extends ZipEntry> entries = zip.entries();
+            while (entries.hasMoreElements() && i < count) {
+                ZipEntry entry = entries.nextElement();
+                names[i] = entry.getName();
+                entryAttributes[i] = new FileAttributes(entry.isDirectory(),
+                        Math.max(0, entry.getSize()), entry.getTime());
+                i++;
+            }
+            return new Listing(attributes.size(), attributes.lastModified(), names,
+                    entryAttributes, i);
+        }
+    }
+
+    static class Listing {
+        private final long archiveSize;
+        private final long archiveLastModified;
+        private final String[] names;
+        private final FileAttributes[] attributes;
+        private final int count;
+
+        private Listing(long archiveSize, long archiveLastModified, String[] names,
+                        FileAttributes[] attributes, int count) {
+            this.archiveSize = archiveSize;
+            this.archiveLastModified = archiveLastModified;
+            this.names = names;
+            this.attributes = attributes;
+            this.count = count;
+        }
+
+        int size() {
+            return count;
+        }
+
+        /**
+         * @return The full name of the entry at index, as stored in the archive. Directory
+         * names end with a slash.
+         */
+        String nameAt(int index) {
+            return names[index];
+        }
+
+        FileAttributes attributesAt(int index) {
+            return attributes[index];
+        }
+
+        private boolean isValidFor(FileAttributes archiveAttributes) {
+            return archiveSize == archiveAttributes.size()
+                    && archiveLastModified == archiveAttributes.lastModified();
+        }
+    }
+}
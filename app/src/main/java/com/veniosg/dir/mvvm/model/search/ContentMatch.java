@@ -0,0 +1,66 @@
+package com.veniosg.dir.mvvm.model.search;
+
+import android.support.annotation.NonNull;
+
+/**
+ * The first line of a file that matched a content search.
+ */
+public class ContentMatch {
+    @NonNull
+    private final String path;
+    private final long lineNumber;
+    @NonNull
+    private final String line;
+
+    ContentMatch(@NonNull String path, long lineNumber, @NonNull String line) {
+        this.path = path;
+        this.lineNumber = lineNumber;
+        this.line = line;
+    }
+
+    @NonNull
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * @return The 1-based number of the matching line.
+     */
+    public long getLineNumber() {
+        return lineNumber;
+    }
+
+    /**
+     * @return The matching line, possibly trimmed around the match if very long.
+     */
+    @NonNull
+    public String getLine() {
+        return line;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        ContentMatch that = (ContentMatch) o;
+        return lineNumber == that.lineNumber && path.equals(that.path) && line.equals(that.line);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = path.hashCode();
+        result = 31 * result + (int) (lineNumber ^ (lineNumber >>> 32));
+        result = 31 * result + line.hashCode();
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "ContentMatch{" +
+                "path='" + path + '\'' +
+                ", lineNumber=" + lineNumber +
+                ", line='" + line + '\'' +
+                '}';
+    }
+}
@@ -0,0 +1,164 @@
+package com.veniosg.dir.mvvm.model.search;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.veniosg.dir.android.misc.MimeTypes;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+
+import static java.lang.Math.min;
+import static java.nio.channels.FileChannel.MapMode.READ_ONLY;
+
+/**
+ * Finds the first line of a file that contains a query, ignoring ASCII case.
+ * Files are memory-mapped in windows of {@link #WINDOW_SIZE} bytes and scanned with
+ * Boyer-Moore-Horspool over the UTF-8 bytes of the query, so they are never decoded.
+ */
+class ContentMatcher {
+    private static final int WINDOW_SIZE = 4 * 1024 * 1024;
+    private static final int SNIFF_SIZE = 512;
+    private static final int MAX_LINE_PREVIEW = 160;
+    private static final String MIME_UNKNOWN = "*/*";
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final byte[] needle;
+    private final int[] shifts = new int[256];
+    @Nullable
+    private final MimeTypes mimeTypes;
+
+    /**
+     * @param mimeTypes Used to skip files with a known non-text type. Files of unknown type, or
+     *                  all files if this is null, are skipped only if they look binary.
+     */
+    ContentMatcher(@NonNull String query, @Nullable MimeTypes mimeTypes) {
+        this.mimeTypes = mimeTypes;
+        this.needle = query.getBytes(UTF_8);
+        for (int i = 0; i < needle.length; i++) {
+            needle[i] = fold(needle[i]);
+        }
+        for (int i = 0; i < shifts.length; i++) {
+            shifts[i] = needle.length;
+        }
+        for (int i = 0; i < needle.length - 1; i++) {
+            shifts[needle[i] & 0xFF] = needle.length - 1 - i;
+        }
+    }
+
+    /**
+     * @return Whether the file could contain text, judging by its name only.
+     */
+    boolean isCandidate(@NonNull File file) {
+        if (mimeTypes == null) return true;
+
+        String mimeType = mimeTypes.getMimeType(file.getName());
+        return MIME_UNKNOWN.equals(mimeType) || isTextMimeType(mimeType);
+    }
+
+    /**
+     * @return The first match in the file, or null if there is none or the file looks binary.
+     */
+    @Nullable
+    ContentMatch firstMatch(@NonNull File file, @NonNull Cancellation cancellation)
+            throws IOException {
+        if (needle.length == 0) return null;
+
+        try (FileInputStream in = new FileInputStream(file);
+             FileChannel channel = in.getChannel()) {
+            long size = channel.size();
+            int overlap = needle.length - 1;
+            long windowStart = 0;
+            long linesBefore = 0;
+
+            while (windowStart < size && !cancellation.isCancelled()) {
+                int windowLength = (int) min(WINDOW_SIZE, size - windowStart);
+                MappedByteBuffer window = channel.map(READ_ONLY, windowStart, windowLength);
+                if (windowStart == 0 && looksBinary(window)) return null;
+
+                int hit = indexOf(window, windowLength);
+                if (hit != -1) {
+                    long line = linesBefore + countNewlines(window, 0, hit) + 1;
+                    return new ContentMatch(file.getAbsolutePath(), line, lineAround(window, hit));
+                }
+
+                boolean lastWindow = windowStart + windowLength >= size;
+                if (lastWindow) break;
+
+                // Keep the tail of this window in the next one, so that we don't miss matches
+                // that span both
+                int advance = windowLength - overlap;
+                linesBefore += countNewlines(window, 0, advance);
+                windowStart += advance;
+            }
+        }
+        return null;
+    }
+
+    private int indexOf(MappedByteBuffer haystack, int length) {
+        int last = needle.length - 1;
+        int i = 0;
+        while (i + last < length) {
+            int j = last;
+            while (j >= 0 && fold(haystack.get(i + j)) == needle[j]) j--;
+            if (j < 0) return i;
+            i += shifts[fold(haystack.get(i + last)) & 0xFF];
+        }
+        return -1;
+    }
+
+    private static long countNewlines(MappedByteBuffer buffer, int from, int to) {
+        long count = 0;
+        for (int i = from; i < to; i++) {
+            if (buffer.get(i) == '\n') count++;
+        }
+        return count;
+    }
+
+    private static String lineAround(MappedByteBuffer buffer, int position) {
+        int start = position;
+        while (start > 0 && buffer.get(start - 1) != '\n'
+                && position - start < MAX_LINE_PREVIEW / 2) {
+            start--;
+        }
+        int end = position;
+        while (end < buffer.limit() && buffer.get(end) != '\n' && end - start < MAX_LINE_PREVIEW) {
+            end++;
+        }
+
+        byte[] line = new byte[end - start];
+        for (int i = 0; i < line.length; i++) {
+            line[i] = buffer.get(start + i);
+        }
+        return new String(line, UTF_8).trim();
+    }
+
+    private static boolean looksBinary(MappedByteBuffer window) {
+        int sniffLength = min(SNIFF_SIZE, window.limit());
+        for (int i = 0; i < sniffLength; i++) {
+            if (window.get(i) == 0) return true;
+        }
+        return false;
+    }
+
+    private static boolean isTextMimeType(String mimeType) {
+        return mimeType.startsWith("text/")
+                || mimeType.endsWith("+xml")
+                || mimeType.equals("application/xml")
+                || mimeType.equals("application/json")
+                || mimeType.equals("application/javascript")
+                || mimeType.equals("application/x-sh");
+    }
+
+    private static byte fold(byte b) {
+        return b >= 'A' && b <= 'Z' ? (byte) (b + ('a' - 'A')) : b;
+    }
+
+    interface Cancellation {
+        boolean isCancelled();
+    }
+}
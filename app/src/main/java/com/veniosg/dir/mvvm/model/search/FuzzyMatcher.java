@@ -0,0 +1,129 @@
+package com.veniosg.dir.mvvm.model.search;
+
+import android.support.annotation.NonNull;
+
+import static java.lang.Character.isLowerCase;
+import static java.lang.Character.isUpperCase;
+import static java.lang.Character.toLowerCase;
+
+/**
+ * Scores file names against a query, treating the query as a subsequence of the name.
+ * A 64-bit mask of the characters present in the query is computed once, so most names can
+ * be rejected with a single mask comparison before any scoring happens.
+ */
+class FuzzyMatcher {
+    static final int NO_MATCH = Integer.MIN_VALUE;
+
+    private static final int SCORE_MATCH = 16;
+    private static final int BONUS_CONSECUTIVE = 24;
+    private static final int BONUS_WORD_START = 20;
+    private static final int BONUS_SUBSTRING = 64;
+    private static final int BONUS_EXACT = 128;
+    private static final int PENALTY_GAP = 2;
+    private static final int PENALTY_MAX_GAP = 12;
+    private static final int MAX_START_CANDIDATES = 8;
+
+    @NonNull
+    private final char[] query;
+    private final String lowerQuery;
+    private final long queryMask;
+
+    FuzzyMatcher(@NonNull String query) {
+        this.lowerQuery = lowerCase(query);
+        this.query = lowerQuery.toCharArray();
+        this.queryMask = charMask(lowerQuery);
+    }
+
+    /**
+     * @return A positive score if all query characters appear in order in name, higher being
+     * more relevant, or {@link #NO_MATCH}.
+     */
+    int score(@NonNull String name) {
+        if (query.length == 0) return NO_MATCH;
+
+        String lowerName = lowerCase(name);
+        if ((queryMask & ~charMask(lowerName)) != 0) return NO_MATCH;
+
+        int best = NO_MATCH;
+        int candidates = 0;
+        int start = lowerName.indexOf(query[0]);
+        while (start != -1 && candidates++ < MAX_START_CANDIDATES) {
+            best = Math.max(best, scoreFrom(start, name, lowerName));
+            start = lowerName.indexOf(query[0], start + 1);
+        }
+        if (best == NO_MATCH) return NO_MATCH;
+
+        if (lowerName.equals(lowerQuery)) {
+            best += BONUS_EXACT;
+        } else if (lowerName.contains(lowerQuery)) {
+            best += BONUS_SUBSTRING;
+        }
+        // Prefer shorter names when everything else is equal
+        best -= (lowerName.length() - query.length) / 4;
+        return Math.max(best, 1);
+    }
+
+    /**
+     * Greedily match the query starting at a given position of the name.
+     */
+    private int scoreFrom(int start, String name, String lowerName) {
+        int score = 0;
+        int previous = -1;
+        int position = start;
+        for (char c : query) {
+            position = previous == -1 ? start : lowerName.indexOf(c, previous + 1);
+            if (position == -1) return NO_MATCH;
+
+            score += SCORE_MATCH;
+            if (previous != -1 && position == previous + 1) {
+                score += BONUS_CONSECUTIVE;
+            } else if (previous != -1) {
+                score -= Math.min(PENALTY_MAX_GAP, (position - previous - 1) * PENALTY_GAP);
+            }
+            if (isWordStart(name, position)) score += BONUS_WORD_START;
+            previous = position;
+        }
+        score -= Math.min(PENALTY_MAX_GAP, start);
+        return score;
+    }
+
+    private static boolean isWordStart(String name, int position) {
+        if (position == 0) return true;
+
+        char previous = name.charAt(position - 1);
+        char current = name.charAt(position);
+        return previous == ' ' || previous == '_' || previous == '-' || previous == '.'
+                || (isLowerCase(previous) && isUpperCase(current));
+    }
+
+    /**
+     * Lowercases each character on its own, so positions in the result are positions in the
+     * original too. {@link String#toLowerCase()} may change the length, as it does for a
+     * dotted capital I.
+     */
+    private static String lowerCase(String s) {
+        char[] chars = s.toCharArray();
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = toLowerCase(chars[i]);
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Maps each character to one of 64 buckets: letters and digits get their own bit, anything
+     * else is hashed into the remaining ones.
+     */
+    static long charMask(@NonNull String lowerCased) {
+        long mask = 0;
+        for (int i = 0; i < lowerCased.length(); i++) {
+            mask |= 1L << bucketOf(lowerCased.charAt(i));
+        }
+        return mask;
+    }
+
+    private static int bucketOf(char c) {
+        if (c >= 'a' && c <= 'z') return c - 'a';
+        if (c >= '0' && c <= '9') return 26 + c - '0';
+        return 36 + c % 28;
+    }
+}
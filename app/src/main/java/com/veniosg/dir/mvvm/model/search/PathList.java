@@ -0,0 +1,268 @@
+package com.veniosg.dir.mvvm.model.search;
+
+import android.support.annotation.NonNull;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Append-only list of absolute paths that stores each path as the ID of its parent directory
+ * plus its name. Directories are themselves stored as a parent ID plus a name, and names are
+ * packed into shared char arrays, so common prefixes are kept only once and a row costs a few
+ * primitives instead of a String. Paths are only built again when read.
+ * <p>
+ * Not thread-safe. {@link #snapshot() Snapshots} share storage with the list they were taken
+ * from, so they should only be read on the thread that appends to it. Changing a snapshot
+ * copies it first. Outside this package, instances are read-only.
+ */
+public class PathList extends AbstractList<String> {
+    private static final int ROWS_PER_CHUNK = 1024;
+    private static final int CHARS_PER_CHUNK = 64 * 1024;
+    private static final int ROOT_ID = 0;
+    // Rows that could not be split are stored whole, with this as their parent
+    private static final int NO_PARENT = -1;
+
+    private Storage storage;
+    private int size;
+    private boolean frozen;
+
+    PathList() {
+        this(new Storage(), 0, false);
+    }
+
+    private PathList(Storage storage, int size, boolean frozen) {
+        this.storage = storage;
+        this.size = size;
+        this.frozen = frozen;
+    }
+
+    void append(@NonNull String path) {
+        if (frozen) unfreeze();
+
+        storage.append(path);
+        size++;
+    }
+
+    void appendAll(@NonNull List<String> paths) {
+        for (String path : paths) {
+            append(path);
+        }
+    }
+
+    /**
+     * @return A list of the paths currently in this list, that won't change when this does.
+     * Costs nothing, as storage is shared.
+     */
+    PathList snapshot() {
+        return new PathList(storage, size, true);
+    }
+
+    @Override
+    public String get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + ", size " + size);
+        }
+        return storage.get(index);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return The first index at which other differs from this list, or -1 if they're equal.
+     * Only compares sizes if both lists share storage, so that paths don't need building.
+     */
+    public int firstDifferentIndex(@NonNull List<String> other) {
+        if (other instanceof PathList && ((PathList) other).storage == storage) {
+            int otherSize = other.size();
+            return otherSize == size ? -1 : Math.min(otherSize, size);
+        }
+
+        int common = Math.min(size, other.size());
+        for (int i = 0; i < common; i++) {
+            if (!get(i).equals(other.get(i))) return i;
+        }
+        return other.size() == size ? -1 : common;
+    }
+
+    void reset() {
+        // Snapshots may still be using the old storage
+        storage = new Storage();
+        size = 0;
+        frozen = false;
+    }
+
+    private void unfreeze() {
+        Storage copy = new Storage();
+        for (int i = 0; i < size; i++) {
+            copy.append(storage.get(i));
+        }
+        storage = copy;
+        frozen = false;
+    }
+
+    private static class Storage {
+        // Directories
+        private final List<String> directoryNames = new ArrayList<>();
+        private int[] directoryParents = new int[64];
+        private final Map<DirectoryKey, Integer> directoryIds = new HashMap<>();
+
+        // Rows
+        private final List<int[]> parentChunks = new ArrayList<>();
+        private final List<long[]> nameChunks = new ArrayList<>();
+        private int rowCount = 0;
+
+        // Names, referenced by rows as the index of a char chunk and an offset in it
+        private final List<char[]> charChunks = new ArrayList<>();
+        private int charsUsedInLastChunk = CHARS_PER_CHUNK;
+
+        // Results tend to come in runs from the same directory
+        private String lastParentPath;
+        private int lastParentId;
+
+        Storage() {
+            directoryNames.add("");
+            directoryParents[ROOT_ID] = NO_PARENT;
+        }
+
+        void append(String path) {
+            int lastSlash = path.lastIndexOf('/');
+            boolean splittable = path.startsWith("/") && lastSlash < path.length() - 1
+                    && !path.contains("//");
+
+            if (splittable) {
+                String parentPath = path.substring(0, lastSlash);
+                appendRow(directoryIdOf(parentPath), path.substring(lastSlash + 1));
+            } else {
+                appendRow(NO_PARENT, path);
+            }
+        }
+
+        String get(int index) {
+            int chunk = index / ROWS_PER_CHUNK;
+            int offset = index % ROWS_PER_CHUNK;
+            int parent = parentChunks.get(chunk)[offset];
+            long nameRef = nameChunks.get(chunk)[offset];
+
+            String name = nameAt(nameRef);
+            if (parent == NO_PARENT) return name;
+
+            StringBuilder path = new StringBuilder(128);
+            appendDirectoryPath(path, parent);
+            return path.append('/').append(name).toString();
+        }
+
+        private void appendRow(int parent, String name) {
+            int offset = rowCount % ROWS_PER_CHUNK;
+            if (offset == 0) {
+                parentChunks.add(new int[ROWS_PER_CHUNK]);
+                nameChunks.add(new long[ROWS_PER_CHUNK]);
+            }
+            int chunk = rowCount / ROWS_PER_CHUNK;
+            parentChunks.get(chunk)[offset] = parent;
+            nameChunks.get(chunk)[offset] = storeName(name);
+            rowCount++;
+        }
+
+        private int directoryIdOf(String path) {
+            if (path.equals(lastParentPath)) return lastParentId;
+
+            int id = ROOT_ID;
+            int start = 1;
+            while (start <= path.length()) {
+                int end = path.indexOf('/', start);
+                if (end == -1) end = path.length();
+                id = childDirectoryId(id, path.substring(start, end));
+                start = end + 1;
+            }
+
+            lastParentPath = path;
+            lastParentId = id;
+            return id;
+        }
+
+        private int childDirectoryId(int parent, String name) {
+            DirectoryKey key = new DirectoryKey(parent, name);
+            Integer id = directoryIds.get(key);
+            if (id != null) return id;
+
+            int newId = directoryNames.size();
+            directoryNames.add(name);
+            if (newId == directoryParents.length) {
+                int[] grown = new int[directoryParents.length * 2];
+                System.arraycopy(directoryParents, 0, grown, 0, directoryParents.length);
+                directoryParents = grown;
+            }
+            directoryParents[newId] = parent;
+            directoryIds.put(key, newId);
+            return newId;
+        }
+
+        private void appendDirectoryPath(StringBuilder into, int id) {
+            if (id == ROOT_ID) return;
+
+            appendDirectoryPath(into, directoryParents[id]);
+            into.append('/').append(directoryNames.get(id));
+        }
+
+        /**
+         * @return A reference to the name: the index of its char chunk in the high 32 bits, and
+         * its offset in the low ones. The length is stored in the chunk, before the name.
+         */
+        private long storeName(String name) {
+            int needed = name.length() + 2;
+            if (charsUsedInLastChunk + needed > CHARS_PER_CHUNK) {
+                charChunks.add(new char[Math.max(CHARS_PER_CHUNK, needed)]);
+                charsUsedInLastChunk = 0;
+            }
+
+            int chunkIndex = charChunks.size() - 1;
+            char[] chunk = charChunks.get(chunkIndex);
+            int offset = charsUsedInLastChunk;
+            chunk[offset] = (char) (name.length() >>> 16);
+            chunk[offset + 1] = (char) name.length();
+            name.getChars(0, name.length(), chunk, offset + 2);
+            charsUsedInLastChunk += needed;
+            // Names longer than a chunk got a chunk of their own, nothing else fits after them
+            if (needed > CHARS_PER_CHUNK) charsUsedInLastChunk = CHARS_PER_CHUNK;
+
+            return ((long) chunkIndex << 32) | offset;
+        }
+
+        private String nameAt(long ref) {
+            char[] chunk = charChunks.get((int) (ref >>> 32));
+            int offset = (int) ref;
+            int length = (chunk[offset] << 16) | chunk[offset + 1];
+            return new String(chunk, offset + 2, length);
+        }
+    }
+
+    private static class DirectoryKey {
+        final int parent;
+        final String name;
+
+        DirectoryKey(int parent, String name) {
+            this.parent = parent;
+            this.name = name;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+
+            DirectoryKey that = (DirectoryKey) o;
+            return parent == that.parent && name.equals(that.name);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * parent + name.hashCode();
+        }
+    }
+}
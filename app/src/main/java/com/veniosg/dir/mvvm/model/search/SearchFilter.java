@@ -0,0 +1,178 @@
+package com.veniosg.dir.mvvm.model.search;
+
+import android.support.annotation.IntDef;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.veniosg.dir.android.misc.MimeTypes;
+import com.veniosg.dir.mvvm.model.storage.FileAttributes;
+
+import java.lang.annotation.Retention;
+
+import static java.lang.annotation.RetentionPolicy.SOURCE;
+
+/**
+ * Structured predicates on search results, other than the query itself.
+ * Predicates that only need the file name are checked in {@link #matchesName(String)}, so that
+ * they can run before anything that needs the file's attributes.
+ */
+public class SearchFilter {
+    @Retention(SOURCE)
+    @IntDef({TYPE_ANY, TYPE_FILES, TYPE_DIRECTORIES})
+    @interface Type {}
+    static final int TYPE_ANY = 0;
+    static final int TYPE_FILES = 1;
+    static final int TYPE_DIRECTORIES = 2;
+
+    static final SearchFilter NONE = new SearchFilter();
+
+    private long minSize = -1;
+    private long maxSize = Long.MAX_VALUE;
+    private long modifiedAfter = Long.MIN_VALUE;
+    private long modifiedBefore = Long.MAX_VALUE;
+    @Nullable
+    private String mimeCategory;
+    @Nullable
+    private MimeTypes mimeTypes;
+    @Type
+    private int type = TYPE_ANY;
+
+    private SearchFilter() {
+    }
+
+    private SearchFilter(SearchFilter from) {
+        minSize = from.minSize;
+        maxSize = from.maxSize;
+        modifiedAfter = from.modifiedAfter;
+        modifiedBefore = from.modifiedBefore;
+        mimeCategory = from.mimeCategory;
+        mimeTypes = from.mimeTypes;
+        type = from.type;
+    }
+
+    /**
+     * @return A filter that accepts everything. Narrow it down using the other methods.
+     */
+    public static SearchFilter anything() {
+        return NONE;
+    }
+
+    /**
+     * Accept only files of at least the given size. Implies {@link #filesOnly()}.
+     */
+    public SearchFilter largerThan(long bytes) {
+        SearchFilter filter = new SearchFilter(this);
+        filter.minSize = bytes;
+        filter.type = TYPE_FILES;
+        return filter;
+    }
+
+    /**
+     * Accept only files of at most the given size. Implies {@link #filesOnly()}.
+     */
+    public SearchFilter smallerThan(long bytes) {
+        SearchFilter filter = new SearchFilter(this);
+        filter.maxSize = bytes;
+        filter.type = TYPE_FILES;
+        return filter;
+    }
+
+    /**
+     * @param millis Milliseconds since the epoch.
+     */
+    public SearchFilter modifiedAfter(long millis) {
+        SearchFilter filter = new SearchFilter(this);
+        filter.modifiedAfter = millis;
+        return filter;
+    }
+
+    /**
+     * @param millis Milliseconds since the epoch.
+     */
+    public SearchFilter modifiedBefore(long millis) {
+        SearchFilter filter = new SearchFilter(this);
+        filter.modifiedBefore = millis;
+        return filter;
+    }
+
+    /**
+     * Accept only files whose mime type is in the given category, judging by their name.
+     * Implies {@link #filesOnly()}.
+     *
+     * @param category The part of the mime type before the slash, e.g. "video".
+     */
+    public SearchFilter ofMimeCategory(@NonNull String category, @NonNull MimeTypes mimeTypes) {
+        SearchFilter filter = new SearchFilter(this);
+        filter.mimeCategory = category + "/";
+        filter.mimeTypes = mimeTypes;
+        filter.type = TYPE_FILES;
+        return filter;
+    }
+
+    public SearchFilter filesOnly() {
+        SearchFilter filter = new SearchFilter(this);
+        filter.type = TYPE_FILES;
+        return filter;
+    }
+
+    public SearchFilter directoriesOnly() {
+        SearchFilter filter = new SearchFilter(this);
+        filter.type = TYPE_DIRECTORIES;
+        return filter;
+    }
+
+    boolean acceptsAll() {
+        return this == NONE;
+    }
+
+    /**
+     * Cheap checks that only need the name of the file.
+     */
+    boolean matchesName(@NonNull String name) {
+        return mimeCategory == null || mimeTypes == null
+                || mimeTypes.getMimeType(name).startsWith(mimeCategory);
+    }
+
+    /**
+     * Checks that need the attributes of the file. Call only if {@link #matchesName(String)}
+     * passed, as attributes may be costly to get.
+     */
+    boolean matchesAttributes(@NonNull FileAttributes attributes) {
+        if (type == TYPE_FILES && !attributes.isFile()) return false;
+        if (type == TYPE_DIRECTORIES && !attributes.isDirectory()) return false;
+        if (attributes.isFile()) {
+            long size = attributes.size();
+            if (size < minSize || size > maxSize) return false;
+        }
+
+        long modified = attributes.lastModified();
+        return modified >= modifiedAfter && modified <= modifiedBefore;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        SearchFilter that = (SearchFilter) o;
+        return minSize == that.minSize
+                && maxSize == that.maxSize
+                && modifiedAfter == that.modifiedAfter
+                && modifiedBefore == that.modifiedBefore
+                && type == that.type
+                && mimeTypes == that.mimeTypes
+                && (mimeCategory == null ? that.mimeCategory == null
+                : mimeCategory.equals(that.mimeCategory));
+    }
+
+    @Override
+    public int hashCode() {
+        int result = (int) (minSize ^ (minSize >>> 32));
+        result = 31 * result + (int) (maxSize ^ (maxSize >>> 32));
+        result = 31 * result + (int) (modifiedAfter ^ (modifiedAfter >>> 32));
+        result = 31 * result + (int) (modifiedBefore ^ (modifiedBefore >>> 32));
+        result = 31 * result + (mimeCategory != null ? mimeCategory.hashCode() : 0);
+        result = 31 * result + type;
+        return result;
+    }
+}
@@ -1,48 +1,178 @@
 package com.veniosg.dir.mvvm.model.search;
 
-import java.util.Collections;
-import java.util.LinkedList;
-import java.util.List;
+import android.support.annotation.Nullable;
 
-import static java.util.Collections.unmodifiableList;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 public class SearchState {
     private boolean finished = false;
-    private final List<String> results = new LinkedList<>();
+    private boolean partial = false;
+    private final PathList results;
+    private final ContentMatches contentMatches;
 
-    SearchState() {}
+    SearchState() {
+        results = new PathList();
+        contentMatches = new ContentMatches();
+    }
 
     SearchState(SearchState from) {
         finished = from.finished;
-        results.addAll(from.results);
+        partial = from.partial;
+        results = from.results.snapshot();
+        contentMatches = from.contentMatches.snapshot();
     }
 
     void addResult(String path) {
-        results.add(path);
+        results.append(path);
+    }
+
+    void addContentMatch(ContentMatch match) {
+        results.append(match.getPath());
+        contentMatches.append(match);
+    }
+
+    /**
+     * Replace all current results, for searches whose result order changes while they progress.
+     */
+    void setResults(List<String> paths) {
+        results.reset();
+        results.appendAll(paths);
     }
 
     void setFinished() {
         finished = true;
     }
 
+    void setPartial() {
+        partial = true;
+    }
+
     void reset() {
         finished = false;
-        results.clear();
+        partial = false;
+        results.reset();
+        contentMatches.reset();
+    }
+
+    /**
+     * @return The results so far, which won't change as the search progresses. Paths are built
+     * when read, so prefer reading only the ones that are needed.
+     */
+    public PathList results() {
+        return results.snapshot();
     }
 
-    public List<String> results() {
-        return unmodifiableList(results);
+    /**
+     * @return Where a content search matched the file at path, or null if this is not the
+     * result of a content search.
+     */
+    @Nullable
+    public ContentMatch contentMatchFor(String path) {
+        return contentMatches.get(path);
     }
 
     public boolean isFinished() {
         return finished;
     }
 
+    /**
+     * @return Whether the search finished early because it ran out of its time or result
+     * budget, so there may be more results than these.
+     */
+    public boolean isPartial() {
+        return partial;
+    }
+
     @Override
     public String toString() {
         return "SearchState{" +
                 "finished=" + finished +
+                ", partial=" + partial +
                 ", results=" + results +
+                ", contentMatches=" + contentMatches +
                 '}';
     }
+
+    /**
+     * Append-only content matches by path. Like {@link PathList}, snapshots share storage with
+     * the instance they were taken from and should only be read on the thread that appends.
+     */
+    private static class ContentMatches {
+        private List<ContentMatch> matches;
+        private Map<String, Integer> indices;
+        private int size;
+        private boolean frozen;
+
+        ContentMatches() {
+            this(new ArrayList<>(), new HashMap<>(), 0, false);
+        }
+
+        private ContentMatches(List<ContentMatch> matches, Map<String, Integer> indices,
+                               int size, boolean frozen) {
+            this.matches = matches;
+            this.indices = indices;
+            this.size = size;
+            this.frozen = frozen;
+        }
+
+        void append(ContentMatch match) {
+            if (frozen) unfreeze();
+
+            matches.add(match);
+            // Snapshots taken since the first match for a path still need to find it
+            if (!indices.containsKey(match.getPath())) indices.put(match.getPath(), size);
+            size++;
+        }
+
+        ContentMatches snapshot() {
+            return new ContentMatches(matches, indices, size, true);
+        }
+
+        @Nullable
+        ContentMatch get(String path) {
+            Integer index = indices.get(path);
+            return index == null || index >= size ? null : matches.get(index);
+        }
+
+        void reset() {
+            // Snapshots may still be using the old storage
+            matches = new ArrayList<>();
+            indices = new HashMap<>();
+            size = 0;
+            frozen = false;
+        }
+
+        private void unfreeze() {
+            List<ContentMatch> visible = matches.subList(0, size);
+            matches = new ArrayList<>(visible);
+            indices = new HashMap<>();
+            for (int i = 0; i < size; i++) {
+                String path = matches.get(i).getPath();
+                if (!indices.containsKey(path)) indices.put(path, i);
+            }
+            frozen = false;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+
+            ContentMatches that = (ContentMatches) o;
+            return matches.subList(0, size).equals(that.matches.subList(0, that.size));
+        }
+
+        @Override
+        public int hashCode() {
+            return matches.subList(0, size).hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return matches.subList(0, size).toString();
+        }
+    }
 }
\ No newline at end of file
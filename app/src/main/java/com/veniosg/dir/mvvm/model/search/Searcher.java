@@ -2,18 +2,31 @@ package com.veniosg.dir.mvvm.model.search;
 
 import android.arch.lifecycle.LiveData;
 import android.arch.lifecycle.MutableLiveData;
+import android.support.annotation.IntDef;
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 import android.support.annotation.VisibleForTesting;
 
+import com.veniosg.dir.android.misc.MimeTypes;
 import com.veniosg.dir.android.util.Logger;
+import com.veniosg.dir.mvvm.model.storage.FileAttributeReader;
+import com.veniosg.dir.mvvm.model.storage.FileAttributes;
+import com.veniosg.dir.mvvm.model.storage.PruneRules;
+import com.veniosg.dir.mvvm.model.storage.TreeWalker;
 
 import org.reactivestreams.Subscription;
 
 import java.io.File;
-import java.util.Deque;
-import java.util.LinkedList;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.lang.annotation.Retention;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor.CallerRunsPolicy;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import io.reactivex.Emitter;
 import io.reactivex.FlowableEmitter;
@@ -21,36 +34,66 @@ import io.reactivex.FlowableOnSubscribe;
 import io.reactivex.FlowableSubscriber;
 import io.reactivex.Scheduler;
 
-import static com.veniosg.dir.android.util.FileUtils.isSymlink;
+import static com.veniosg.dir.android.util.FileUtils.getExtension;
 import static com.veniosg.dir.android.util.Logger.TAG_SEARCH;
 import static com.veniosg.dir.android.util.Logger.log;
+import static com.veniosg.dir.mvvm.model.storage.FileAttributeReaderInjector.attributeReader;
+import static com.veniosg.dir.mvvm.model.storage.IoArbiterInjector.ioArbiter;
+import static com.veniosg.dir.mvvm.model.storage.TreeWalker.treeWalker;
 import static io.reactivex.BackpressureStrategy.BUFFER;
+import static io.reactivex.BackpressureStrategy.LATEST;
 import static io.reactivex.Flowable.create;
 import static io.reactivex.android.schedulers.AndroidSchedulers.mainThread;
 import static io.reactivex.schedulers.Schedulers.io;
-import static java.util.Collections.addAll;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+import static java.lang.Runtime.getRuntime;
+import static java.lang.System.currentTimeMillis;
+import static java.lang.annotation.RetentionPolicy.SOURCE;
 import static java.util.Locale.ROOT;
 
 public class Searcher {
+    /**
+     * Separates the path of an archive from the name of an entry in it, in results of searches
+     * that include archives.
+     */
+    public static final String ARCHIVE_ENTRY_SEPARATOR = "!/";
+    private static final int MAX_CONTENT_WORKERS = 4;
+    private static final int MAX_CACHED_ARCHIVES = 64;
+    // Shared so that listings survive across searches
+    private static final ArchiveIndex archiveIndex = new ArchiveIndex(MAX_CACHED_ARCHIVES);
+
     @NonNull
     private final MutableLiveData<SearchState> observableResults;
     @NonNull
     private final Scheduler ioScheduler;
     @NonNull
     private final Scheduler uiScheduler;
-    private BfsFlowable bfsFlowable;
+    @NonNull
+    private final FileAttributeReader attributeReader;
+    private BfsFlowable<?> bfsFlowable;
+    @Nullable
+    private SearchRequest lastRequest;
+    // Kept only while the last search is a name search, which is the one that can be refined
+    @Nullable
+    private SubstringBfsFlowable substringFlowable;
+    @Nullable
+    private BfsSubscriber substringSubscriber;
 
     public Searcher() {
         ioScheduler = io();
         uiScheduler = mainThread();
+        attributeReader = attributeReader();
         observableResults = new MutableLiveData<>();
     }
 
     @VisibleForTesting()
     Searcher(@NonNull MutableLiveData<SearchState> observableResults,
-             @NonNull Scheduler ioScheduler, @NonNull Scheduler uiScheduler) {
+             @NonNull Scheduler ioScheduler, @NonNull Scheduler uiScheduler,
+             @NonNull FileAttributeReader attributeReader) {
         this.ioScheduler = ioScheduler;
         this.uiScheduler = uiScheduler;
+        this.attributeReader = attributeReader;
         this.observableResults = observableResults;
     }
 
@@ -59,19 +102,90 @@ public class Searcher {
     }
 
     public void updateQuery(SearchRequest request) {
+        if (isRefinementOfLast(request)) {
+            refineLast(request);
+            lastRequest = request;
+            return;
+        }
+
+        substringFlowable = null;
+        substringSubscriber = null;
         if (bfsFlowable != null) {
 //            Logger.logV(TAG_SEARCH, "Clearing state");
             bfsFlowable.stopSearching();
         }
 
-        bfsFlowable = new BfsFlowable(request.searchRoot, request.query);
-        create(bfsFlowable, BUFFER)
-                .buffer(1, TimeUnit.SECONDS, 100)
-                .distinct()
-                .onBackpressureBuffer()
-                .subscribeOn(ioScheduler)
-                .observeOn(uiScheduler)
-                .subscribe(new BfsSubscriber());
+        switch (request.mode) {
+            case SearchRequest.MODE_RANKED:
+                RankedBfsFlowable rankedFlowable = new RankedBfsFlowable(request);
+                bfsFlowable = rankedFlowable;
+                create(rankedFlowable, LATEST)
+                        .subscribeOn(ioScheduler)
+                        .observeOn(uiScheduler)
+                        .subscribe(new RankedSubscriber(rankedFlowable));
+                break;
+            case SearchRequest.MODE_CONTENT:
+                ContentBfsFlowable contentFlowable = new ContentBfsFlowable(request);
+                bfsFlowable = contentFlowable;
+                create(contentFlowable, BUFFER)
+                        .buffer(1, TimeUnit.SECONDS, 100)
+                        .onBackpressureBuffer()
+                        .subscribeOn(ioScheduler)
+                        .observeOn(uiScheduler)
+                        .subscribe(new ContentSubscriber(contentFlowable));
+                break;
+            case SearchRequest.MODE_NAME:
+            default:
+                substringFlowable = new SubstringBfsFlowable(request);
+                substringSubscriber = new BfsSubscriber(substringFlowable);
+                bfsFlowable = substringFlowable;
+                create(substringFlowable, BUFFER)
+                        .buffer(1, TimeUnit.SECONDS, 100)
+                        .distinct()
+                        .onBackpressureBuffer()
+                        .subscribeOn(ioScheduler)
+                        .observeOn(uiScheduler)
+                        .subscribe(substringSubscriber);
+                break;
+        }
+        lastRequest = request;
+    }
+
+    /**
+     * @return Whether every result of request is also a result of the last request, and the
+     * last search either completed or is still running without having been stopped or cut short
+     * by its budget, so its results can be narrowed down instead of traversing everything again.
+     */
+    private boolean isRefinementOfLast(SearchRequest request) {
+        if (lastRequest == null || substringFlowable == null || substringSubscriber == null) {
+            return false;
+        }
+        if (request.mode != SearchRequest.MODE_NAME
+                || !request.searchRoot.equals(lastRequest.searchRoot)
+                || !request.filter.equals(lastRequest.filter)
+                || request.searchArchives != lastRequest.searchArchives
+                || request.followSymlinks != lastRequest.followSymlinks
+                || !request.pruneRules.equals(lastRequest.pruneRules)
+                || lastRequest.query.isEmpty()
+                || !request.query.toLowerCase(ROOT).contains(substringFlowable.lowerCaseQuery)) {
+            return false;
+        }
+        // A search stopped by the user or cut short by its budget has incomplete results we
+        // can't build on, even if it's still winding down
+        if (!substringFlowable.shouldContinue() || substringFlowable.isPartial()) return false;
+        return substringSubscriber.completed || substringFlowable.isRunning();
+    }
+
+    /**
+     * Filter what the last search has found so far, and let it carry on with the new query if
+     * it's still running.
+     */
+    private void refineLast(SearchRequest request) {
+        String lowerCaseQuery = request.query.toLowerCase(ROOT);
+        //noinspection ConstantConditions Checked in isRefinementOfLast()
+        substringFlowable.lowerCaseQuery = lowerCaseQuery;
+        //noinspection ConstantConditions
+        substringSubscriber.refine(lowerCaseQuery);
     }
 
     public void stopSearch() {
@@ -80,56 +194,168 @@ public class Searcher {
     }
 
     public static class SearchRequest {
+        static final int DEFAULT_RANKED_RESULTS = 100;
+
+        @Retention(SOURCE)
+        @IntDef({MODE_NAME, MODE_RANKED, MODE_CONTENT})
+        @interface Mode {}
+        static final int MODE_NAME = 0;
+        static final int MODE_RANKED = 1;
+        static final int MODE_CONTENT = 2;
+
         String searchRoot;
         String query;
-
-        SearchRequest(@NonNull File searchRoot, String query) {
+        @Mode
+        int mode;
+        int maxResults;
+        @Nullable
+        MimeTypes mimeTypes;
+        @NonNull
+        SearchFilter filter = SearchFilter.NONE;
+        boolean searchArchives = false;
+        boolean followSymlinks = false;
+        @NonNull
+        PruneRules pruneRules = PruneRules.none();
+
+        SearchRequest(@NonNull File searchRoot, String query, @Mode int mode, int maxResults,
+                      @Nullable MimeTypes mimeTypes) {
             this.searchRoot = searchRoot.getAbsolutePath();
             this.query = query;
+            this.mode = mode;
+            this.maxResults = maxResults;
+            this.mimeTypes = mimeTypes;
         }
 
+        /**
+         * Find all files whose name contains query, in breadth-first order.
+         */
         public static SearchRequest searchRequest(@NonNull File searchRoot, String query) {
-            return new SearchRequest(searchRoot, query);
+            return new SearchRequest(searchRoot, query, MODE_NAME, 0, null);
+        }
+
+        /**
+         * Find the {@link #DEFAULT_RANKED_RESULTS} files whose name best matches query,
+         * allowing for skipped characters. Results are reported best first and may be
+         * reordered while the search progresses.
+         */
+        public static SearchRequest rankedSearchRequest(@NonNull File searchRoot, String query) {
+            return rankedSearchRequest(searchRoot, query, DEFAULT_RANKED_RESULTS);
+        }
+
+        public static SearchRequest rankedSearchRequest(@NonNull File searchRoot, String query,
+                                                        int maxResults) {
+            return new SearchRequest(searchRoot, query, MODE_RANKED, maxResults, null);
+        }
+
+        /**
+         * Find all text files whose contents contain query, ignoring ASCII case. Results arrive
+         * in no particular order, along with the first matching line of each file.
+         *
+         * @param mimeTypes Used to skip known binary files without opening them. If null, files
+         *                  are only skipped if their first bytes look binary.
+         */
+        public static SearchRequest contentSearchRequest(@NonNull File searchRoot, String query,
+                                                         @Nullable MimeTypes mimeTypes) {
+            return new SearchRequest(searchRoot, query, MODE_CONTENT, 0, mimeTypes);
+        }
+
+        /**
+         * Only report results that also pass filter. Its predicates are evaluated during the
+         * traversal, using the attributes already read to decide whether to descend.
+         */
+        public SearchRequest filteredBy(@NonNull SearchFilter filter) {
+            this.filter = filter;
+            return this;
+        }
+
+        /**
+         * Also match the names of entries in zip archives, reporting them as
+         * <code>path/to/archive.zip!/path/in/archive</code>. Has no effect on content searches.
+         */
+        public SearchRequest includingArchives() {
+            this.searchArchives = true;
+            return this;
+        }
+
+        /**
+         * Descend into symbolic links to directories, which are skipped otherwise. Each
+         * directory is entered only once, however many links lead to it.
+         */
+        public SearchRequest followingSymlinks() {
+            this.followSymlinks = true;
+            return this;
+        }
+
+        /**
+         * Skip parts of the tree according to rules. If the search runs out of its time or
+         * result budget, it finishes early and its state is marked as
+         * {@link SearchState#isPartial() partial}. Ranked searches ignore the result budget, as
+         * they can't know their best results before seeing everything.
+         */
+        public SearchRequest prunedBy(@NonNull PruneRules rules) {
+            this.pruneRules = rules;
+            return this;
         }
     }
 
-    private class BfsFlowable implements FlowableOnSubscribe<String> {
-        private final Deque<File> queue = new LinkedList<>();
+    private abstract class BfsFlowable<T> implements FlowableOnSubscribe<T> {
         private final String searchRoot;
-        private final String query;
-        private boolean keepSearching = true;
-
-        BfsFlowable(@NonNull String searchRoot, @NonNull String query) {
-            this.searchRoot = searchRoot;
-            this.query = query;
+        final String query;
+        private final SearchFilter filter;
+        private final boolean searchArchives;
+        private final boolean followSymlinks;
+        private final PruneRules pruneRules;
+        private final AtomicInteger resultsReserved = new AtomicInteger();
+        private volatile boolean keepSearching = true;
+        private volatile boolean running = true;
+        private volatile boolean resultBudgetReached = false;
+        private volatile boolean partial = false;
+
+        BfsFlowable(@NonNull SearchRequest request) {
+            this.searchRoot = request.searchRoot;
+            this.query = request.query;
+            this.filter = request.filter;
+            this.searchArchives = request.searchArchives;
+            this.followSymlinks = request.followSymlinks;
+            this.pruneRules = request.pruneRules;
         }
 
         @Override
-        public void subscribe(FlowableEmitter<String> emitter) {
+        public void subscribe(FlowableEmitter<T> emitter) {
+            // Subclasses may emit from more than one thread
+            emitter = emitter.serialize();
+            emitter.setCancellable(this::release);
             if (query.isEmpty()) {
+                running = false;
                 emitter.onComplete();
                 return;
             }
 
+            // The user is waiting on results, background transfers can wait
+            ioArbiter().enterForeground();
             try {
-                File root = new File(searchRoot);
-                addDirectChildren(root, queue);
-
-                while (!queue.isEmpty() && keepSearching) {
-                    root = queue.removeFirst();
-                    if (!isSymlink(root)) {
-                        visit(root, emitter);
-
-                        if (root.isDirectory()) {
-                            addDirectChildren(root, queue);
-                        }
-                    }
-                }
-
+                // The walker's attributes are shared by the filter and the traversal itself
+                boolean walkedEverything = treeWalker(attributeReader)
+                        .breadthFirst()
+                        .followingSymlinks(followSymlinks)
+                        .pruning(pruneRules)
+                        .cancellableBy(() -> !shouldContinue())
+                        .walk(new File(searchRoot), new SearchVisitor(emitter));
+
+                onTraversalFinished(emitter);
+                // Stopped by a budget rather than by the user
+                if (!walkedEverything && keepSearching) partial = true;
+                emitter.onComplete();
+            } catch (FileNotFoundException ex) {
+                // Nothing to find under a root that doesn't exist
                 emitter.onComplete();
             } catch (Exception ex) {
                 log(ex);
                 emitter.onError(ex);
+            } finally {
+                running = false;
+                release();
+                ioArbiter().exitForeground();
             }
         }
 
@@ -137,24 +363,336 @@ public class Searcher {
             keepSearching = false;
         }
 
-        private void visit(@NonNull File file, Emitter<String> e) {
-            if (file.getName().toLowerCase(ROOT).contains(query.toLowerCase(ROOT))) {
-                e.onNext(file.getAbsolutePath());
+        /**
+         * @return Whether the search was stopped by {@link #stopSearching()}, whether or not it
+         * had finished by then.
+         */
+        boolean isStopped() {
+            return !keepSearching;
+        }
+
+        /**
+         * @return Whether the traversal hasn't finished yet.
+         */
+        boolean isRunning() {
+            return running;
+        }
+
+        /**
+         * @return Whether the search finished early because it ran out of budget.
+         */
+        boolean isPartial() {
+            return partial;
+        }
+
+        boolean shouldContinue() {
+            return keepSearching && !resultBudgetReached;
+        }
+
+        /**
+         * Count a result against the result budget, if there is one.
+         *
+         * @return False if the budget is exhausted and the result should be dropped.
+         */
+        boolean reserveResult() {
+            int budget = pruneRules.getResultBudget();
+            if (budget == PruneRules.UNLIMITED) return true;
+
+            int reserved = resultsReserved.incrementAndGet();
+            if (reserved >= budget) resultBudgetReached = true;
+            if (reserved > budget) partial = true;
+            return reserved <= budget;
+        }
+
+        /**
+         * Called for every entry under the search root. Implementations should check the query
+         * first, then call {@link #passesFilter(String, FileAttributes)}.
+         */
+        abstract void visit(@NonNull File file, @NonNull FileAttributes attributes, Emitter<T> e);
+
+        /**
+         * Called for every entry of archives under the search root, if the request includes
+         * archives.
+         *
+         * @param path The path of the archive followed by the full name of the entry.
+         * @param name The last segment of the entry's name.
+         */
+        void visitArchiveEntry(@NonNull String path, @NonNull String name,
+                               @NonNull FileAttributes attributes, Emitter<T> e) {
+        }
+
+        boolean passesFilter(@NonNull String name, @NonNull FileAttributes attributes) {
+            return filter.acceptsAll() || (filter.matchesName(name)
+                    && filter.matchesAttributes(attributes));
+        }
+
+        private void visitArchive(File archive, FileAttributes attributes, Emitter<T> emitter) {
+            ArchiveIndex.Listing entries;
+            try {
+                entries = archiveIndex.entriesOf(archive, attributes);
+            } catch (IOException ex) {
+                // Corrupt or unreadable archives are treated as plain files
+                log(ex);
+                return;
+            }
+
+            String prefix = archive.getAbsolutePath() + ARCHIVE_ENTRY_SEPARATOR;
+            for (int i = 0; i < entries.size() && shouldContinue(); i++) {
+                String entryName = entries.nameAt(i);
+                if (entryName.endsWith("/")) {
+                    entryName = entryName.substring(0, entryName.length() - 1);
+                }
+                String name = entryName.substring(entryName.lastIndexOf('/') + 1);
+                if (!name.isEmpty()) {
+                    visitArchiveEntry(prefix + entryName, name, entries.attributesAt(i), emitter);
+                }
+            }
+        }
+
+        private boolean isZipArchive(String name) {
+            return getExtension(name).equals(".zip");
+        }
+
+        void onTraversalFinished(Emitter<T> e) {
+        }
+
+        /**
+         * Called however the search ended, including by an error or by the subscriber
+         * cancelling, to free what the search holds. May be called more than once.
+         */
+        void release() {
+        }
+
+        private class SearchVisitor extends TreeWalker.Visitor {
+            private final Emitter<T> emitter;
+
+            SearchVisitor(Emitter<T> emitter) {
+                this.emitter = emitter;
+            }
+
+            @Override
+            public boolean preVisitDirectory(@NonNull TreeWalker.Entry directory) {
+                if (directory.getDepth() > 0) {
+                    visit(directory.getFile(), directory.getAttributes(), emitter);
+                }
+                return true;
+            }
+
+            @Override
+            public void visitFile(@NonNull TreeWalker.Entry entry) {
+                FileAttributes attributes = entry.getAttributes();
+                // Links that were not followed, or can't be, are not results
+                if (entry.getDepth() == 0 || attributes.isSymlink()) return;
+
+                File file = entry.getFile();
+                visit(file, attributes, emitter);
+                if (searchArchives && isZipArchive(file.getName())) {
+                    visitArchive(file, attributes, emitter);
+                }
+            }
+        }
+    }
+
+    private class SubstringBfsFlowable extends BfsFlowable<String> {
+        /**
+         * Can only be narrowed down while searching, see {@link #refineLast(SearchRequest)}.
+         */
+        volatile String lowerCaseQuery;
+
+        SubstringBfsFlowable(@NonNull SearchRequest request) {
+            super(request);
+            lowerCaseQuery = query.toLowerCase(ROOT);
+        }
+
+        @Override
+        void visit(@NonNull File file, @NonNull FileAttributes attributes, Emitter<String> e) {
+            visitArchiveEntry(file.getAbsolutePath(), file.getName(), attributes, e);
+        }
+
+        @Override
+        void visitArchiveEntry(@NonNull String path, @NonNull String name,
+                               @NonNull FileAttributes attributes, Emitter<String> e) {
+            if (name.toLowerCase(ROOT).contains(lowerCaseQuery) && passesFilter(name, attributes)
+                    && reserveResult()) {
+                e.onNext(path);
             }
         }
+    }
 
-        private void addDirectChildren(File of, Deque<File> into) {
-            File[] children = of.listFiles();
-            if (children != null) {
-                addAll(into, children);
+    /**
+     * Scores every visited file and emits a snapshot of the current best results whenever they
+     * improve, at most once every {@link #EMIT_INTERVAL_MS}.
+     */
+    private class RankedBfsFlowable extends BfsFlowable<List<String>> {
+        private static final long EMIT_INTERVAL_MS = 250;
+
+        private final FuzzyMatcher matcher;
+        private final TopResults topResults;
+        private boolean improvedSinceEmit = false;
+        private long lastEmitTime = 0;
+
+        RankedBfsFlowable(@NonNull SearchRequest request) {
+            super(request);
+            matcher = new FuzzyMatcher(query);
+            topResults = new TopResults(request.maxResults);
+        }
+
+        @Override
+        void visit(@NonNull File file, @NonNull FileAttributes attributes,
+                   Emitter<List<String>> e) {
+            visitArchiveEntry(file.getAbsolutePath(), file.getName(), attributes, e);
+        }
+
+        @Override
+        void visitArchiveEntry(@NonNull String path, @NonNull String name,
+                               @NonNull FileAttributes attributes, Emitter<List<String>> e) {
+            int score = matcher.score(name);
+            if (score != FuzzyMatcher.NO_MATCH && passesFilter(name, attributes)
+                    && topResults.offer(path, score)) {
+                improvedSinceEmit = true;
+            }
+
+            if (improvedSinceEmit) {
+                long now = currentTimeMillis();
+                if (now - lastEmitTime >= EMIT_INTERVAL_MS) emitSnapshot(e, now);
             }
         }
+
+        @Override
+        void onTraversalFinished(Emitter<List<String>> e) {
+            if (improvedSinceEmit) emitSnapshot(e, currentTimeMillis());
+        }
+
+        private void emitSnapshot(Emitter<List<String>> e, long now) {
+            e.onNext(topResults.snapshot());
+            improvedSinceEmit = false;
+            lastEmitTime = now;
+        }
     }
 
-    private class BfsSubscriber implements FlowableSubscriber<List<String>> {
-        private final SearchState searchState = new SearchState();
+    /**
+     * Hands every candidate file to a bounded pool of workers that scan its contents, while the
+     * traversal carries on. The traversal blocks when all workers are busy and their queue is
+     * full, so memory use stays bounded no matter how many files there are.
+     */
+    private class ContentBfsFlowable extends BfsFlowable<ContentMatch> {
+        private final ContentMatcher matcher;
+        private final ThreadPoolExecutor workers;
+
+        ContentBfsFlowable(@NonNull SearchRequest request) {
+            super(request);
+            matcher = new ContentMatcher(query, request.mimeTypes);
+
+            int workerCount = max(1, min(MAX_CONTENT_WORKERS, getRuntime().availableProcessors()));
+            workers = new ThreadPoolExecutor(workerCount, workerCount, 0, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(workerCount * 4), new CallerRunsPolicy());
+        }
+
+        @Override
+        void visit(@NonNull File file, @NonNull FileAttributes attributes,
+                   Emitter<ContentMatch> e) {
+            if (!attributes.isFile() || !matcher.isCandidate(file)
+                    || !passesFilter(file.getName(), attributes)) return;
+
+            workers.execute(() -> {
+                if (!shouldContinue()) return;
+
+                try {
+                    ContentMatch match = matcher.firstMatch(file, () -> !shouldContinue());
+                    if (match != null && reserveResult()) e.onNext(match);
+                } catch (IOException | RuntimeException ex) {
+                    // Unreadable files are simply not matches
+                    log(ex);
+                }
+            });
+        }
+
+        @Override
+        void onTraversalFinished(Emitter<ContentMatch> e) {
+            workers.shutdown();
+            try {
+                while (!workers.awaitTermination(1, TimeUnit.SECONDS)) {
+                    if (isStopped()) workers.shutdownNow();
+                }
+            } catch (InterruptedException ex) {
+                workers.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        void release() {
+            // Files still queued when the traversal failed or was cancelled are dropped
+            workers.shutdownNow();
+        }
+    }
+
+    private class BfsSubscriber extends SearchSubscriber<List<String>> {
+        private String lowerCaseQuery;
+
+        BfsSubscriber(SubstringBfsFlowable source) {
+            super(source);
+            this.lowerCaseQuery = source.lowerCaseQuery;
+        }
+
+        @Override
+        void onResults(List<String> strings) {
+            // Results found before a refinement may still be in flight
+            for (String s : strings) {
+                if (nameContainsQuery(s)) searchState.addResult(s);
+            }
+        }
+
+        void refine(String lowerCaseQuery) {
+            this.lowerCaseQuery = lowerCaseQuery;
+
+            List<String> remaining = new ArrayList<>();
+            for (String path : searchState.results()) {
+                if (nameContainsQuery(path)) remaining.add(path);
+            }
+            searchState.setResults(remaining);
+            emitStateUpdate();
+        }
+
+        private boolean nameContainsQuery(String path) {
+            return new File(path).getName().toLowerCase(ROOT).contains(lowerCaseQuery);
+        }
+    }
+
+    private class ContentSubscriber extends SearchSubscriber<List<ContentMatch>> {
+        ContentSubscriber(ContentBfsFlowable source) {
+            super(source);
+        }
+
+        @Override
+        void onResults(List<ContentMatch> matches) {
+            for (ContentMatch match : matches) {
+                searchState.addContentMatch(match);
+            }
+        }
+    }
+
+    private class RankedSubscriber extends SearchSubscriber<List<String>> {
+        RankedSubscriber(RankedBfsFlowable source) {
+            super(source);
+        }
+
+        @Override
+        void onResults(List<String> bestFirst) {
+            searchState.setResults(bestFirst);
+        }
+    }
+
+    private abstract class SearchSubscriber<T> implements FlowableSubscriber<T> {
+        final SearchState searchState = new SearchState();
+        boolean completed = false;
+        private final BfsFlowable<?> source;
         private Subscription subscription;
 
+        SearchSubscriber(BfsFlowable<?> source) {
+            this.source = source;
+        }
+
         @Override
         public void onSubscribe(Subscription s) {
 //            Logger.logV(TAG_SEARCH, "Search start");
@@ -163,14 +701,14 @@ public class Searcher {
         }
 
         @Override
-        public void onNext(List<String> strings) {
-            for (String s : strings) {
-                searchState.addResult(s);
-            }
+        public void onNext(T results) {
+            onResults(results);
             emitStateUpdate();
             subscription.request(1);
         }
 
+        abstract void onResults(T results);
+
         @Override
         public void onError(Throwable t) {
 //            Logger.logV(TAG_SEARCH, "Search error");
@@ -183,12 +721,14 @@ public class Searcher {
         @Override
         public void onComplete() {
 //            Logger.logV(TAG_SEARCH, "Search finished");
+            completed = true;
+            if (source.isPartial()) searchState.setPartial();
             searchState.setFinished();
             emitStateUpdate();
             subscription.cancel();
         }
 
-        private void emitStateUpdate() {
+        void emitStateUpdate() {
             observableResults.setValue(new SearchState(searchState));
         }
     }
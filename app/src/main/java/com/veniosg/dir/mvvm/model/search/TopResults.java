@@ -0,0 +1,70 @@
+package com.veniosg.dir.mvvm.model.search;
+
+import android.support.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Keeps the best {@link #capacity} scored paths seen so far, in a min-heap so that offering a
+ * new path costs O(log capacity) no matter how many paths have been offered.
+ */
+class TopResults {
+    private static final Comparator<Scored> WORST_FIRST = (s1, s2) -> {
+        if (s1.score != s2.score) return s1.score < s2.score ? -1 : 1;
+        // Deterministic order for equal scores, shorter paths win
+        return s2.path.length() - s1.path.length();
+    };
+
+    private final int capacity;
+    private final PriorityQueue<Scored> heap;
+
+    TopResults(int capacity) {
+        this.capacity = capacity;
+        this.heap = new PriorityQueue<>(capacity, WORST_FIRST);
+    }
+
+    /**
+     * @return Whether the path made it into the current top results.
+     */
+    boolean offer(@NonNull String path, int score) {
+        Scored candidate = new Scored(path, score);
+        if (heap.size() < capacity) {
+            heap.add(candidate);
+            return true;
+        } else if (WORST_FIRST.compare(candidate, heap.peek()) > 0) {
+            heap.poll();
+            heap.add(candidate);
+            return true;
+        } else {
+            return false;
+        }
+    }
+
+    /**
+     * @return The current top paths, best first.
+     */
+    @NonNull
+    List<String> snapshot() {
+        Scored[] sorted = heap.toArray(new Scored[heap.size()]);
+        Arrays.sort(sorted, WORST_FIRST);
+        List<String> paths = new ArrayList<>(sorted.length);
+        for (int i = sorted.length - 1; i >= 0; i--) {
+            paths.add(sorted[i].path);
+        }
+        return paths;
+    }
+
+    private static class Scored {
+        final String path;
+        final int score;
+
+        Scored(String path, int score) {
+            this.path = path;
+            this.score = score;
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.veniosg.dir.mvvm.model.storage;
+
+import android.support.annotation.NonNull;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Lends out I/O buffers, so that operations going through many small files or archive entries
+ * don't allocate, and later collect, a buffer for each one. Buffers are taken before a transfer
+ * and given back once it's done, whether it succeeded or not.
+ * <p>
+ * Safe to use from several threads.
+ */
+public class BufferPool {
+    /**
+     * For files read or written directly. Large enough that the cost of each call is lost in
+     * the cost of moving the bytes.
+     */
+    public static final int FILE_BUFFER_SIZE = 256 * 1024;
+    /**
+     * For streams handed out by document providers, which may be pipes that take 64 KiB at a
+     * time. Bigger buffers would only wait longer for them to drain.
+     */
+    public static final int STREAM_BUFFER_SIZE = 64 * 1024;
+
+    private final int maxPooledPerSize;
+    private final Map<Integer, Deque<byte[]>> arrays = new HashMap<>();
+    private final Map<Integer, Deque<ByteBuffer>> directBuffers = new HashMap<>();
+
+    /**
+     * @param maxPooledPerSize How many returned buffers of each size to keep. Any more are left
+     *                         to be collected, so a burst of concurrent transfers doesn't pin
+     *                         its memory for good.
+     */
+    BufferPool(int maxPooledPerSize) {
+        this.maxPooledPerSize = maxPooledPerSize;
+    }
+
+    /**
+     * @return An array of length size, holding whatever its last user left in it.
+     */
+    @NonNull
+    public byte[] takeArray(int size) {
+        byte[] array;
+        synchronized (this) {
+            array = pooled(arrays, size).pollFirst();
+        }
+        return array != null ? array : new byte[size];
+    }
+
+    public void giveArray(@NonNull byte[] array) {
+        synchronized (this) {
+            Deque<byte[]> pool = pooled(arrays, array.length);
+            if (pool.size() < maxPooledPerSize) pool.addFirst(array);
+        }
+    }
+
+    /**
+     * @return A cleared direct buffer with a capacity of size. Direct buffers are costly to
+     * allocate, but channels read into and write from them without an extra copy.
+     */
+    @NonNull
+    public ByteBuffer takeDirect(int size) {
+        ByteBuffer buffer;
+        synchronized (this) {
+            buffer = pooled(directBuffers, size).pollFirst();
+        }
+        if (buffer == null) return ByteBuffer.allocateDirect(size);
+
+        buffer.clear();
+        return buffer;
+    }
+
+    public void giveDirect(@NonNull ByteBuffer buffer) {
+        synchronized (this) {
+            Deque<ByteBuffer> pool = pooled(directBuffers, buffer.capacity());
+            if (pool.size() < maxPooledPerSize) pool.addFirst(buffer);
+        }
+    }
+
+    private static <T> Deque<T> pooled(Map<Integer, Deque<T>> pools, int size) {
+        Deque<T> pool = pools.get(size);
+        if (pool == null) {
+            pool = new ArrayDeque<>();
+            pools.put(size, pool);
+        }
+        return pool;
+    }
+}
@@ -0,0 +1,16 @@
+package com.veniosg.dir.mvvm.model.storage;
+
+public abstract class BufferPoolInjector {
+    /**
+     * Enough for a few operations copying small files concurrently, each on several threads.
+     */
+    private static final int MAX_POOLED_PER_SIZE = 8;
+    private static final BufferPool POOL = new BufferPool(MAX_POOLED_PER_SIZE);
+
+    private BufferPoolInjector() {
+    }
+
+    public static BufferPool bufferPool() {
+        return POOL;
+    }
+}
@@ -1,8 +1,13 @@
 package com.veniosg.dir.mvvm.model.storage;
 
+import android.content.ContentResolver;
 import android.content.Context;
 import android.content.UriPermission;
+import android.database.Cursor;
 import android.net.Uri;
+import android.os.ParcelFileDescriptor;
+import android.provider.DocumentsContract;
+import android.support.annotation.RequiresApi;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.support.v4.provider.DocumentFile;
@@ -10,9 +15,16 @@ import android.support.v4.provider.DocumentFile;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.List;
 
+import static android.os.Build.VERSION.SDK_INT;
+import static android.os.Build.VERSION_CODES.N;
+import static android.provider.DocumentsContract.Document.COLUMN_FLAGS;
+import static android.provider.DocumentsContract.Document.FLAG_SUPPORTS_COPY;
+import static android.provider.DocumentsContract.Document.FLAG_SUPPORTS_MOVE;
+import static android.provider.DocumentsContract.Document.FLAG_SUPPORTS_RENAME;
 import static android.support.v4.provider.DocumentFile.fromTreeUri;
 import static com.veniosg.dir.android.util.FileUtils.delete;
 import static com.veniosg.dir.android.util.FileUtils.getExtSdCardPaths;
@@ -29,6 +41,121 @@ public abstract class DocumentFileUtils {
         return out;
     }
 
+    @NonNull
+    public static InputStream inputStreamFor(@NonNull DocumentFile inFile, @NonNull Context context)
+            throws FileNotFoundException {
+        InputStream in = context.getContentResolver().openInputStream(inFile.getUri());
+        if (in == null) throw new FileNotFoundException("Could not open DocumentFile InputStream");
+
+        return in;
+    }
+
+    /**
+     * Open outFile for writing through a file descriptor, which unlike the provider's
+     * OutputStream allows bulk transfers straight into it.
+     *
+     * @return The descriptor, or null if the provider can't give us one.
+     */
+    @Nullable
+    public static ParcelFileDescriptor fileDescriptorFor(@NonNull DocumentFile outFile,
+                                                         @NonNull Context context) {
+        try {
+            return context.getContentResolver().openFileDescriptor(outFile.getUri(), "w");
+        } catch (FileNotFoundException | IllegalArgumentException | SecurityException e) {
+            log(e);
+            return null;
+        }
+    }
+
+    /**
+     * Ask the provider to copy source to target itself, without its bytes passing through us.
+     * Only possible if both are in the same granted tree and the provider supports it.
+     *
+     * @return Whether target was created.
+     */
+    public static boolean providerCopy(@NonNull Context context, @NonNull File source,
+                                       @NonNull File target) {
+        if (SDK_INT < N || !source.exists() || target.exists()) return false;
+
+        DocumentFile sourceDoc = findFile(context, source);
+        File targetParent = target.getParentFile();
+        if (sourceDoc == null || targetParent == null || !targetParent.exists()) return false;
+        DocumentFile targetParentDoc = findFile(context, targetParent);
+        if (targetParentDoc == null) return false;
+
+        ContentResolver resolver = context.getContentResolver();
+        int flags = flagsOf(resolver, sourceDoc.getUri());
+        if ((flags & FLAG_SUPPORTS_COPY) == 0) return false;
+
+        try {
+            Uri copy = DocumentsContract.copyDocument(resolver, sourceDoc.getUri(),
+                    targetParentDoc.getUri());
+            if (copy == null) return false;
+            return source.getName().equals(target.getName())
+                    || renameTo(resolver, copy, target.getName());
+        } catch (FileNotFoundException | IllegalArgumentException | SecurityException
+                | UnsupportedOperationException e) {
+            log(e);
+            return false;
+        }
+    }
+
+    /**
+     * Ask the provider to move source into targetParent, keeping its name.
+     * Only possible if both are in the same granted tree and the provider supports it.
+     *
+     * @return Whether source was moved.
+     */
+    public static boolean providerMove(@NonNull Context context, @NonNull File source,
+                                       @NonNull File targetParent) {
+        File sourceParent = source.getParentFile();
+        if (SDK_INT < N || sourceParent == null || !source.exists() || !targetParent.exists()
+                || new File(targetParent, source.getName()).exists()) {
+            return false;
+        }
+
+        DocumentFile sourceDoc = findFile(context, source);
+        DocumentFile sourceParentDoc = findFile(context, sourceParent);
+        DocumentFile targetParentDoc = findFile(context, targetParent);
+        if (sourceDoc == null || sourceParentDoc == null || targetParentDoc == null) return false;
+
+        ContentResolver resolver = context.getContentResolver();
+        int flags = flagsOf(resolver, sourceDoc.getUri());
+        if ((flags & FLAG_SUPPORTS_MOVE) == 0) return false;
+
+        try {
+            return DocumentsContract.moveDocument(resolver, sourceDoc.getUri(),
+                    sourceParentDoc.getUri(), targetParentDoc.getUri()) != null;
+        } catch (FileNotFoundException | IllegalArgumentException | SecurityException
+                | UnsupportedOperationException e) {
+            log(e);
+            return false;
+        }
+    }
+
+    @RequiresApi(N)
+    private static boolean renameTo(ContentResolver resolver, Uri document, String name)
+            throws FileNotFoundException {
+        if ((flagsOf(resolver, document) & FLAG_SUPPORTS_RENAME) != 0
+                && DocumentsContract.renameDocument(resolver, document, name) != null) {
+            return true;
+        }
+
+        // The copy is useless under the wrong name
+        DocumentsContract.deleteDocument(resolver, document);
+        return false;
+    }
+
+    private static int flagsOf(ContentResolver resolver, Uri document) {
+        try (Cursor cursor = resolver.query(document, new String[]{COLUMN_FLAGS},
+                null, null, null)) {
+            if (cursor != null && cursor.moveToFirst()) return cursor.getInt(0);
+        } catch (IllegalArgumentException | SecurityException e) {
+            log(e);
+        }
+        return 0;
+    }
+
     /**
      * Very crude check.
      *
@@ -0,0 +1,22 @@
+package com.veniosg.dir.mvvm.model.storage;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.io.File;
+
+public interface FileAttributeReader {
+    /**
+     * @return The attributes of file, following symbolic links, or null if it doesn't exist or
+     * can't be read.
+     */
+    @Nullable
+    FileAttributes read(@NonNull File file);
+
+    /**
+     * Like {@link #read(File)}, but if file is a symbolic link, returns the attributes of the
+     * link itself.
+     */
+    @Nullable
+    FileAttributes readLink(@NonNull File file);
+}
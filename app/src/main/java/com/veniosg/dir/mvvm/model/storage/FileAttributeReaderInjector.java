@@ -0,0 +1,12 @@
+package com.veniosg.dir.mvvm.model.storage;
+
+public abstract class FileAttributeReaderInjector {
+    private static final FileAttributeReader OS_READER = new OsFileAttributeReader();
+
+    private FileAttributeReaderInjector() {
+    }
+
+    public static FileAttributeReader attributeReader() {
+        return OS_READER;
+    }
+}
@@ -0,0 +1,98 @@
+package com.veniosg.dir.mvvm.model.storage;
+
+/**
+ * The attributes of a file as read by a single stat call.
+ */
+public class FileAttributes {
+    /**
+     * Device and inode number when they're not known.
+     */
+    public static final long UNKNOWN_ID = -1;
+
+    private final boolean directory;
+    private final boolean regular;
+    private final boolean symlink;
+    private final long size;
+    private final long lastModified;
+    private final long device;
+    private final long inode;
+
+    /**
+     * For entries that are either directories or regular files, such as those of archives.
+     */
+    public FileAttributes(boolean directory, long size, long lastModified) {
+        this(directory, !directory, false, size, lastModified, UNKNOWN_ID, UNKNOWN_ID);
+    }
+
+    FileAttributes(boolean directory, boolean regular, boolean symlink, long size,
+                   long lastModified, long device, long inode) {
+        this.directory = directory;
+        this.regular = regular;
+        this.symlink = symlink;
+        this.size = size;
+        this.lastModified = lastModified;
+        this.device = device;
+        this.inode = inode;
+    }
+
+    public boolean isDirectory() {
+        return directory;
+    }
+
+    /**
+     * @return Whether this is a regular file, as opposed to a directory, a link, or a special
+     * file such as a pipe, socket or device. Reading special files may block or never end.
+     */
+    public boolean isFile() {
+        return regular;
+    }
+
+    /**
+     * @return Whether these are the attributes of a symbolic link itself, rather than of what
+     * it points to. Only ever true if read without following links.
+     */
+    public boolean isSymlink() {
+        return symlink;
+    }
+
+    /**
+     * @return Size in bytes.
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * @return Modification time in milliseconds since the epoch.
+     */
+    public long lastModified() {
+        return lastModified;
+    }
+
+    /**
+     * @return The ID of the device the file is on, or {@link #UNKNOWN_ID}.
+     */
+    public long device() {
+        return device;
+    }
+
+    /**
+     * @return The inode number of the file, or {@link #UNKNOWN_ID}.
+     */
+    public long inode() {
+        return inode;
+    }
+
+    @Override
+    public String toString() {
+        return "FileAttributes{" +
+                "directory=" + directory +
+                ", regular=" + regular +
+                ", symlink=" + symlink +
+                ", size=" + size +
+                ", lastModified=" + lastModified +
+                ", device=" + device +
+                ", inode=" + inode +
+                '}';
+    }
+}
@@ -0,0 +1,157 @@
+package com.veniosg.dir.mvvm.model.storage;
+
+import android.support.annotation.VisibleForTesting;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * Shares storage bandwidth between what the user is looking at and background transfers.
+ * <p>
+ * Foreground work, such as listing a directory, is bracketed by {@link #enterForeground()} and
+ * {@link #exitForeground()}. Background transfers report each chunk they move to
+ * {@link #acquire(long)}, which holds them back to a trickle while foreground work is pending
+ * and to the user's cap otherwise. A transfer that waits between chunks leaves the device queue
+ * short, so foreground reads aren't stuck behind it.
+ * <p>
+ * All transfers draw from one token bucket, so the cap applies to them combined.
+ */
+public class IoArbiter {
+    /**
+     * Bandwidth cap meaning there is none.
+     */
+    public static final long UNLIMITED = 0;
+    /**
+     * Background rate while foreground work is pending, in bytes per second.
+     */
+    private static final long YIELDING_RATE = 2 * 1024 * 1024;
+    /**
+     * Foreground work comes in bursts, such as a listing followed by its thumbnails, so it's
+     * considered pending for a while after it ends.
+     */
+    private static final long FOREGROUND_GRACE_NANOS = MILLISECONDS.toNanos(500);
+    /**
+     * Unused bandwidth saved up for later, in seconds at the current rate.
+     */
+    private static final double BURST_SECONDS = 0.25;
+    private static final long MAX_SLEEP_NANOS = MILLISECONDS.toNanos(50);
+    private static final int CHUNKS_PER_SECOND = 10;
+    private static final long MIN_CHUNK_SIZE = 64 * 1024;
+
+    private final Clock clock;
+    private final AtomicInteger foregroundCount = new AtomicInteger();
+    private volatile long foregroundEndNanos;
+    private volatile long bandwidthCap = UNLIMITED;
+    private double tokens = 0;
+    private long lastRefillNanos;
+
+    IoArbiter() {
+        this(new Clock());
+    }
+
+    @VisibleForTesting
+    IoArbiter(Clock clock) {
+        this.clock = clock;
+        this.foregroundEndNanos = clock.nanoTime() - FOREGROUND_GRACE_NANOS;
+        this.lastRefillNanos = clock.nanoTime();
+    }
+
+    /**
+     * @param bytesPerSecond Most background transfers may move combined, or {@link #UNLIMITED}.
+     */
+    public void setBandwidthCap(long bytesPerSecond) {
+        bandwidthCap = bytesPerSecond;
+    }
+
+    /**
+     * Call before foreground work touches storage, and {@link #exitForeground()} once it's done.
+     */
+    public void enterForeground() {
+        foregroundCount.incrementAndGet();
+    }
+
+    public void exitForeground() {
+        foregroundEndNanos = clock.nanoTime();
+        foregroundCount.decrementAndGet();
+    }
+
+    /**
+     * Account for bytes a background transfer just moved, waiting for as long as the current
+     * rate requires.
+     *
+     * @throws InterruptedIOException If the waiting thread was interrupted.
+     */
+    public void acquire(long bytes) throws InterruptedIOException {
+        long rate = currentRate();
+        if (rate == UNLIMITED) return;
+
+        long waitNanos;
+        synchronized (this) {
+            refill(rate);
+            tokens -= bytes;
+            waitNanos = debtNanos(rate);
+        }
+        while (waitNanos > 0) {
+            try {
+                clock.sleep(Math.min(waitNanos, MAX_SLEEP_NANOS));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            }
+
+            // Foreground work may have ended, or the cap changed, meanwhile
+            rate = currentRate();
+            if (rate == UNLIMITED) return;
+            synchronized (this) {
+                refill(rate);
+                waitNanos = debtNanos(rate);
+            }
+        }
+    }
+
+    /**
+     * @return The most bytes a transfer should move between calls to {@link #acquire(long)},
+     * so that it isn't held back in large steps.
+     */
+    public long chunkLimit() {
+        long rate = currentRate();
+        return rate == UNLIMITED
+                ? Long.MAX_VALUE
+                : Math.max(MIN_CHUNK_SIZE, rate / CHUNKS_PER_SECOND);
+    }
+
+    private long currentRate() {
+        long cap = bandwidthCap;
+        boolean foregroundPending = foregroundCount.get() > 0
+                || clock.nanoTime() - foregroundEndNanos < FOREGROUND_GRACE_NANOS;
+        if (!foregroundPending) return cap;
+
+        return cap == UNLIMITED ? YIELDING_RATE : Math.min(cap, YIELDING_RATE);
+    }
+
+    private void refill(long rate) {
+        long now = clock.nanoTime();
+        double earned = (double) (now - lastRefillNanos) / SECONDS.toNanos(1) * rate;
+        tokens = Math.min(rate * BURST_SECONDS, tokens + earned);
+        lastRefillNanos = now;
+    }
+
+    private long debtNanos(long rate) {
+        return tokens >= 0 ? 0 : (long) (-tokens / rate * SECONDS.toNanos(1));
+    }
+
+    @VisibleForTesting
+    static class Clock {
+        long nanoTime() {
+            return System.nanoTime();
+        }
+
+        void sleep(long nanos) throws InterruptedException {
+            NANOSECONDS.sleep(nanos);
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.veniosg.dir.mvvm.model.storage;
+
+public abstract class IoArbiterInjector {
+    private static final IoArbiter ARBITER = new IoArbiter();
+
+    private IoArbiterInjector() {
+    }
+
+    /**
+     * @return The arbiter shared by everything in the process, as they share the storage.
+     */
+    public static IoArbiter ioArbiter() {
+        return ARBITER;
+    }
+}
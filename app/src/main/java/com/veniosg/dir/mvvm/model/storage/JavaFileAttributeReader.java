@@ -0,0 +1,35 @@
+package com.veniosg.dir.mvvm.model.storage;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.io.File;
+
+import static com.veniosg.dir.android.util.FileUtils.isSymlink;
+import static com.veniosg.dir.mvvm.model.storage.FileAttributes.UNKNOWN_ID;
+
+/**
+ * Portable but slower {@link FileAttributeReader}, useful where {@link android.system.Os} is
+ * not available. Device and inode numbers are never known.
+ */
+public class JavaFileAttributeReader implements FileAttributeReader {
+    @Nullable
+    @Override
+    public FileAttributes read(@NonNull File file) {
+        boolean directory = file.isDirectory();
+        if (!directory && !file.exists()) return null;
+
+        // Unlike exists(), isFile() is false for pipes, sockets and devices
+        return new FileAttributes(directory, file.isFile(), false, file.length(),
+                file.lastModified(), UNKNOWN_ID, UNKNOWN_ID);
+    }
+
+    @Nullable
+    @Override
+    public FileAttributes readLink(@NonNull File file) {
+        if (!isSymlink(file)) return read(file);
+
+        return new FileAttributes(false, false, true, 0, file.lastModified(), UNKNOWN_ID,
+                UNKNOWN_ID);
+    }
+}
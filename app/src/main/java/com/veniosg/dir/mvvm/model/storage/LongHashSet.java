@@ -0,0 +1,75 @@
+package com.veniosg.dir.mvvm.model.storage;
+
+/**
+ * A set of longs using open addressing over a primitive array, so that adding an element
+ * never allocates unless the set grows.
+ */
+class LongHashSet {
+    private static final long EMPTY = 0;
+
+    private long[] slots;
+    private int size;
+    // Zero marks empty slots, so it is tracked separately
+    private boolean containsZero;
+
+    LongHashSet() {
+        slots = new long[64];
+    }
+
+    /**
+     * @return Whether value was not already in the set.
+     */
+    boolean add(long value) {
+        if (value == EMPTY) {
+            boolean added = !containsZero;
+            containsZero = true;
+            return added;
+        }
+
+        if ((size + 1) * 4 > slots.length * 3) grow();
+        if (insert(slots, value)) {
+            size++;
+            return true;
+        }
+        return false;
+    }
+
+    boolean contains(long value) {
+        if (value == EMPTY) return containsZero;
+
+        int mask = slots.length - 1;
+        for (int i = indexOf(value, mask); ; i = (i + 1) & mask) {
+            if (slots[i] == EMPTY) return false;
+            if (slots[i] == value) return true;
+        }
+    }
+
+    int size() {
+        return containsZero ? size + 1 : size;
+    }
+
+    private void grow() {
+        long[] grown = new long[slots.length * 2];
+        for (long value : slots) {
+            if (value != EMPTY) insert(grown, value);
+        }
+        slots = grown;
+    }
+
+    private static boolean insert(long[] into, long value) {
+        int mask = into.length - 1;
+        for (int i = indexOf(value, mask); ; i = (i + 1) & mask) {
+            if (into[i] == EMPTY) {
+                into[i] = value;
+                return true;
+            }
+            if (into[i] == value) return false;
+        }
+    }
+
+    private static int indexOf(long value, int mask) {
+        // Inodes are often sequential, so spread them before masking
+        long hash = value * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+}
@@ -0,0 +1,261 @@
+package com.veniosg.dir.mvvm.model.storage;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.VisibleForTesting;
+
+import com.veniosg.dir.mvvm.model.FileHolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+import static com.veniosg.dir.android.util.Logger.log;
+import static com.veniosg.dir.mvvm.model.storage.TreeWalker.treeWalker;
+import static java.util.Collections.singletonList;
+import static java.util.Collections.unmodifiableList;
+
+/**
+ * Every entry under the items of an operation, read in a single walk of each item. Checking for
+ * space, showing progress, doing the work and informing the media scanner all read the
+ * manifest instead of walking the trees again.
+ * <p>
+ * Entries are listed depth-first, each directory before its contents.
+ */
+public class OperationManifest {
+    @NonNull
+    private final List<Item> items;
+    private final int fileCount;
+    private final long size;
+
+    private OperationManifest(@NonNull List<Item> items) {
+        this.items = items;
+        int fileCount = 0;
+        long size = 0;
+        for (Item item : items) {
+            fileCount += item.fileCount;
+            size += item.size;
+        }
+        this.fileCount = fileCount;
+        this.size = size;
+    }
+
+    /**
+     * @param followSymlinks Whether to list what links point to, as copying does, or the links
+     *                       themselves, as deleting must. Applies to the files themselves too.
+     */
+    public static OperationManifest manifestOf(@NonNull List<FileHolder> files,
+                                               boolean followSymlinks) {
+        return manifestOf(files, treeWalker()
+                .followingSymlinks(followSymlinks)
+                .followingRoot(followSymlinks));
+    }
+
+    @VisibleForTesting
+    static OperationManifest manifestOf(@NonNull List<FileHolder> files,
+                                        @NonNull TreeWalker walker) {
+        List<Item> items = new ArrayList<>(files.size());
+        for (FileHolder file : files) {
+            Lister lister = new Lister();
+            boolean readable = true;
+            try {
+                walker.walk(file.getFile(), lister);
+            } catch (IOException e) {
+                log(e);
+                readable = false;
+            }
+            items.add(new Item(file, lister.entries, readable));
+        }
+        return new OperationManifest(items);
+    }
+
+    @NonNull
+    public List<Item> getItems() {
+        return unmodifiableList(items);
+    }
+
+    /**
+     * @return How many entries are not directories.
+     */
+    public int getFileCount() {
+        return fileCount;
+    }
+
+    /**
+     * @return Total size of all files in bytes.
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * One of the files the operation was given, and everything under it.
+     */
+    public static class Item {
+        @NonNull
+        private final FileHolder holder;
+        @NonNull
+        private final List<Entry> entries;
+        private final boolean readable;
+        private final int fileCount;
+        private final long size;
+
+        private Item(@NonNull FileHolder holder, @NonNull List<Entry> entries, boolean readable) {
+            this.holder = holder;
+            this.entries = entries;
+            this.readable = readable;
+            int fileCount = 0;
+            long size = 0;
+            for (Entry entry : entries) {
+                if (entry.isDirectory()) continue;
+                fileCount++;
+                size += entry.getAttributes().size();
+            }
+            this.fileCount = fileCount;
+            this.size = size;
+        }
+
+        @NonNull
+        public FileHolder getHolder() {
+            return holder;
+        }
+
+        @NonNull
+        public File getFile() {
+            return holder.getFile();
+        }
+
+        /**
+         * @return All entries, starting with the item itself. Empty if it couldn't be read.
+         */
+        @NonNull
+        public List<Entry> getEntries() {
+            return unmodifiableList(entries);
+        }
+
+        /**
+         * @return Whether the item existed and could be walked when the manifest was made.
+         */
+        public boolean isReadable() {
+            return readable;
+        }
+
+        public int getFileCount() {
+            return fileCount;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        /**
+         * @return The absolute paths of all entries.
+         */
+        @NonNull
+        public List<String> getPaths() {
+            List<String> paths = new ArrayList<>(entries.size());
+            for (Entry entry : entries) {
+                paths.add(entry.getFile().getAbsolutePath());
+            }
+            return paths;
+        }
+
+        /**
+         * @return The absolute paths all entries would have if the item was at newRoot.
+         */
+        @NonNull
+        public List<String> getPathsUnder(@NonNull File newRoot) {
+            List<String> paths = new ArrayList<>(entries.size());
+            for (Entry entry : entries) {
+                paths.add(entry.relocatedTo(newRoot).getAbsolutePath());
+            }
+            return paths;
+        }
+
+        /**
+         * @return A manifest of this item alone, for operations that handle items one by one.
+         */
+        @NonNull
+        public OperationManifest toManifest() {
+            return new OperationManifest(singletonList(this));
+        }
+    }
+
+    public static class Entry {
+        @NonNull
+        private final File file;
+        @NonNull
+        private final String relativePath;
+        @NonNull
+        private final FileAttributes attributes;
+        private int childCount = -1;
+
+        private Entry(@NonNull TreeWalker.Entry entry) {
+            this.file = entry.getFile();
+            this.relativePath = entry.getRelativePath();
+            this.attributes = entry.getAttributes();
+        }
+
+        @NonNull
+        public File getFile() {
+            return file;
+        }
+
+        /**
+         * @return The path of this entry relative to its item, which is "" itself.
+         */
+        @NonNull
+        public String getRelativePath() {
+            return relativePath;
+        }
+
+        @NonNull
+        public FileAttributes getAttributes() {
+            return attributes;
+        }
+
+        public boolean isDirectory() {
+            return attributes.isDirectory();
+        }
+
+        /**
+         * @return How many entries this directory has, or -1 if this is not a directory.
+         */
+        public int getChildCount() {
+            return childCount;
+        }
+
+        /**
+         * @return Where this entry would be if its item was at newRoot.
+         */
+        @NonNull
+        public File relocatedTo(@NonNull File newRoot) {
+            return relativePath.isEmpty() ? newRoot : new File(newRoot, relativePath);
+        }
+    }
+
+    private static class Lister extends TreeWalker.Visitor {
+        final List<Entry> entries = new ArrayList<>();
+        private final Deque<Entry> openDirectories = new ArrayDeque<>();
+
+        @Override
+        public boolean preVisitDirectory(@NonNull TreeWalker.Entry directory) {
+            Entry entry = new Entry(directory);
+            entries.add(entry);
+            openDirectories.push(entry);
+            return true;
+        }
+
+        @Override
+        public void visitFile(@NonNull TreeWalker.Entry file) {
+            entries.add(new Entry(file));
+        }
+
+        @Override
+        public void postVisitDirectory(@NonNull TreeWalker.Entry directory) {
+            openDirectories.pop().childCount = directory.getChildCount();
+        }
+    }
+}
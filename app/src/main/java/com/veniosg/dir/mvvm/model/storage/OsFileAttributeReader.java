@@ -0,0 +1,44 @@
+package com.veniosg.dir.mvvm.model.storage;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.system.ErrnoException;
+import android.system.Os;
+import android.system.StructStat;
+
+import java.io.File;
+
+import static android.system.OsConstants.S_ISDIR;
+import static android.system.OsConstants.S_ISLNK;
+import static android.system.OsConstants.S_ISREG;
+
+/**
+ * Reads everything with one stat(2), where {@link File} would need a syscall per attribute.
+ */
+class OsFileAttributeReader implements FileAttributeReader {
+    @Nullable
+    @Override
+    public FileAttributes read(@NonNull File file) {
+        try {
+            return from(Os.stat(file.getAbsolutePath()));
+        } catch (ErrnoException e) {
+            return null;
+        }
+    }
+
+    @Nullable
+    @Override
+    public FileAttributes readLink(@NonNull File file) {
+        try {
+            return from(Os.lstat(file.getAbsolutePath()));
+        } catch (ErrnoException e) {
+            return null;
+        }
+    }
+
+    private static FileAttributes from(StructStat stat) {
+        return new FileAttributes(S_ISDIR(stat.st_mode), S_ISREG(stat.st_mode),
+                S_ISLNK(stat.st_mode), stat.st_size, stat.st_mtime * 1000, stat.st_dev,
+                stat.st_ino);
+    }
+}
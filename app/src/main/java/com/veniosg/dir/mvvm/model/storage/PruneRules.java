@@ -0,0 +1,195 @@
+package com.veniosg.dir.mvvm.model.storage;
+
+import android.support.annotation.NonNull;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Parts of a tree that a walk should not bother with, and how long it may take.
+ * Exclusions are checked before an entry is even read, and never apply to the root of a walk.
+ */
+public class PruneRules {
+    public static final int UNLIMITED = 0;
+
+    static final PruneRules NONE = new PruneRules();
+
+    private List<String> excludedGlobs = Collections.emptyList();
+    private List<Pattern> excludedNames = Collections.emptyList();
+    private List<Pattern> excludedPaths = Collections.emptyList();
+    private boolean skipHiddenDirectories = false;
+    private int maxDepth = TreeWalker.UNLIMITED_DEPTH;
+    private long timeBudgetMillis = UNLIMITED;
+    private int resultBudget = UNLIMITED;
+
+    private PruneRules() {
+    }
+
+    private PruneRules(PruneRules from) {
+        excludedGlobs = from.excludedGlobs;
+        excludedNames = from.excludedNames;
+        excludedPaths = from.excludedPaths;
+        skipHiddenDirectories = from.skipHiddenDirectories;
+        maxDepth = from.maxDepth;
+        timeBudgetMillis = from.timeBudgetMillis;
+        resultBudget = from.resultBudget;
+    }
+
+    /**
+     * @return Rules that prune nothing. Add to them using the other methods.
+     */
+    public static PruneRules none() {
+        return NONE;
+    }
+
+    /**
+     * @return Rules excluding app data, caches and dependency trees that are large, rarely
+     * interesting and slow to walk.
+     */
+    public static PruneRules commonClutter() {
+        return NONE.excluding("Android/data", "Android/obb", ".thumbnails", ".git",
+                "node_modules");
+    }
+
+    /**
+     * Skip entries matching any of the globs, and everything under them. Globs without a slash
+     * match names, globs with one match the end of paths, so "Android/data" excludes the data
+     * directory of any Android directory. "*" and "?" match within one path segment, "**"
+     * across segments.
+     */
+    public PruneRules excluding(@NonNull String... globs) {
+        PruneRules rules = new PruneRules(this);
+        rules.excludedGlobs = new ArrayList<>(excludedGlobs);
+        rules.excludedNames = new ArrayList<>(excludedNames);
+        rules.excludedPaths = new ArrayList<>(excludedPaths);
+        for (String glob : globs) {
+            rules.excludedGlobs.add(glob);
+            if (glob.contains("/")) {
+                rules.excludedPaths.add(Pattern.compile("(.*/)?" + regexOf(glob)));
+            } else {
+                rules.excludedNames.add(Pattern.compile(regexOf(glob)));
+            }
+        }
+        return rules;
+    }
+
+    /**
+     * Skip directories whose name starts with a dot, and everything under them.
+     */
+    public PruneRules skippingHiddenDirectories() {
+        PruneRules rules = new PruneRules(this);
+        rules.skipHiddenDirectories = true;
+        return rules;
+    }
+
+    /**
+     * @see TreeWalker#maxDepth(int)
+     */
+    public PruneRules limitedToDepth(int maxDepth) {
+        PruneRules rules = new PruneRules(this);
+        rules.maxDepth = maxDepth;
+        return rules;
+    }
+
+    /**
+     * Stop walking once this much time has passed, reporting the walk as incomplete.
+     */
+    public PruneRules withTimeBudget(long millis) {
+        PruneRules rules = new PruneRules(this);
+        rules.timeBudgetMillis = millis;
+        return rules;
+    }
+
+    /**
+     * Stop walking once this many results have been found. Walks don't know what a result is,
+     * so this is up to their visitors to enforce.
+     */
+    public PruneRules withResultBudget(int results) {
+        PruneRules rules = new PruneRules(this);
+        rules.resultBudget = results;
+        return rules;
+    }
+
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    /**
+     * @return The time budget, or {@link #UNLIMITED}.
+     */
+    public long getTimeBudgetMillis() {
+        return timeBudgetMillis;
+    }
+
+    /**
+     * @return The result budget, or {@link #UNLIMITED}.
+     */
+    public int getResultBudget() {
+        return resultBudget;
+    }
+
+    /**
+     * Checks that only need the path, so they can run before anything is read from disk.
+     */
+    boolean excludes(@NonNull File file) {
+        String name = file.getName();
+        for (Pattern pattern : excludedNames) {
+            if (pattern.matcher(name).matches()) return true;
+        }
+        if (!excludedPaths.isEmpty()) {
+            String path = file.getAbsolutePath();
+            for (Pattern pattern : excludedPaths) {
+                if (pattern.matcher(path).matches()) return true;
+            }
+        }
+        return false;
+    }
+
+    boolean excludesDirectory(@NonNull File directory) {
+        return skipHiddenDirectories && directory.getName().startsWith(".");
+    }
+
+    private static String regexOf(String glob) {
+        StringBuilder regex = new StringBuilder();
+        for (int i = 0; i < glob.length(); i++) {
+            char c = glob.charAt(i);
+            if (c == '*' && i + 1 < glob.length() && glob.charAt(i + 1) == '*') {
+                regex.append(".*");
+                i++;
+            } else if (c == '*') {
+                regex.append("[^/]*");
+            } else if (c == '?') {
+                regex.append("[^/]");
+            } else {
+                regex.append(Pattern.quote(String.valueOf(c)));
+            }
+        }
+        return regex.toString();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        PruneRules that = (PruneRules) o;
+        return skipHiddenDirectories == that.skipHiddenDirectories
+                && maxDepth == that.maxDepth
+                && timeBudgetMillis == that.timeBudgetMillis
+                && resultBudget == that.resultBudget
+                && excludedGlobs.equals(that.excludedGlobs);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = excludedGlobs.hashCode();
+        result = 31 * result + (skipHiddenDirectories ? 1 : 0);
+        result = 31 * result + maxDepth;
+        result = 31 * result + (int) (timeBudgetMillis ^ (timeBudgetMillis >>> 32));
+        result = 31 * result + resultBudget;
+        return result;
+    }
+}
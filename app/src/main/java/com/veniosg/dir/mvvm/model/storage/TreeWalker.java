@@ -0,0 +1,475 @@
+package com.veniosg.dir.mvvm.model.storage;
+
+import android.support.annotation.IntDef;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.VisibleForTesting;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.lang.annotation.Retention;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.veniosg.dir.mvvm.model.storage.FileAttributeReaderInjector.attributeReader;
+import static com.veniosg.dir.mvvm.model.storage.FileAttributes.UNKNOWN_ID;
+import static java.lang.System.currentTimeMillis;
+import static java.lang.annotation.RetentionPolicy.SOURCE;
+import static java.util.concurrent.Executors.newFixedThreadPool;
+
+/**
+ * Walks a file tree iteratively, reading the attributes of every entry with a single lstat.
+ * Depth-first walks only keep the listings of the directories on the current path in memory, so
+ * memory use depends on the depth and width of the tree, never on its total size.
+ * <p>
+ * Configure a walker with the chained methods, then call {@link #walk(File, Visitor)}.
+ * Symbolic links under the root are reported as files and not followed unless
+ * {@link #followingSymlinks(boolean)} is set, in which case each directory is entered only
+ * once, however many links lead to it. The root itself is followed regardless, as walking a
+ * link usually means walking what it points to, unless {@link #followingRoot(boolean)} says
+ * otherwise.
+ */
+public class TreeWalker {
+    @Retention(SOURCE)
+    @IntDef({DEPTH_FIRST, BREADTH_FIRST})
+    @interface Order {}
+    public static final int DEPTH_FIRST = 0;
+    public static final int BREADTH_FIRST = 1;
+
+    public static final int UNLIMITED_DEPTH = Integer.MAX_VALUE;
+
+    private static final int MAX_PENDING_DIRECTORIES = 16 * 1024;
+    private static final String[] NO_NAMES = new String[0];
+    private static final Cancellation NEVER_CANCELLED = () -> false;
+
+    @NonNull
+    private final FileAttributeReader attributeReader;
+    @Order
+    private int order = DEPTH_FIRST;
+    private int maxDepth = UNLIMITED_DEPTH;
+    private boolean followSymlinks = false;
+    private boolean followRoot = true;
+    private int parallelism = 1;
+    // Directories found past this many waiting to be listed are walked depth-first instead
+    private int maxPending = MAX_PENDING_DIRECTORIES;
+    @NonNull
+    private Cancellation cancellation = NEVER_CANCELLED;
+    @NonNull
+    private PruneRules pruneRules = PruneRules.NONE;
+    private long deadline;
+
+    private TreeWalker(@NonNull FileAttributeReader attributeReader) {
+        this.attributeReader = attributeReader;
+    }
+
+    public static TreeWalker treeWalker() {
+        return new TreeWalker(attributeReader());
+    }
+
+    public static TreeWalker treeWalker(@NonNull FileAttributeReader attributeReader) {
+        return new TreeWalker(attributeReader);
+    }
+
+    /**
+     * Visit all entries of a directory before any entry of its subdirectories.
+     * {@link Visitor#postVisitDirectory(Entry)} is never called in breadth-first walks.
+     * <p>
+     * The directories waiting to be listed are kept in memory, so on very wide trees, once
+     * 16384 are waiting, further ones are walked depth-first as they're found. The order is
+     * only breadth-first up to that point.
+     */
+    public TreeWalker breadthFirst() {
+        this.order = BREADTH_FIRST;
+        return this;
+    }
+
+    @VisibleForTesting
+    TreeWalker maxPendingDirectories(int maxPending) {
+        this.maxPending = maxPending;
+        return this;
+    }
+
+    /**
+     * @param maxDepth Directories at this depth are still visited but not entered. The root is
+     *                 at depth 0.
+     */
+    public TreeWalker maxDepth(int maxDepth) {
+        this.maxDepth = maxDepth;
+        return this;
+    }
+
+    public TreeWalker followingSymlinks(boolean followSymlinks) {
+        this.followSymlinks = followSymlinks;
+        return this;
+    }
+
+    /**
+     * @param followRoot Whether to walk what the root points to if it's a link. Walks that
+     *                   change the tree, such as deleting, should only touch the link itself.
+     */
+    public TreeWalker followingRoot(boolean followRoot) {
+        this.followRoot = followRoot;
+        return this;
+    }
+
+    /**
+     * List and visit directories on this many threads. Only applies to breadth-first walks,
+     * the visitor must be thread-safe and entries are visited in no particular order.
+     */
+    public TreeWalker parallelism(int threads) {
+        this.parallelism = Math.max(1, threads);
+        return this;
+    }
+
+    /**
+     * Skip parts of the tree, see {@link PruneRules}. Its result budget is ignored, as the
+     * walker doesn't know which entries are results.
+     */
+    public TreeWalker pruning(@NonNull PruneRules pruneRules) {
+        this.pruneRules = pruneRules;
+        return this;
+    }
+
+    /**
+     * The walk stops at the next entry after cancellation reports true.
+     */
+    public TreeWalker cancellableBy(@NonNull Cancellation cancellation) {
+        this.cancellation = cancellation;
+        return this;
+    }
+
+    /**
+     * Walk the tree under root, root included, calling visitor for every entry.
+     *
+     * @return False if the walk was cancelled or ran out of time before it visited everything.
+     * @throws FileNotFoundException If root doesn't exist.
+     * @throws IOException           If visitor threw it. The walk stops at that point.
+     */
+    public boolean walk(@NonNull File root, @NonNull Visitor visitor) throws IOException {
+        Entry rootEntry = rootEntryFor(root);
+        if (rootEntry == null) throw new FileNotFoundException(root.getAbsolutePath());
+
+        long timeBudget = pruneRules.getTimeBudgetMillis();
+        deadline = timeBudget == PruneRules.UNLIMITED
+                ? Long.MAX_VALUE
+                : currentTimeMillis() + timeBudget;
+        VisitedDirectories visited = followSymlinks ? new VisitedDirectories() : null;
+        if (order == BREADTH_FIRST && parallelism > 1) {
+            return new ParallelWalk(visitor, visited).walk(rootEntry);
+        } else if (order == BREADTH_FIRST) {
+            return walkBreadthFirst(rootEntry, visitor, visited);
+        } else {
+            return walkDepthFirst(rootEntry, visitor, visited);
+        }
+    }
+
+    private boolean walkDepthFirst(Entry root, Visitor visitor,
+                                   @Nullable VisitedDirectories visited) throws IOException {
+        if (!root.attributes.isDirectory()) {
+            visitor.visitFile(root);
+            return true;
+        }
+        return !shouldEnter(root, visitor, visited) || walkEntered(root, visitor, visited, true);
+    }
+
+    /**
+     * Walk depth-first under a directory that has already been visited and entered.
+     */
+    private boolean walkEntered(Entry directory, Visitor visitor,
+                                @Nullable VisitedDirectories visited, boolean postVisit)
+            throws IOException {
+        Deque<Directory> path = new ArrayDeque<>();
+        path.push(list(directory));
+
+        while (!path.isEmpty()) {
+            if (shouldStop()) return false;
+
+            Directory current = path.peek();
+            if (current.hasNext()) {
+                Entry child = entryFor(current.next(), current.entry);
+                if (child == null) continue;
+
+                if (!child.attributes.isDirectory()) {
+                    visitor.visitFile(child);
+                } else if (shouldEnter(child, visitor, visited)) {
+                    path.push(list(child));
+                }
+            } else {
+                path.pop();
+                if (postVisit) visitor.postVisitDirectory(current.entry);
+            }
+        }
+        return true;
+    }
+
+    private boolean walkBreadthFirst(Entry root, Visitor visitor,
+                                     @Nullable VisitedDirectories visited) throws IOException {
+        // Only directories wait in the queue, files are visited as soon as they're listed
+        Deque<Entry> pending = new ArrayDeque<>();
+        if (root.attributes.isDirectory()) {
+            if (shouldEnter(root, visitor, visited)) pending.add(root);
+        } else {
+            visitor.visitFile(root);
+        }
+
+        while (!pending.isEmpty()) {
+            Directory current = list(pending.removeFirst());
+            while (current.hasNext()) {
+                if (shouldStop()) return false;
+
+                Entry child = entryFor(current.next(), current.entry);
+                if (child == null) continue;
+
+                if (!child.attributes.isDirectory()) {
+                    visitor.visitFile(child);
+                } else if (!shouldEnter(child, visitor, visited)) {
+                    continue;
+                } else if (pending.size() < maxPending) {
+                    pending.add(child);
+                } else if (!walkEntered(child, visitor, visited, false)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private boolean shouldStop() {
+        return cancellation.isCancelled() || currentTimeMillis() > deadline;
+    }
+
+    /**
+     * Visits a directory and decides whether to list it.
+     */
+    private boolean shouldEnter(Entry directory, Visitor visitor,
+                                @Nullable VisitedDirectories visited) throws IOException {
+        if (directory.depth > 0 && pruneRules.excludesDirectory(directory.file)) return false;
+        if (visited != null) {
+            synchronized (visited) {
+                if (!visited.markVisited(directory.attributes)) return false;
+            }
+        }
+        return visitor.preVisitDirectory(directory)
+                && directory.depth < Math.min(maxDepth, pruneRules.getMaxDepth());
+    }
+
+    private Directory list(Entry directory) {
+        String[] names = directory.file.list();
+        if (names == null) names = NO_NAMES;
+        directory.childCount = names.length;
+        return new Directory(directory, names);
+    }
+
+    @Nullable
+    private Entry rootEntryFor(File root) {
+        FileAttributes attributes = followRoot ? attributeReader.read(root) : null;
+        // A broken link is still there to visit
+        if (attributes == null) attributes = attributeReader.readLink(root);
+        return attributes == null ? null : new Entry(root, attributes, null);
+    }
+
+    @Nullable
+    private Entry entryFor(File file, @NonNull Entry parent) {
+        if (pruneRules.excludes(file)) return null;
+
+        FileAttributes attributes = attributeReader.readLink(file);
+        if (attributes == null) return null;
+
+        if (attributes.isSymlink() && followSymlinks) {
+            FileAttributes target = attributeReader.read(file);
+            // Without an inode we couldn't tell whether entering it leads to a cycle
+            boolean safe = target != null && (!target.isDirectory() || target.inode() != UNKNOWN_ID);
+            if (safe) attributes = target;
+        }
+        return new Entry(file, attributes, parent);
+    }
+
+    /**
+     * Receives the entries of a walk. Override the methods for the entries you care about.
+     */
+    public static abstract class Visitor {
+        /**
+         * @return Whether to enter this directory.
+         */
+        public boolean preVisitDirectory(@NonNull Entry directory) throws IOException {
+            return true;
+        }
+
+        /**
+         * Called for everything that is not a directory, including links that are not
+         * followed.
+         */
+        public void visitFile(@NonNull Entry file) throws IOException {
+        }
+
+        /**
+         * Called once all entries under a directory have been visited, in depth-first walks.
+         */
+        public void postVisitDirectory(@NonNull Entry directory) throws IOException {
+        }
+    }
+
+    public interface Cancellation {
+        boolean isCancelled();
+    }
+
+    public static class Entry {
+        @NonNull
+        private final File file;
+        @NonNull
+        private final FileAttributes attributes;
+        @Nullable
+        private final Entry parent;
+        private final int depth;
+        private int childCount = -1;
+
+        private Entry(@NonNull File file, @NonNull FileAttributes attributes,
+                      @Nullable Entry parent) {
+            this.file = file;
+            this.attributes = attributes;
+            this.parent = parent;
+            this.depth = parent == null ? 0 : parent.depth + 1;
+        }
+
+        @NonNull
+        public File getFile() {
+            return file;
+        }
+
+        @NonNull
+        public FileAttributes getAttributes() {
+            return attributes;
+        }
+
+        /**
+         * @return 0 for the root of the walk, 1 for its children and so on.
+         */
+        public int getDepth() {
+            return depth;
+        }
+
+        /**
+         * @return The path of this entry relative to the root of the walk, which is "" itself.
+         */
+        @NonNull
+        public String getRelativePath() {
+            if (parent == null) return "";
+
+            String parentPath = parent.getRelativePath();
+            return parentPath.isEmpty() ? file.getName() : parentPath + "/" + file.getName();
+        }
+
+        /**
+         * @return How many entries this directory has, or -1 if it hasn't been listed yet.
+         */
+        public int getChildCount() {
+            return childCount;
+        }
+    }
+
+    private static class Directory {
+        final Entry entry;
+        private final String[] names;
+        private int next = 0;
+
+        Directory(Entry entry, String[] names) {
+            this.entry = entry;
+            this.names = names;
+        }
+
+        boolean hasNext() {
+            return next < names.length;
+        }
+
+        File next() {
+            return new File(entry.file, names[next++]);
+        }
+    }
+
+    /**
+     * Breadth-first walk where every directory is listed and visited as a separate task.
+     */
+    private class ParallelWalk {
+        private final Visitor visitor;
+        @Nullable
+        private final VisitedDirectories visited;
+        private final ExecutorService workers = newFixedThreadPool(parallelism);
+        private final AtomicInteger pendingDirectories = new AtomicInteger();
+        private final CountDownLatch finished = new CountDownLatch(1);
+        private volatile IOException failure;
+        private volatile boolean stoppedEarly = false;
+
+        ParallelWalk(Visitor visitor, @Nullable VisitedDirectories visited) {
+            this.visitor = visitor;
+            this.visited = visited;
+        }
+
+        boolean walk(Entry root) throws IOException {
+            try {
+                if (!root.attributes.isDirectory()) {
+                    visitor.visitFile(root);
+                    return true;
+                }
+                if (!shouldEnter(root, visitor, visited)) return true;
+
+                enqueue(root);
+                finished.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            } finally {
+                workers.shutdownNow();
+            }
+
+            if (failure != null) throw failure;
+            return !stoppedEarly;
+        }
+
+        private void enqueue(Entry directory) {
+            pendingDirectories.incrementAndGet();
+            workers.execute(() -> {
+                try {
+                    if (shouldStop()) {
+                        stoppedEarly = true;
+                    } else if (failure == null) {
+                        visitChildren(directory);
+                    }
+                } catch (IOException e) {
+                    failure = e;
+                } catch (RuntimeException e) {
+                    failure = new IOException(e);
+                } finally {
+                    if (pendingDirectories.decrementAndGet() == 0) finished.countDown();
+                }
+            });
+        }
+
+        private void visitChildren(Entry directory) throws IOException {
+            Directory current = list(directory);
+            while (current.hasNext()) {
+                if (shouldStop()) {
+                    stoppedEarly = true;
+                    return;
+                }
+
+                Entry child = entryFor(current.next(), current.entry);
+                if (child == null) continue;
+
+                if (!child.attributes.isDirectory()) {
+                    visitor.visitFile(child);
+                } else if (!shouldEnter(child, visitor, visited)) {
+                    continue;
+                } else if (pendingDirectories.get() < maxPending) {
+                    enqueue(child);
+                } else if (!walkEntered(child, visitor, visited, false)) {
+                    stoppedEarly = true;
+                    return;
+                }
+            }
+        }
+    }
+}
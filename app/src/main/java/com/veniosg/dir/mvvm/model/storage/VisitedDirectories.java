@@ -0,0 +1,32 @@
+package com.veniosg.dir.mvvm.model.storage;
+
+import android.support.annotation.NonNull;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static com.veniosg.dir.mvvm.model.storage.FileAttributes.UNKNOWN_ID;
+
+/**
+ * Remembers directories by device and inode, so that traversals that follow symbolic links can
+ * tell when they're about to enter a directory for the second time.
+ */
+public class VisitedDirectories {
+    // There's rarely more than a couple of devices in one traversal
+    private final Map<Long, LongHashSet> inodesPerDevice = new HashMap<>(4);
+
+    /**
+     * @return True if the directory had not been visited before and should be entered. Always
+     * true for directories without a known device and inode.
+     */
+    public boolean markVisited(@NonNull FileAttributes directory) {
+        if (directory.device() == UNKNOWN_ID || directory.inode() == UNKNOWN_ID) return true;
+
+        LongHashSet inodes = inodesPerDevice.get(directory.device());
+        if (inodes == null) {
+            inodes = new LongHashSet();
+            inodesPerDevice.put(directory.device(), inodes);
+        }
+        return inodes.add(directory.inode());
+    }
+}
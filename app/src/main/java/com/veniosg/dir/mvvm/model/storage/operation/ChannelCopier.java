@@ -0,0 +1,199 @@
+package com.veniosg.dir.mvvm.model.storage.operation;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.system.ErrnoException;
+import android.system.Os;
+import android.system.OsConstants;
+
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+
+import static com.veniosg.dir.android.util.Logger.log;
+import static com.veniosg.dir.mvvm.model.storage.BufferPool.FILE_BUFFER_SIZE;
+import static com.veniosg.dir.mvvm.model.storage.BufferPoolInjector.bufferPool;
+
+/**
+ * Copies between files with {@link FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)},
+ * which the platform implements with sendfile(2), so data never passes through the Java heap.
+ * The destination is preallocated first to avoid fragmentation and repeated block allocation
+ * while writing. If the kernel refuses the transfer, copying carries on from where it stopped
+ * through a direct buffer.
+ * <p>
+ * Copies that need a digest of what they copy go through the buffer from the start, as the
+ * bytes have to be seen to be digested.
+ */
+class ChannelCopier {
+    // Keep single transfers bounded so that they don't hold the CPU in the kernel for long
+    private static final long MAX_TRANSFER_SIZE = 8 * 1024 * 1024;
+    static final long CHECKPOINT_INTERVAL = 64 * 1024 * 1024;
+
+    private ChannelCopier() {
+    }
+
+    /**
+     * Copy everything from in to out, starting at their current positions, adding the bytes
+     * to progress as they're copied and checking control after every chunk.
+     *
+     * @param digest If not null, updated with every byte copied.
+     * @return How many bytes were copied.
+     */
+    static long copy(@NonNull FileInputStream in, @NonNull FileOutputStream out,
+                     @NonNull TransferProgress progress, @NonNull OperationControl control,
+                     @Nullable MessageDigest digest) throws IOException {
+        return copy(in.getChannel(), out.getChannel(), out.getFD(), progress, control, digest,
+                null);
+    }
+
+    /**
+     * Copy everything from source to target, starting at their current positions, adding the
+     * bytes to progress as they're copied and checking control after every chunk.
+     *
+     * @param digest     If not null, updated with every byte copied.
+     * @param checkpoint If not null, told every {@link #CHECKPOINT_INTERVAL} bytes how far
+     *                   target has been written and synced to storage.
+     * @return How many bytes were copied.
+     */
+    static long copy(@NonNull FileChannel source, @NonNull FileChannel target,
+                     @NonNull FileDescriptor targetFd, @NonNull TransferProgress progress,
+                     @NonNull OperationControl control, @Nullable MessageDigest digest,
+                     @Nullable Checkpoint checkpoint) throws IOException {
+        Transfer transfer = new Transfer(target, targetFd, progress, control, checkpoint);
+        long start = source.position();
+        long targetStart = target.position();
+        long size = source.size() - start;
+        boolean preallocated = preallocate(targetFd, targetStart, size);
+
+        long copied = digest != null
+                ? copyThroughBuffer(source, target, transfer, digest)
+                : copyTransferring(source, target, transfer, start, targetStart, size);
+        // The source may have shrunk since its size was taken, don't leave preallocated space
+        // behind as part of the copy
+        if (preallocated) target.truncate(targetStart + copied);
+        return copied;
+    }
+
+    private static long copyTransferring(FileChannel source, FileChannel target,
+                                         Transfer transfer, long start, long targetStart,
+                                         long size) throws IOException {
+        long copied = 0;
+        try {
+            while (copied < size) {
+                long transferred = source.transferTo(start + copied,
+                        Math.min(transfer.control.chunkSize(MAX_TRANSFER_SIZE), size - copied),
+                        target);
+                if (transferred <= 0) break;
+                copied += transferred;
+                transfer.wrote(transferred);
+            }
+        } catch (InterruptedIOException e) {
+            throw e;
+        } catch (IOException e) {
+            // Some file systems don't support sendfile, try the slow way. A transfer that
+            // failed halfway may have moved the target on without being counted
+            log(e);
+            target.position(targetStart + copied);
+        }
+
+        source.position(start + copied);
+        return copied + copyThroughBuffer(source, target, transfer, null);
+    }
+
+    /**
+     * @return Whether fd refers to a regular file. Only those can be preallocated and
+     * transferred into; providers may also hand out pipes or sockets.
+     */
+    static boolean isRegularFile(@NonNull FileDescriptor fd) {
+        try {
+            return OsConstants.S_ISREG(Os.fstat(fd).st_mode);
+        } catch (ErrnoException e) {
+            return false;
+        }
+    }
+
+    private static long copyThroughBuffer(FileChannel source, FileChannel target,
+                                          Transfer transfer, @Nullable MessageDigest digest)
+            throws IOException {
+        ByteBuffer buffer = bufferPool().takeDirect(FILE_BUFFER_SIZE);
+        try {
+            long copied = 0;
+            while (source.read(buffer) != -1) {
+                buffer.flip();
+                int chunk = buffer.remaining();
+                if (digest != null) digest.update(buffer.duplicate());
+                while (buffer.hasRemaining()) {
+                    target.write(buffer);
+                }
+                copied += chunk;
+                transfer.wrote(chunk);
+                buffer.clear();
+            }
+            return copied;
+        } finally {
+            bufferPool().giveDirect(buffer);
+        }
+    }
+
+    /**
+     * Reserve space for length bytes at offset. Failing this is not a problem, the space is
+     * just allocated while writing instead.
+     *
+     * @return Whether the space was reserved.
+     */
+    private static boolean preallocate(FileDescriptor fd, long offset, long length) {
+        if (length <= 0) return false;
+
+        try {
+            Os.posix_fallocate(fd, offset, length);
+            return true;
+        } catch (ErrnoException e) {
+            // Not supported on FAT and some FUSE file systems
+            return false;
+        }
+    }
+
+    interface Checkpoint {
+        /**
+         * @param offset Everything in the target before this is safely on storage.
+         */
+        void reached(long offset);
+    }
+
+    private static class Transfer {
+        private final FileChannel target;
+        private final FileDescriptor targetFd;
+        private final TransferProgress progress;
+        private final OperationControl control;
+        @Nullable
+        private final Checkpoint checkpoint;
+        private long sinceCheckpoint = 0;
+
+        Transfer(FileChannel target, FileDescriptor targetFd, TransferProgress progress,
+                 OperationControl control, @Nullable Checkpoint checkpoint) {
+            this.target = target;
+            this.targetFd = targetFd;
+            this.progress = progress;
+            this.control = control;
+            this.checkpoint = checkpoint;
+        }
+
+        void wrote(long bytes) throws IOException {
+            progress.addBytes(bytes);
+            control.checkpoint(bytes);
+            if (checkpoint == null) return;
+
+            sinceCheckpoint += bytes;
+            if (sinceCheckpoint >= CHECKPOINT_INTERVAL) {
+                targetFd.sync();
+                checkpoint.reached(target.position());
+                sinceCheckpoint = 0;
+            }
+        }
+    }
+}
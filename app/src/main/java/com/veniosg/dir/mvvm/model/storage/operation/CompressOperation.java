@@ -23,10 +23,12 @@ import android.support.v4.provider.DocumentFile;
 
 import com.veniosg.dir.android.fragment.FileListFragment;
 import com.veniosg.dir.android.util.MediaScannerUtils;
-import com.veniosg.dir.android.util.Notifier;
-import com.veniosg.dir.mvvm.model.FileHolder;
 import com.veniosg.dir.mvvm.model.storage.DocumentFileUtils;
+import com.veniosg.dir.mvvm.model.storage.OperationManifest;
+import com.veniosg.dir.mvvm.model.storage.OperationManifest.Entry;
+import com.veniosg.dir.mvvm.model.storage.OperationManifest.Item;
 import com.veniosg.dir.mvvm.model.storage.operation.argument.CompressArguments;
+import com.veniosg.dir.mvvm.model.storage.operation.ui.OperationStatusDisplayer;
 
 import java.io.BufferedOutputStream;
 import java.io.File;
@@ -34,52 +36,80 @@ import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.util.List;
+import java.io.OutputStream;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 
-import static com.veniosg.dir.android.util.FileUtils.countFilesUnder;
+import io.reactivex.disposables.Disposable;
+
 import static com.veniosg.dir.android.util.Logger.log;
 import static com.veniosg.dir.android.util.Notifier.clearNotification;
-import static com.veniosg.dir.android.util.Notifier.showCompressProgressNotification;
+import static com.veniosg.dir.mvvm.model.storage.BufferPool.FILE_BUFFER_SIZE;
+import static com.veniosg.dir.mvvm.model.storage.BufferPoolInjector.bufferPool;
 import static com.veniosg.dir.mvvm.model.storage.DocumentFileUtils.createFile;
 import static com.veniosg.dir.mvvm.model.storage.DocumentFileUtils.safAwareDelete;
+import static com.veniosg.dir.mvvm.model.storage.OperationManifest.manifestOf;
+import static com.veniosg.dir.mvvm.model.storage.operation.OperationJournal.journalFor;
 
 public class CompressOperation extends FileOperation<CompressArguments> {
-    private static final int BUFFER_SIZE = 1024;
+    private static final String JOURNAL_KIND = "compress";
 
     private final Context context;
+    private final OperationStatusDisplayer statusDisplayer;
 
-    public CompressOperation(Context context) {
+    public CompressOperation(Context context, OperationStatusDisplayer statusDisplayer) {
         this.context = context;
+        this.statusDisplayer = statusDisplayer;
     }
 
     @Override
     public boolean operate(CompressArguments args) {
         File to = args.getTarget();
-        BufferedOutputStream outStream = outputStreamFor(to);
-        return outStream != null && compressTo(outStream, args.getToCompress(), to);
+        OperationJournal journal = startJournal(args);
+        try {
+            OutputStream outStream = outputStreamFor(to);
+            return outStream != null && compressTo(outStream, args, to);
+        } finally {
+            journal.end(args.getControl());
+        }
     }
 
     @Override
     public boolean operateSaf(CompressArguments args) {
         File to = args.getTarget();
-        DocumentFile toSaf = createFile(context, to, "application/zip");
-        BufferedOutputStream outStream = outputStreamFor(toSaf);
-        return outStream != null && compressTo(outStream, args.getToCompress(), to);
+        OperationJournal journal = startJournal(args);
+        try {
+            DocumentFile toSaf = createFile(context, to, "application/zip");
+            OutputStream outStream = outputStreamFor(toSaf);
+            return outStream != null && compressTo(outStream, args, to);
+        } finally {
+            journal.end(args.getControl());
+        }
     }
 
     @Override
     public void onStartOperation(CompressArguments args) {
     }
 
+    @Override
+    void onQueued(CompressArguments args, int ahead) {
+        statusDisplayer.showQueued(id, ahead);
+    }
+
     @Override
     public void onResult(boolean success, CompressArguments args) {
         File target = args.getTarget();
-        if (!success) safAwareDelete(context, target);
+        OperationControl control = args.getControl();
+        if (!success && !control.keepsPartialOutput()) safAwareDelete(context, target);
 
         MediaScannerUtils.informFileAdded(context, target);
-        Notifier.showCompressDoneNotification(success, id, target, context);
+        if (control.isCancelled()) {
+            statusDisplayer.showCancelled(id);
+        } else if (success) {
+            statusDisplayer.showCompressSuccess(id, target);
+        } else {
+            statusDisplayer.showCompressFailure(id, target);
+        }
         FileListFragment.refresh(context, target.getParentFile());
     }
 
@@ -97,12 +127,25 @@ public class CompressOperation extends FileOperation<CompressArguments> {
         return true;
     }
 
+    /**
+     * A zip stream can't be appended to, so an archive left half-written by an interrupted run
+     * is removed and compressing starts over. It has to go before the new one is created, or SAF
+     * would give that a different name.
+     */
+    private OperationJournal startJournal(CompressArguments args) {
+        File to = args.getTarget();
+        OperationJournal journal = journalFor(context, JOURNAL_KIND, to, args.getToCompress());
+        if (journal.wasInterrupted() && to.exists()) safAwareDelete(context, to);
+        journal.begin();
+        return journal;
+    }
+
     @Nullable
-    private BufferedOutputStream outputStreamFor(DocumentFile toSaf) {
+    private OutputStream outputStreamFor(DocumentFile toSaf) {
         if (toSaf == null) return null;
         
         try {
-            return new BufferedOutputStream(DocumentFileUtils.outputStreamFor(toSaf, context));
+            return DocumentFileUtils.outputStreamFor(toSaf, context);
         } catch (NullPointerException | FileNotFoundException e) {
             log(e);
             return null;
@@ -110,78 +153,95 @@ public class CompressOperation extends FileOperation<CompressArguments> {
     }
 
     @Nullable
-    private BufferedOutputStream outputStreamFor(File to) {
+    private OutputStream outputStreamFor(File to) {
         try {
-            return new BufferedOutputStream(new FileOutputStream(to));
+            return new FileOutputStream(to);
         } catch (FileNotFoundException e) {
             log(e);
             return null;
         }
     }
 
-    private boolean compressTo(BufferedOutputStream outStream, List<FileHolder> toBeCompressed,
+    private boolean compressTo(OutputStream outStream, CompressArguments args,
                                File targetArchive) {
-        int filesCompressed = 0;
-        int fileCount = countFilesUnder(toBeCompressed);
-        try (ZipOutputStream zipStream = new ZipOutputStream(new BufferedOutputStream(outStream))) {
-            for (FileHolder file : toBeCompressed) {
-                filesCompressed = compressCore(id, zipStream, file.getFile(),
-                        null, filesCompressed, fileCount, targetArchive);
+        OperationManifest manifest = manifestOf(args.getToCompress(), true);
+        OperationControl control = args.getControl();
+        TransferProgress progress = new TransferProgress(manifest.getSize(), manifest.getFileCount())
+                .controlledBy(control)
+                .trackedBy(args.getHandle());
+        Disposable shown = showProgress(args,
+                p -> statusDisplayer.showCompressProgress(id, targetArchive, p));
+        // The deflater writes a few hundred bytes at a time, so it needs a buffer under it
+        OutputStream buffered = new BufferedOutputStream(outStream, FILE_BUFFER_SIZE);
+        try (ZipOutputStream zipStream = new ZipOutputStream(buffered)) {
+            for (Item item : manifest.getItems()) {
+                compressCore(zipStream, item, progress, control);
             }
         } catch (IOException e) {
-            log(e);
+            if (!control.isCancelled()) log(e);
             return false;
+        } finally {
+            shown.dispose();
         }
         return true;
     }
 
     /**
-     * Recursively compress a File.
-     *
-     * @return How many files where compressed.
+     * Compress a File with everything under it, writing an entry for every file and empty
+     * directory.
      */
-    private int compressCore(int notId, ZipOutputStream zipStream, File toCompress, String internalPath,
-                             int filesCompressed, final int fileCount, File zipFile) throws IOException {
-        if (internalPath == null) internalPath = "";
-
-        showCompressProgressNotification(filesCompressed, fileCount, notId, zipFile, toCompress, context);
-        if (toCompress.isFile()) {
-            byte[] buf = new byte[BUFFER_SIZE];
-            int len;
-            FileInputStream in = new FileInputStream(toCompress);
-
-            // Create internal zip file entry.
-            ZipEntry entry;
-            if (internalPath.length() > 0) {
-                entry = new ZipEntry(internalPath + "/" + toCompress.getName());
-            } else {
-                entry = new ZipEntry(toCompress.getName());
+    private void compressCore(ZipOutputStream zipStream, Item item, TransferProgress progress,
+                              OperationControl control) throws IOException {
+        if (!item.isReadable()) throw new FileNotFoundException(item.getFile().getAbsolutePath());
+
+        String rootName = item.getFile().getName();
+        for (Entry entry : item.getEntries()) {
+            progress.startFile(entry.getFile());
+
+            if (!entry.isDirectory()) {
+                compressFile(zipStream, entry, rootName, progress, control);
+            } else if (entry.getChildCount() == 0) {
+                zipStream.putNextEntry(new ZipEntry(internalPathOf(entry, rootName) + "/"));
+                zipStream.closeEntry();
             }
-            entry.setTime(toCompress.lastModified());
-            zipStream.putNextEntry(entry);
+        }
+    }
 
-            // Compress
-            while ((len = in.read(buf)) > 0) {
-                zipStream.write(buf, 0, len);
-            }
+    private void compressFile(ZipOutputStream zipStream, Entry file, String rootName,
+                              TransferProgress progress, OperationControl control)
+            throws IOException {
+        File toCompress = file.getFile();
 
-            filesCompressed++;
-            zipStream.closeEntry();
-            in.close();
+        // Create internal zip file entry.
+        ZipEntry entry;
+        if (!file.getRelativePath().isEmpty()) {
+            entry = new ZipEntry(internalPathOf(file, rootName));
         } else {
-            if (toCompress.list().length == 0) {
-                zipStream.putNextEntry(new ZipEntry(internalPath + "/" + toCompress.getName() + "/"));
-                zipStream.closeEntry();
-            } else {
-                for (File child : toCompress.listFiles()) {
-                    filesCompressed = compressCore(notId, zipStream, child,
-                            internalPath + "/" + toCompress.getName(),
-                            filesCompressed, fileCount, zipFile);
-                }
+            entry = new ZipEntry(toCompress.getName());
+        }
+        entry.setTime(file.getAttributes().lastModified());
+        zipStream.putNextEntry(entry);
+
+        // Compress
+        byte[] buf = bufferPool().takeArray(FILE_BUFFER_SIZE);
+        int len;
+        try (FileInputStream in = new FileInputStream(toCompress)) {
+            while ((len = in.read(buf)) > 0) {
+                zipStream.write(buf, 0, len);
+                progress.addBytes(len);
+                control.checkpoint(len);
             }
+        } finally {
+            bufferPool().giveArray(buf);
         }
 
-        return filesCompressed;
+        progress.addFile();
+        zipStream.closeEntry();
+    }
+
+    private static String internalPathOf(Entry entry, String rootName) {
+        String relativePath = entry.getRelativePath();
+        return "/" + (relativePath.isEmpty() ? rootName : rootName + "/" + relativePath);
     }
 
     private void throwIfNull(@Nullable Object o, @NonNull String msg) {
@@ -17,11 +17,15 @@
 package com.veniosg.dir.mvvm.model.storage.operation;
 
 import android.content.Context;
+import android.os.ParcelFileDescriptor;
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 import android.support.v4.provider.DocumentFile;
 
 import com.veniosg.dir.android.util.MediaScannerUtils;
-import com.veniosg.dir.mvvm.model.FileHolder;
+import com.veniosg.dir.mvvm.model.storage.OperationManifest;
+import com.veniosg.dir.mvvm.model.storage.OperationManifest.Entry;
+import com.veniosg.dir.mvvm.model.storage.OperationManifest.Item;
 import com.veniosg.dir.mvvm.model.storage.operation.argument.CopyArguments;
 import com.veniosg.dir.mvvm.model.storage.operation.ui.OperationStatusDisplayer;
 
@@ -30,17 +34,34 @@ import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.security.MessageDigest;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.reactivex.disposables.Disposable;
 
 import static com.veniosg.dir.android.fragment.FileListFragment.refresh;
-import static com.veniosg.dir.android.util.FileUtils.countFilesUnder;
 import static com.veniosg.dir.android.util.FileUtils.createUniqueCopyName;
 import static com.veniosg.dir.android.util.Logger.log;
 import static com.veniosg.dir.android.util.Notifier.clearNotification;
+import static com.veniosg.dir.mvvm.model.storage.BufferPool.STREAM_BUFFER_SIZE;
+import static com.veniosg.dir.mvvm.model.storage.BufferPoolInjector.bufferPool;
 import static com.veniosg.dir.mvvm.model.storage.DocumentFileUtils.createDirectory;
 import static com.veniosg.dir.mvvm.model.storage.DocumentFileUtils.createFile;
+import static com.veniosg.dir.mvvm.model.storage.DocumentFileUtils.fileDescriptorFor;
+import static com.veniosg.dir.mvvm.model.storage.DocumentFileUtils.inputStreamFor;
 import static com.veniosg.dir.mvvm.model.storage.DocumentFileUtils.outputStreamFor;
+import static com.veniosg.dir.mvvm.model.storage.DocumentFileUtils.providerCopy;
+import static com.veniosg.dir.mvvm.model.storage.DocumentFileUtils.safAwareDelete;
+import static com.veniosg.dir.mvvm.model.storage.operation.OperationJournal.journalFor;
+import static java.util.concurrent.Executors.newFixedThreadPool;
 
 public class CopyOperation extends FileOperation<CopyArguments> {
     private final Context context;
@@ -53,12 +74,28 @@ public class CopyOperation extends FileOperation<CopyArguments> {
 
     @Override
     public boolean operate(CopyArguments args) {
-        return new NormalCopier(context, statusDisplayer, id).copy(args);
+        return new NormalCopier(context, statusDisplayer, id, args.getControl()).copy(args);
     }
 
     @Override
     public boolean operateSaf(CopyArguments args) {
-        return new SafCopier(context, statusDisplayer, id).copy(args);
+        return new SafCopier(context, statusDisplayer, id, args.getControl()).copy(args);
+    }
+
+    /**
+     * Copy as part of a larger operation, counting into its progress instead of showing any,
+     * and controlled along with it.
+     */
+    boolean operate(CopyArguments args, TransferProgress progress, OperationControl control) {
+        return new NormalCopier(context, statusDisplayer, id, control).copy(args, progress);
+    }
+
+    /**
+     * Like {@link #operate(CopyArguments, TransferProgress, OperationControl)}, for targets
+     * only writable through SAF.
+     */
+    boolean operateSaf(CopyArguments args, TransferProgress progress, OperationControl control) {
+        return new SafCopier(context, statusDisplayer, id, control).copy(args, progress);
     }
 
     @Override
@@ -67,7 +104,10 @@ public class CopyOperation extends FileOperation<CopyArguments> {
 
     @Override
     public void onResult(boolean success, CopyArguments args) {
-        if (success) {
+        if (args.getControl().isCancelled()) {
+            statusDisplayer.showCancelled(id);
+            refresh(context, args.getTarget());
+        } else if (success) {
             statusDisplayer.showCopySuccess(id, args.getTarget());
             refresh(context, args.getTarget());
         } else {
@@ -90,111 +130,329 @@ public class CopyOperation extends FileOperation<CopyArguments> {
     }
 
     private abstract class Copier {
-        private static final int COPY_BUFFER_SIZE = 32 * 1024;
+        private static final String JOURNAL_KIND = "copy";
+        private static final String MIRROR_JOURNAL_KIND = "sync";
+        // Copying files this large is limited by bandwidth, not by per-file latency
+        private static final long LARGE_FILE_SIZE = 1024 * 1024;
 
         @NonNull
         private final Context context;
         @NonNull
         private final OperationStatusDisplayer statusDisplayer;
         private final int operationId;
+        @NonNull
+        private final OperationControl control;
+        private final AtomicInteger filesCopied = new AtomicInteger();
+        private int fileCount;
+        TransferProgress progress;
+        OperationJournal journal;
+        // Shared by all items of the operation, created once some of them need it
+        @Nullable
+        private ExecutorService helpers;
+        boolean verified;
+        private boolean deletingSources;
+        private boolean mirroring;
+        private boolean comparingContents;
 
         Copier(@NonNull Context context,
                @NonNull OperationStatusDisplayer statusDisplayer,
-               int operationId) {
+               int operationId,
+               @NonNull OperationControl control) {
             this.context = context;
             this.statusDisplayer = statusDisplayer;
             this.operationId = operationId;
+            this.control = control;
         }
 
         boolean copy(CopyArguments args) {
-            List<FileHolder> files = args.getFilesToCopy();
             File destDirectory = args.getTarget();
+            OperationManifest manifest = args.getManifest();
+            TransferProgress progress =
+                    new TransferProgress(manifest.getSize(), manifest.getFileCount());
+            progress.controlledBy(control)
+                    .trackedBy(args.getHandle());
+            Disposable shown = showProgress(args,
+                    p -> statusDisplayer.showCopyProgress(operationId, destDirectory, p));
+            try {
+                return copy(args, progress);
+            } finally {
+                shown.dispose();
+            }
+        }
 
-            int fileCount = countFilesUnder(files);
-            int filesCopied = 0;
+        boolean copy(CopyArguments args, TransferProgress progress) {
+            File destDirectory = args.getTarget();
+            OperationManifest manifest = args.getManifest();
 
-            for (FileHolder origin : files) {
-                File dest = createUniqueCopyName(context, destDirectory, origin.getName());
-                if (dest != null) {
-                    filesCopied = copyFileOrDirectory(
-                            filesCopied, fileCount, origin.getFile(), dest);
+            this.fileCount = manifest.getFileCount();
+            this.progress = progress;
+            this.verified = args.isVerified();
+            this.deletingSources = args.isDeletingSources();
+            this.mirroring = args.isMirroring();
+            this.comparingContents = args.isComparingContents();
+            this.journal = journalFor(context, mirroring ? MIRROR_JOURNAL_KIND : JOURNAL_KIND,
+                    destDirectory, args.getFilesToCopy());
 
-                    if (origin.getFile().isDirectory()) {
-                        MediaScannerUtils.informFolderAdded(context, dest);
-                    } else {
-                        MediaScannerUtils.informFileAdded(context, dest);
+            try {
+                for (Item item : manifest.getItems()) {
+                    if (control.isCancelled()) break;
+
+                    File dest = destinationOf(item.getFile(), destDirectory);
+                    if (dest != null) {
+                        int copiedBefore = filesCopied.get();
+                        copyItem(item, dest);
+
+                        boolean partial = filesCopied.get() - copiedBefore < item.getFileCount();
+                        // Files whose sources are gone are the only copies left, and mirrors
+                        // were there before
+                        boolean ownsPartialOutput = !deletingSources && !mirroring;
+                        if (partial && control.deletesPartialOutput() && ownsPartialOutput) {
+                            safAwareDelete(context, dest);
+                        } else {
+                            MediaScannerUtils.informPathsAdded(context, item.getPathsUnder(dest));
+                        }
                     }
                 }
+            } finally {
+                if (helpers != null) helpers.shutdown();
+                journal.end(control);
             }
 
-            return filesCopied == fileCount;
+            return filesCopied.get() == fileCount;
         }
 
         /**
-         * Recursively copy a folder.
+         * @return Where to copy origin to. Reuses the destination of an interrupted run, which
+         * would otherwise get a new unique name as it already exists.
+         */
+        @Nullable
+        private File destinationOf(File origin, File destDirectory) {
+            if (mirroring) return SyncOperation.mirrorOf(origin, destDirectory);
+
+            File dest = journal.destinationOf(origin);
+            if (dest == null) {
+                dest = createUniqueCopyName(context, destDirectory, origin.getName());
+                if (dest != null) journal.recordDestination(origin, dest);
+            }
+            return dest;
+        }
+
+        /**
+         * Copy an item with everything under it. The whole directory structure is created
+         * first, then small files are copied concurrently and large ones one at a time.
          *
-         * @param filesCopied Initial value of how many files have been copied.
-         * @param oldFile     Folder to copy.
-         * @param newFile     The dir to be created.
-         * @return The new filesCopied count.
+         * @param item    File or folder to copy.
+         * @param newRoot The file or dir to be created.
          */
-        private int copyFileOrDirectory(int filesCopied, int fileCount, @NonNull File oldFile, @NonNull File newFile) {
-            if (oldFile.isDirectory()) {
-                filesCopied = copyDirectory(filesCopied, fileCount, oldFile, newFile);
-            } else {
-                filesCopied = copyFile(filesCopied, fileCount, oldFile, newFile);
+        private void copyItem(@NonNull Item item, @NonNull File newRoot) {
+            List<PendingCopy> smallFiles = new ArrayList<>();
+            List<PendingCopy> largeFiles = new ArrayList<>();
+            for (Entry entry : item.getEntries()) {
+                File newFile = entry.relocatedTo(newRoot);
+                if (entry.isDirectory()) {
+                    if (!newFile.exists()) mkDir(newFile);
+                } else if (entry.getAttributes().size() < LARGE_FILE_SIZE) {
+                    smallFiles.add(new PendingCopy(entry.getFile(), newFile));
+                } else {
+                    largeFiles.add(new PendingCopy(entry.getFile(), newFile));
+                }
+            }
+
+            copyConcurrently(smallFiles);
+            for (PendingCopy copy : largeFiles) {
+                copyFile(copy.oldFile, copy.newFile);
+            }
+        }
+
+        /**
+         * Copy files using up to {@link #parallelism()} threads, including the calling one.
+         * Returns once all of them have been handled.
+         */
+        private void copyConcurrently(final List<PendingCopy> copies) {
+            int workerCount = Math.min(parallelism(), copies.size());
+            final AtomicInteger next = new AtomicInteger();
+            Runnable worker = () -> {
+                for (int i = next.getAndIncrement(); i < copies.size(); i = next.getAndIncrement()) {
+                    PendingCopy copy = copies.get(i);
+                    copyFile(copy.oldFile, copy.newFile);
+                }
+            };
+            if (workerCount <= 1) {
+                worker.run();
+                return;
             }
 
-            return filesCopied;
+            if (helpers == null) helpers = newFixedThreadPool(parallelism() - 1);
+            List<Future<?>> running = new ArrayList<>(workerCount - 1);
+            for (int i = 1; i < workerCount; i++) {
+                running.add(helpers.submit(worker));
+            }
+            try {
+                worker.run();
+            } catch (RuntimeException e) {
+                // Helpers would otherwise carry on copying after the operation has failed
+                next.set(copies.size());
+                for (Future<?> helper : running) helper.cancel(true);
+                throw e;
+            }
+
+            for (Future<?> helper : running) {
+                try {
+                    helper.get();
+                } catch (InterruptedException e) {
+                    for (Future<?> other : running) other.cancel(true);
+                    Thread.currentThread().interrupt();
+                    return;
+                } catch (ExecutionException e) {
+                    log(e);
+                }
+            }
         }
 
         /**
-         * Copy a file.
+         * Copy a file, counting it if successful. Safe to call from several threads.
          *
-         * @param filesCopied Initial value of how many files have been copied.
-         * @param oldFile     File to copy.
-         * @param newFile     The file to be created.
-         * @return The new filesCopied count.
+         * @param oldFile File to copy.
+         * @param newFile The file to be created.
          */
-        private int copyFile(int filesCopied, int fileCount, File oldFile, File newFile) {
-            statusDisplayer.showCopyProgress(operationId, newFile.getParentFile(), oldFile,
-                    filesCopied, fileCount);
+        private void copyFile(File oldFile, File newFile) {
+            if (control.isCancelled()) return;
+
+            progress.startFile(oldFile);
+            if (isAlreadyCopied(oldFile, newFile)) {
+                progress.addBytes(oldFile.length());
+                // Interrupted before the source could be deleted
+                if (deletingSources) deleteSource(oldFile);
+                filesCopied.incrementAndGet();
+                progress.addFile();
+                return;
+            }
 
+            try {
+                control.checkpoint();
+                copyContents(oldFile, newFile);
+                journal.markDone(newFile);
+                if (deletingSources) deleteSource(oldFile);
+                filesCopied.incrementAndGet();
+                progress.addFile();
+            } catch (IOException e) {
+                if (!control.isCancelled()) log(e);
+            }
+        }
+
+        private void deleteSource(File oldFile) {
+            // Left for the deletion of its whole item to retry
+            if (!safAwareDelete(context, oldFile)) log("Could not delete moved file " + oldFile);
+        }
+
+        private boolean isAlreadyCopied(File oldFile, File newFile) {
+            boolean copiedBefore = journal.isDone(newFile) && newFile.length() == oldFile.length()
+                    && (!verified || journal.recordedDigestOf(newFile) != null);
+            // Compared as files are reached, so copying starts without waiting for a full diff
+            // of both trees, and is spread over the same threads as copying
+            return copiedBefore || mirroring
+                    && SyncOperation.isUpToDate(oldFile, newFile, comparingContents, control);
+        }
+
+        /**
+         * Copy the bytes of oldFile into newFile, directly accessible, with a bulk transfer.
+         * Continues from the last checkpoint of an interrupted run if there is one, and records
+         * new checkpoints as it goes.
+         */
+        void resumableCopy(File oldFile, File newFile) throws IOException {
+            long offset = journal.resumeOffset(oldFile, newFile);
+            MessageDigest digest = newDigestIfVerified();
             try (
                     FileInputStream input = new FileInputStream(oldFile);
-                    OutputStream output = outputStream(newFile)
+                    RandomAccessFile output = new RandomAccessFile(newFile, "rw")
+            ) {
+                // Anything after the checkpoint may not have made it to storage
+                output.setLength(offset);
+                input.getChannel().position(offset);
+                output.getChannel().position(offset);
+                progress.addBytes(offset);
+                if (digest != null) {
+                    CopyVerifier.update(digest, input.getChannel(), offset, control);
+                }
+
+                ChannelCopier.copy(input.getChannel(), output.getChannel(), output.getFD(),
+                        progress, control, digest,
+                        reached -> journal.checkpoint(oldFile, newFile, reached));
+                // Make sure a copy the journal records as verified has reached storage. This
+                // doesn't evict the page cache, so the read back may not come from the medium.
+                if (digest != null) output.getFD().sync();
+            }
+            if (digest != null) verify(digest, new FileInputStream(newFile), newFile);
+        }
+
+        /**
+         * Copy the bytes of oldFile into output with a bulk transfer, closing output.
+         *
+         * @param digest Updated with the bytes copied, if not null.
+         */
+        void channelCopy(File oldFile, FileOutputStream output, @Nullable MessageDigest digest)
+                throws IOException {
+            try (
+                    FileOutputStream out = output;
+                    FileInputStream input = new FileInputStream(oldFile)
+            ) {
+                ChannelCopier.copy(input, out, progress, control, digest);
+                if (digest != null) out.getFD().sync();
+            }
+        }
+
+        /**
+         * Copy the bytes of oldFile into output using a plain stream loop, closing output.
+         *
+         * @param digest Updated with the bytes copied, if not null.
+         */
+        void streamCopy(File oldFile, OutputStream output, @Nullable MessageDigest digest)
+                throws IOException {
+            // Only used for provider streams, which take a pipe's worth at a time
+            byte[] buffer = bufferPool().takeArray(STREAM_BUFFER_SIZE);
+            try (
+                    OutputStream out = output;
+                    FileInputStream input = new FileInputStream(oldFile)
             ) {
                 int len;
-                byte[] buffer = new byte[COPY_BUFFER_SIZE];
                 while ((len = input.read(buffer)) > 0) {
-                    output.write(buffer, 0, len);
+                    out.write(buffer, 0, len);
+                    if (digest != null) digest.update(buffer, 0, len);
+                    progress.addBytes(len);
+                    control.checkpoint(len);
                 }
-            } catch (IOException e) {
-                log(e);
-                return filesCopied;
+            } finally {
+                bufferPool().giveArray(buffer);
             }
-            return filesCopied + 1;
         }
 
-        private int copyDirectory(int filesCopied, int fileCount, @NonNull File oldFile,
-                                  @NonNull File newFile) {
-            if (!newFile.exists()) mkDir(newFile);
-
-            // list all the directory contents
-            String files[] = oldFile.list();
+        @Nullable
+        MessageDigest newDigestIfVerified() throws IOException {
+            return verified ? CopyVerifier.newDigest() : null;
+        }
 
-            for (String file : files) {
-                // construct the src and dest file structure
-                File srcFile = new File(oldFile, file);
-                File destFile = new File(newFile, file);
-                // recursive copy
-                filesCopied = copyFileOrDirectory(filesCopied, fileCount, srcFile, destFile);
+        /**
+         * Check the copy against the digest of its source, recording the result so a resumed
+         * run can skip it. A copy that differs is deleted, to be copied again from scratch.
+         */
+        void verify(MessageDigest digest, InputStream copy, File newFile) throws IOException {
+            try {
+                journal.recordDigest(newFile, CopyVerifier.check(digest, copy, newFile, control));
+            } catch (CopyVerifier.MismatchException e) {
+                safAwareDelete(context, newFile);
+                throw e;
             }
-            return filesCopied;
         }
 
-        @NonNull
-        protected abstract OutputStream outputStream(File newFile) throws FileNotFoundException;
+        /**
+         * @return How many small files to copy at once to this copier's storage.
+         */
+        protected abstract int parallelism();
+
+        /**
+         * Copy the bytes of oldFile into newFile, creating it.
+         */
+        protected abstract void copyContents(File oldFile, File newFile) throws IOException;
 
         @SuppressWarnings("UnusedReturnValue")
         protected abstract boolean mkDir(@NonNull File newFile);
@@ -203,14 +461,19 @@ public class CopyOperation extends FileOperation<CopyArguments> {
     private class NormalCopier extends Copier {
         NormalCopier(@NonNull Context context,
                      @NonNull OperationStatusDisplayer statusDisplayer,
-                     int operationId) {
-            super(context, statusDisplayer, operationId);
+                     int operationId,
+                     @NonNull OperationControl control) {
+            super(context, statusDisplayer, operationId, control);
         }
 
         @Override
-        @NonNull
-        protected OutputStream outputStream(File newFile) throws FileNotFoundException {
-            return new FileOutputStream(newFile);
+        protected void copyContents(File oldFile, File newFile) throws IOException {
+            resumableCopy(oldFile, newFile);
+        }
+
+        @Override
+        protected int parallelism() {
+            return 4;
         }
 
         @Override
@@ -221,31 +484,67 @@ public class CopyOperation extends FileOperation<CopyArguments> {
 
     private class SafCopier extends Copier {
         private final Context context;
+        // Cleared once the target turns out to be writable only through SAF
+        private volatile boolean plainAccessWorks = true;
 
         SafCopier(@NonNull Context context,
                   @NonNull OperationStatusDisplayer statusDisplayer,
-                  int operationId) {
-            super(context, statusDisplayer, operationId);
+                  int operationId,
+                  @NonNull OperationControl control) {
+            super(context, statusDisplayer, operationId, control);
             this.context = context;
         }
 
-        @NonNull
+        /**
+         * Tries, in order: plain file access, having the provider copy the document itself,
+         * bulk transfer into a file descriptor, and the provider's stream. Provider copies are
+         * skipped when verifying, as their bytes are never seen.
+         */
         @Override
-        protected OutputStream outputStream(File newFile) throws FileNotFoundException {
-            boolean fileCreated = false;
-            try {
-                // If target is accessible without SAF (in case of cross-media moves)
-                fileCreated = newFile.createNewFile();
-            } catch (IOException e) {
-                log(e);
+        protected void copyContents(File oldFile, File newFile) throws IOException {
+            if (newFile.exists() || (plainAccessWorks && createNewFile(newFile))) {
+                try {
+                    resumableCopy(oldFile, newFile);
+                    return;
+                } catch (FileNotFoundException e) {
+                    // Left behind by an interrupted run, but only writable through SAF
+                    if (!safAwareDelete(context, newFile)) throw e;
+                }
+            }
+            if (!verified && providerCopy(context, oldFile, newFile)) {
+                progress.addBytes(oldFile.length());
+                return;
             }
 
-            if (fileCreated) {
-                return new FileOutputStream(newFile);
+            DocumentFile toSaf = createFile(context, newFile, "*/*");
+            if (toSaf == null) throw new FileNotFoundException();
+            MessageDigest digest = newDigestIfVerified();
+            ParcelFileDescriptor fd = fileDescriptorFor(toSaf, context);
+            if (fd == null) {
+                streamCopy(oldFile, outputStreamFor(toSaf, context), digest);
+            } else if (ChannelCopier.isRegularFile(fd.getFileDescriptor())) {
+                channelCopy(oldFile, new ParcelFileDescriptor.AutoCloseOutputStream(fd), digest);
             } else {
-                DocumentFile toSaf = createFile(context, newFile, "*/*");
-                if (toSaf == null) throw new FileNotFoundException();
-                return outputStreamFor(toSaf, context);
+                streamCopy(oldFile, new ParcelFileDescriptor.AutoCloseOutputStream(fd), digest);
+            }
+            if (digest != null) verify(digest, inputStreamFor(toSaf, context), newFile);
+        }
+
+        @Override
+        protected int parallelism() {
+            // Every file costs several provider calls, and SD cards handle few requests at once
+            return 2;
+        }
+
+        private boolean createNewFile(File newFile) {
+            try {
+                // If target is accessible without SAF (in case of cross-media moves)
+                return newFile.createNewFile();
+            } catch (IOException e) {
+                // The rest of the target is no different, don't try again for every file
+                if (plainAccessWorks) log(e);
+                plainAccessWorks = false;
+                return false;
             }
         }
 
@@ -254,4 +553,14 @@ public class CopyOperation extends FileOperation<CopyArguments> {
             return createDirectory(context, newDir) != null;
         }
     }
+
+    private static class PendingCopy {
+        final File oldFile;
+        final File newFile;
+
+        PendingCopy(File oldFile, File newFile) {
+            this.oldFile = oldFile;
+            this.newFile = newFile;
+        }
+    }
 }
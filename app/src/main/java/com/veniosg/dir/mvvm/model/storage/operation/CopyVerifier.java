@@ -0,0 +1,151 @@
+package com.veniosg.dir.mvvm.model.storage.operation;
+
+import android.support.annotation.NonNull;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+import static com.veniosg.dir.mvvm.model.storage.BufferPool.FILE_BUFFER_SIZE;
+import static com.veniosg.dir.mvvm.model.storage.BufferPoolInjector.bufferPool;
+
+/**
+ * Checks copies against a SHA-256 digest of the source, taken from the bytes as they're
+ * copied. Only the copy is read again to check it, so verifying costs one extra read rather
+ * than two. Existing copies, with no digest to go by, are compared byte for byte instead.
+ * <p>
+ * The copy is usually read back from the page cache, as the platform offers no way to drop
+ * it. This catches mistakes made while copying and writing, not corruption on the medium.
+ */
+class CopyVerifier {
+    private static final String ALGORITHM = "SHA-256";
+
+    private CopyVerifier() {
+    }
+
+    @NonNull
+    static MessageDigest newDigest() throws IOException {
+        try {
+            return MessageDigest.getInstance(ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(ALGORITHM + " is not available", e);
+        }
+    }
+
+    /**
+     * Add the first length bytes of channel to digest, without moving its position. Used when
+     * resuming a copy, as what was copied before isn't in the digest yet.
+     */
+    static void update(@NonNull MessageDigest digest, @NonNull FileChannel channel, long length,
+                       @NonNull OperationControl control) throws IOException {
+        byte[] array = bufferPool().takeArray(FILE_BUFFER_SIZE);
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(array);
+            long position = 0;
+            while (position < length) {
+                buffer.limit((int) Math.min(array.length, length - position));
+                int read = channel.read(buffer, position);
+                if (read == -1) throw new IOException("Source ended before the copied part");
+
+                digest.update(array, 0, read);
+                position += read;
+                buffer.clear();
+                control.checkpoint(read);
+            }
+        } finally {
+            bufferPool().giveArray(array);
+        }
+    }
+
+    /**
+     * Read the copy to its end and compare it to the source's digest.
+     *
+     * @param copy Closed once read.
+     * @return The digest both share, in hex.
+     * @throws MismatchException If the copy differs from its source.
+     * @throws IOException       If reading fails.
+     */
+    @NonNull
+    static String check(@NonNull MessageDigest sourceDigest, @NonNull InputStream copy,
+                        @NonNull File copyFile, @NonNull OperationControl control)
+            throws IOException {
+        byte[] expected = sourceDigest.digest();
+        MessageDigest copyDigest = newDigest();
+        byte[] buffer = bufferPool().takeArray(FILE_BUFFER_SIZE);
+        try (InputStream in = copy) {
+            int len;
+            while ((len = in.read(buffer)) > 0) {
+                copyDigest.update(buffer, 0, len);
+                control.checkpoint(len);
+            }
+        } finally {
+            bufferPool().giveArray(buffer);
+        }
+
+        if (!Arrays.equals(expected, copyDigest.digest())) {
+            throw new MismatchException(copyFile);
+        }
+        return toHex(expected);
+    }
+
+    /**
+     * @return Whether both files hold the same bytes.
+     */
+    static boolean sameContents(@NonNull File file1, @NonNull File file2,
+                                @NonNull OperationControl control) throws IOException {
+        if (file1.length() != file2.length()) return false;
+
+        byte[] buffer1 = bufferPool().takeArray(FILE_BUFFER_SIZE);
+        byte[] buffer2 = bufferPool().takeArray(FILE_BUFFER_SIZE);
+        try (
+                InputStream in1 = new FileInputStream(file1);
+                InputStream in2 = new FileInputStream(file2)
+        ) {
+            int len;
+            while ((len = in1.read(buffer1)) > 0) {
+                if (!readFully(in2, buffer2, len)) return false;
+                for (int i = 0; i < len; i++) {
+                    if (buffer1[i] != buffer2[i]) return false;
+                }
+                control.checkpoint(2L * len);
+            }
+            return in2.read() == -1;
+        } finally {
+            bufferPool().giveArray(buffer1);
+            bufferPool().giveArray(buffer2);
+        }
+    }
+
+    private static boolean readFully(InputStream in, byte[] buffer, int length)
+            throws IOException {
+        int read = 0;
+        while (read < length) {
+            int len = in.read(buffer, read, length - read);
+            if (len == -1) return false;
+            read += len;
+        }
+        return true;
+    }
+
+    @NonNull
+    static String toHex(@NonNull byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16))
+                    .append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+    static class MismatchException extends IOException {
+        MismatchException(@NonNull File copy) {
+            super("Copy differs from its source: " + copy);
+        }
+    }
+}
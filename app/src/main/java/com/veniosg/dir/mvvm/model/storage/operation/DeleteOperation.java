@@ -26,15 +26,15 @@ import com.veniosg.dir.R;
 import com.veniosg.dir.android.fragment.FileListFragment;
 import com.veniosg.dir.android.ui.toast.ToastDisplayer;
 import com.veniosg.dir.android.util.MediaScannerUtils;
-import com.veniosg.dir.mvvm.model.FileHolder;
+import com.veniosg.dir.mvvm.model.storage.OperationManifest;
+import com.veniosg.dir.mvvm.model.storage.OperationManifest.Entry;
+import com.veniosg.dir.mvvm.model.storage.OperationManifest.Item;
 import com.veniosg.dir.mvvm.model.storage.operation.argument.DeleteArguments;
 
-import java.io.File;
 import java.util.List;
 
-import static com.veniosg.dir.android.util.FileUtils.delete;
-import static com.veniosg.dir.android.util.FileUtils.getPathsUnder;
 import static com.veniosg.dir.mvvm.model.storage.DocumentFileUtils.findFile;
+import static java.util.Arrays.asList;
 
 public class DeleteOperation extends FileOperation<DeleteArguments> {
     private final Context context;
@@ -54,14 +54,11 @@ public class DeleteOperation extends FileOperation<DeleteArguments> {
     public boolean operate(DeleteArguments args) {
         boolean allSucceeded = true;
 
-        for (FileHolder fh : args.getVictims()) {
-            File tbd = fh.getFile();
-            List<String> paths = getPathsUnder(tbd);
-
-            boolean deleted = delete(tbd);
+        for (Item item : manifestOf(args).getItems()) {
+            boolean deleted = delete(item);
             allSucceeded &= deleted;
 
-            if (deleted) MediaScannerUtils.informPathsDeleted(context, paths);
+            if (deleted) MediaScannerUtils.informPathsDeleted(context, item.getPaths());
         }
         return allSucceeded;
     }
@@ -70,18 +67,37 @@ public class DeleteOperation extends FileOperation<DeleteArguments> {
     public boolean operateSaf(DeleteArguments args) {
         boolean allSucceeded = true;
 
-        for (FileHolder fh : args.getVictims()) {
-            DocumentFile tbd = findFile(context, fh.getFile());
-            List<String> paths = getPathsUnder(fh.getFile());
+        for (Item item : manifestOf(args).getItems()) {
+            DocumentFile tbd = findFile(context, item.getFile());
 
             boolean deleted = tbd != null && tbd.delete();
             allSucceeded &= deleted;
 
-            if (deleted) MediaScannerUtils.informPathsDeleted(context, paths);
+            if (deleted) MediaScannerUtils.informPathsDeleted(context, item.getPaths());
         }
         return allSucceeded;
     }
 
+    private static OperationManifest manifestOf(DeleteArguments args) {
+        // Links are deleted themselves, never what they point to
+        return OperationManifest.manifestOf(asList(args.getVictims()), false);
+    }
+
+    /**
+     * Delete the entries of item last to first, so that every directory is emptied before it
+     * is deleted.
+     */
+    private static boolean delete(Item item) {
+        if (!item.isReadable()) return false;
+
+        boolean deletedAll = true;
+        List<Entry> entries = item.getEntries();
+        for (int i = entries.size() - 1; i >= 0; i--) {
+            deletedAll &= entries.get(i).getFile().delete();
+        }
+        return deletedAll;
+    }
+
     @Override
     public void onStartOperation(DeleteArguments args) {
         runOnUi(() -> {
@@ -22,16 +22,15 @@ import android.support.v4.provider.DocumentFile;
 
 import com.veniosg.dir.android.fragment.FileListFragment;
 import com.veniosg.dir.android.util.MediaScannerUtils;
-import com.veniosg.dir.android.util.Notifier;
 import com.veniosg.dir.mvvm.model.FileHolder;
 import com.veniosg.dir.mvvm.model.storage.operation.argument.ExtractArguments;
+import com.veniosg.dir.mvvm.model.storage.operation.ui.OperationStatusDisplayer;
 
-import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Enumeration;
@@ -39,22 +38,28 @@ import java.util.List;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 
+import io.reactivex.disposables.Disposable;
+import io.reactivex.disposables.Disposables;
+
 import static com.veniosg.dir.android.util.Logger.log;
 import static com.veniosg.dir.android.util.Notifier.clearNotification;
-import static com.veniosg.dir.android.util.Notifier.showExtractProgressNotification;
-import static com.veniosg.dir.android.util.Utils.getLastPathSegment;
+import static com.veniosg.dir.mvvm.model.storage.BufferPool.FILE_BUFFER_SIZE;
+import static com.veniosg.dir.mvvm.model.storage.BufferPool.STREAM_BUFFER_SIZE;
+import static com.veniosg.dir.mvvm.model.storage.BufferPoolInjector.bufferPool;
 import static com.veniosg.dir.mvvm.model.storage.DocumentFileUtils.createDirectory;
 import static com.veniosg.dir.mvvm.model.storage.DocumentFileUtils.createFile;
 import static com.veniosg.dir.mvvm.model.storage.DocumentFileUtils.outputStreamFor;
 import static com.veniosg.dir.mvvm.model.storage.DocumentFileUtils.safAwareDelete;
+import static com.veniosg.dir.mvvm.model.storage.operation.OperationJournal.journalFor;
 
 public class ExtractOperation extends FileOperation<ExtractArguments> {
-    private static final int BUFFER_SIZE = 1024;
 
     private final Context context;
+    private final OperationStatusDisplayer statusDisplayer;
 
-    public ExtractOperation(Context context) {
+    public ExtractOperation(Context context, OperationStatusDisplayer statusDisplayer) {
         this.context = context;
+        this.statusDisplayer = statusDisplayer;
     }
 
     @Override
@@ -71,13 +76,25 @@ public class ExtractOperation extends FileOperation<ExtractArguments> {
     public void onStartOperation(ExtractArguments args) {
     }
 
+    @Override
+    void onQueued(ExtractArguments args, int ahead) {
+        statusDisplayer.showQueued(id, ahead);
+    }
+
     @Override
     public void onResult(boolean success, ExtractArguments args) {
         File to = args.getTarget();
-        if (!success) safAwareDelete(context, to);
+        OperationControl control = args.getControl();
+        if (!success && !control.keepsPartialOutput()) safAwareDelete(context, to);
 
         MediaScannerUtils.informFileAdded(context, to);
-        Notifier.showExtractDoneNotification(success, id, to, context);
+        if (control.isCancelled()) {
+            statusDisplayer.showCancelled(id);
+        } else if (success) {
+            statusDisplayer.showExtractSuccess(id, to);
+        } else {
+            statusDisplayer.showExtractFailure(id, to);
+        }
         FileListFragment.refresh(context, to.getParentFile());
     }
 
@@ -96,6 +113,8 @@ public class ExtractOperation extends FileOperation<ExtractArguments> {
     }
 
     private abstract class Extractor {
+        private static final String JOURNAL_KIND = "extract";
+
         boolean extract(ExtractArguments args) {
             List<FileHolder> zipHolders = args.getZipFiles();
             File dstDirectory = args.getTarget();
@@ -106,28 +125,51 @@ public class ExtractOperation extends FileOperation<ExtractArguments> {
                 log(e);
                 return false;
             }
-            int fileCount = entriesIn(zipFiles);
-            int extractedCount = 0;
-
-            for (ZipFile zipFile : zipFiles) {
-                for (Enumeration e = zipFile.entries(); e.hasMoreElements(); ) {
-                    ZipEntry entry = (ZipEntry) e.nextElement();
-
-                    showExtractProgressNotification(extractedCount, fileCount,
-                            getLastPathSegment(entry.getName()),
-                            getLastPathSegment(zipFile.getName()),
-                            id, context);
-
-                    boolean extractSuccessful = extractEntry(zipFile, entry, dstDirectory);
-                    if (!extractSuccessful) return false;
-                    extractedCount++;
+            OperationControl control = args.getControl();
+            TransferProgress progress = new TransferProgress(
+                    uncompressedSizeOf(zipFiles), entriesIn(zipFiles))
+                    .controlledBy(control)
+                    .trackedBy(args.getHandle());
+
+            OperationJournal journal = journalFor(context, JOURNAL_KIND, dstDirectory, zipHolders);
+            Disposable shown = Disposables.disposed();
+            try {
+                for (ZipFile zipFile : zipFiles) {
+                    File archive = new File(zipFile.getName());
+                    // Shown under the name of the archive being extracted
+                    shown.dispose();
+                    shown = showProgress(args,
+                            p -> statusDisplayer.showExtractProgress(id, archive, p));
+                    for (Enumeration e = zipFile.entries(); e.hasMoreElements(); ) {
+                        ZipEntry entry = (ZipEntry) e.nextElement();
+                        File entryFile = new File(dstDirectory, entry.getName());
+
+                        // Extracted by an interrupted run
+                        if (journal.isDone(entryFile)) {
+                            if (entry.getSize() > 0) progress.addBytes(entry.getSize());
+                            progress.addFile();
+                            continue;
+                        }
+
+                        progress.startFile(entryFile);
+
+                        boolean extractSuccessful = extractEntry(zipFile, entry, dstDirectory,
+                                progress, control);
+                        if (!extractSuccessful) return false;
+                        journal.markDone(entryFile);
+                        progress.addFile();
+                    }
                 }
+            } finally {
+                journal.end(control);
+                shown.dispose();
             }
 
             return true;
         }
 
-        private boolean extractEntry(ZipFile zipFile, ZipEntry zipEntry, File outputDir) {
+        private boolean extractEntry(ZipFile zipFile, ZipEntry zipEntry, File outputDir,
+                                     TransferProgress progress, OperationControl control) {
             if (zipEntry.isDirectory()) {
                 return createDir(new File(outputDir, zipEntry.getName()));
             }
@@ -137,22 +179,25 @@ public class ExtractOperation extends FileOperation<ExtractArguments> {
                 if (!parentCreated) return false;
             }
 
+            // Large reads and writes need no buffering in between
+            byte[] buf = bufferPool().takeArray(bufferSize());
             try (
-                    BufferedInputStream inputStream =
-                            new BufferedInputStream(zipFile.getInputStream(zipEntry));
-                    BufferedOutputStream outputStream =
-                            new BufferedOutputStream(outputStream(outputFile))
+                    InputStream inputStream = zipFile.getInputStream(zipEntry);
+                    OutputStream outputStream = outputStream(outputFile)
             ) {
                 int len;
-                byte buf[] = new byte[BUFFER_SIZE];
                 while ((len = inputStream.read(buf)) > 0) {
                     outputStream.write(buf, 0, len);
+                    progress.addBytes(len);
+                    control.checkpoint(len);
                 }
                 //noinspection ResultOfMethodCallIgnored
                 outputFile.setLastModified(zipEntry.getTime());
             } catch (IOException e) {
-                log(e);
+                if (!control.isCancelled()) log(e);
                 return false;
+            } finally {
+                bufferPool().giveArray(buf);
             }
 
             return true;
@@ -174,8 +219,29 @@ public class ExtractOperation extends FileOperation<ExtractArguments> {
             return count;
         }
 
+        /**
+         * @return The total size of all entries once extracted, or
+         * {@link TransferProgress#UNKNOWN} if an archive doesn't record it.
+         */
+        private long uncompressedSizeOf(List<ZipFile> zipFiles) {
+            long size = 0;
+            for (ZipFile z : zipFiles) {
+                for (Enumeration e = z.entries(); e.hasMoreElements(); ) {
+                    long entrySize = ((ZipEntry) e.nextElement()).getSize();
+                    if (entrySize < 0) return TransferProgress.UNKNOWN;
+                    size += entrySize;
+                }
+            }
+            return size;
+        }
+
         abstract boolean createDir(File dir);
 
+        /**
+         * @return Size of the buffer to extract entries through, which suits where they go.
+         */
+        abstract int bufferSize();
+
         @NonNull
         abstract OutputStream outputStream(File outputFile) throws FileNotFoundException;
     }
@@ -186,6 +252,11 @@ public class ExtractOperation extends FileOperation<ExtractArguments> {
             return dir.exists() || dir.mkdirs();
         }
 
+        @Override
+        int bufferSize() {
+            return FILE_BUFFER_SIZE;
+        }
+
         @Override
         @NonNull
         public OutputStream outputStream(File outputFile) throws FileNotFoundException {
@@ -199,6 +270,11 @@ public class ExtractOperation extends FileOperation<ExtractArguments> {
             return dir.exists() || createDirectory(context, dir) != null;
         }
 
+        @Override
+        int bufferSize() {
+            return STREAM_BUFFER_SIZE;
+        }
+
         @NonNull
         @Override
         OutputStream outputStream(File outputFile) throws FileNotFoundException {
@@ -2,8 +2,17 @@ package com.veniosg.dir.mvvm.model.storage.operation;
 
 import android.support.annotation.NonNull;
 
+import com.veniosg.dir.mvvm.model.FileHolder;
+
 import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import io.reactivex.disposables.Disposable;
+import io.reactivex.functions.Consumer;
 
+import static com.veniosg.dir.mvvm.model.storage.operation.OperationProgress.STATE_RUNNING;
+import static java.util.Collections.emptyList;
 import static java.util.UUID.randomUUID;
 
 public abstract class FileOperation<A extends FileOperation.Arguments> {
@@ -30,6 +39,17 @@ public abstract class FileOperation<A extends FileOperation.Arguments> {
      */
     abstract void onStartOperation(A args);
 
+    /**
+     * Good place to show that the operation is waiting for others. Called once it's queued
+     * behind other operations, and again whenever its place in the queue changes, until it
+     * starts. Only operations submitted to the scheduler get this.
+     *
+     * @param args  Original arguments for the invocation that is waiting.
+     * @param ahead How many queued operations would start before this one.
+     */
+    void onQueued(A args, int ahead) {
+    }
+
     /**
      * Good place to show final result (success/failure) UI.
      * No other callbacks will happen after this.
@@ -55,9 +75,26 @@ public abstract class FileOperation<A extends FileOperation.Arguments> {
      */
     public abstract boolean needsWriteAccess();
 
+    /**
+     * Pass the progress of the invocation with args to display while it runs, on the thread
+     * doing the work. Dispose of the result on that thread once the work is done, so that no
+     * progress is shown after the result.
+     */
+    @NonNull
+    static Disposable showProgress(@NonNull Arguments args,
+                                   @NonNull Consumer<OperationProgress> display) {
+        return args.getHandle().progress()
+                .filter(progress -> progress.getState() == STATE_RUNNING)
+                .subscribe(display);
+    }
+
     public static abstract class Arguments {
         @NonNull
         private final File target;
+        @NonNull
+        private final OperationControl control = new OperationControl();
+        @NonNull
+        private final OperationHandle handle = new OperationHandle();
 
         protected Arguments(@NonNull File target) {
             this.target = target;
@@ -67,5 +104,38 @@ public abstract class FileOperation<A extends FileOperation.Arguments> {
         protected File getTarget() {
             return target;
         }
+
+        /**
+         * @return Control over the invocation with these arguments.
+         */
+        @NonNull
+        public OperationControl getControl() {
+            return control;
+        }
+
+        /**
+         * @return A way to follow the invocation with these arguments.
+         */
+        @NonNull
+        public OperationHandle getHandle() {
+            return handle;
+        }
+
+        /**
+         * @return The files the invocation reads, besides its target.
+         */
+        @NonNull
+        public List<File> getSources() {
+            return emptyList();
+        }
+
+        @NonNull
+        protected static List<File> filesOf(@NonNull List<FileHolder> holders) {
+            List<File> files = new ArrayList<>(holders.size());
+            for (FileHolder holder : holders) {
+                files.add(holder.getFile());
+            }
+            return files;
+        }
     }
 }
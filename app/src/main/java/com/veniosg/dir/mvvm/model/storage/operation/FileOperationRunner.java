@@ -16,33 +16,108 @@
 
 package com.veniosg.dir.mvvm.model.storage.operation;
 
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
 import com.veniosg.dir.android.ui.toast.ToastDisplayer;
 import com.veniosg.dir.mvvm.model.storage.access.StorageAccessManager;
 import com.veniosg.dir.mvvm.model.storage.access.StorageAccessManager.AccessPermissionListener;
+import com.veniosg.dir.mvvm.model.storage.operation.OperationScheduler.Job;
+import com.veniosg.dir.mvvm.model.storage.operation.OperationScheduler.Priority;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Manages a {@link FileOperation} instance's write access to different kinds of storage
  * devices and internally handles write access requests needed for the operation to succeed no
  * matter the location of the files being operated on.
+ * <p>
+ * While an operation runs, its {@link OperationControl} can be found by the operation's id,
+ * see {@link #controlOf(int)}.
+ * <p>
+ * Operations can either be run on the calling thread, or submitted to run on the
+ * {@link OperationScheduler}. Either way, they can be followed through the
+ * {@link OperationHandle} of their arguments. Submitted operations hear where they are in the
+ * queue until they start, and their job can be found by the operation's id meanwhile, see
+ * {@link #queuedJobOf(int)}.
  */
 public class FileOperationRunner {
+    private static final Map<Integer, OperationControl> runningControls = new HashMap<>();
+    private static final Map<Integer, Job> queuedJobs = new HashMap<>();
+
     private final StorageAccessManager storageAccessManager;
     private final ToastDisplayer toastDisplayer;
+    private final OperationScheduler scheduler;
 
-    FileOperationRunner(StorageAccessManager storageAccessManager, ToastDisplayer toastDisplayer) {
+    FileOperationRunner(StorageAccessManager storageAccessManager, ToastDisplayer toastDisplayer,
+                        OperationScheduler scheduler) {
         this.storageAccessManager = storageAccessManager;
         this.toastDisplayer = toastDisplayer;
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * @return The control of the running operation with this id, or null if it's not running.
+     */
+    @Nullable
+    public static OperationControl controlOf(int operationId) {
+        synchronized (runningControls) {
+            return runningControls.get(operationId);
+        }
+    }
+
+    /**
+     * @return The job of the operation with this id, or null if it isn't waiting to start.
+     */
+    @Nullable
+    public static Job queuedJobOf(int operationId) {
+        synchronized (queuedJobs) {
+            return queuedJobs.get(operationId);
+        }
+    }
+
+    /**
+     * Queue the operation to {@link #run(FileOperation, FileOperation.Arguments) run} in the
+     * background, on the volumes of its sources and target.
+     */
+    @NonNull
+    public <O extends FileOperation<A>, A extends FileOperation.Arguments> Job submit(
+            O operation, A args, @Priority int priority) {
+        List<File> files = new ArrayList<>(args.getSources());
+        files.add(args.getTarget());
+        args.getHandle().queued(operation.id);
+        QueueWatcher<A> watcher = new QueueWatcher<>(operation, args);
+        scheduler.addListener(watcher);
+        Job job = scheduler.submit(priority, files, () -> {
+            watcher.stop();
+            run(operation, args);
+        });
+        watcher.watch(job);
+        return job;
     }
 
     public <O extends FileOperation<A>, A extends FileOperation.Arguments> void run(O operation, A args) {
+        OperationControl control = args.getControl();
+        synchronized (runningControls) {
+            runningControls.put(operation.id, control);
+        }
+        args.getHandle().started(operation.id);
+
         operation.onStartOperation(args);
         boolean success = operation.operate(args);
-        boolean failedButNeedsAccess = !success && operation.needsWriteAccess();
+        // Cancelled operations failed on purpose, there's no point retrying them
+        boolean failedButNeedsAccess = !success && !control.isCancelled()
+                && operation.needsWriteAccess();
         if (failedButNeedsAccess) {
             if (storageAccessManager.hasWriteAccess(args.getTarget())) {
                 if (storageAccessManager.isSafBased()) {
                     success = operation.operateSaf(args);
                 }
+                finish(operation, args, success);
                 operation.onResult(success, args);
             } else {
                 operation.onRequestingAccess();
@@ -54,6 +129,7 @@ public class FileOperationRunner {
 
                     @Override
                     public void denied() {
+                        finish(operation, args, false);
                         operation.onAccessDenied();
                     }
 
@@ -65,7 +141,63 @@ public class FileOperationRunner {
                 });
             }
         } else {
+            finish(operation, args, success);
             operation.onResult(success, args);
         }
     }
+
+    /**
+     * Tells a submitted operation where it is in the queue, until it starts.
+     */
+    private class QueueWatcher<A extends FileOperation.Arguments>
+            extends OperationScheduler.Listener {
+        private final FileOperation<A> operation;
+        private final A args;
+        @Nullable
+        private Job job;
+        private boolean started = false;
+
+        QueueWatcher(FileOperation<A> operation, A args) {
+            this.operation = operation;
+            this.args = args;
+        }
+
+        /**
+         * The job may already have been queued or even started by the time it's known.
+         */
+        synchronized void watch(@NonNull Job job) {
+            if (started) return;
+
+            this.job = job;
+            synchronized (queuedJobs) {
+                queuedJobs.put(operation.id, job);
+            }
+            onQueueChanged();
+        }
+
+        synchronized void stop() {
+            started = true;
+            scheduler.removeListener(this);
+            synchronized (queuedJobs) {
+                queuedJobs.remove(operation.id);
+            }
+        }
+
+        @Override
+        public synchronized void onQueueChanged() {
+            if (job == null || started) return;
+
+            int ahead = scheduler.getQueued().indexOf(job);
+            // Still being placed, or about to start
+            if (ahead >= 0) operation.onQueued(args, ahead);
+        }
+    }
+
+    private static void finish(FileOperation<?> operation, FileOperation.Arguments args,
+                               boolean success) {
+        synchronized (runningControls) {
+            runningControls.remove(operation.id);
+        }
+        args.getHandle().finished(success, args.getControl().isCancelled());
+    }
 }
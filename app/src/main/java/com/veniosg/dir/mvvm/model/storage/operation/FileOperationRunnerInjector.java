@@ -5,6 +5,8 @@ import android.content.Context;
 import com.veniosg.dir.android.ui.toast.ToastDisplayer;
 import com.veniosg.dir.mvvm.model.storage.access.ExternalStorageAccessManager;
 
+import static com.veniosg.dir.mvvm.model.storage.operation.OperationSchedulerInjector.operationScheduler;
+
 public abstract class FileOperationRunnerInjector {
     private FileOperationRunnerInjector() {
     }
@@ -13,6 +15,7 @@ public abstract class FileOperationRunnerInjector {
      * Builds a default instance of {@link FileOperationRunner}.
      */
     public static FileOperationRunner operationRunner(Context c) {
-        return new FileOperationRunner(new ExternalStorageAccessManager(c), new ToastDisplayer(c));
+        return new FileOperationRunner(new ExternalStorageAccessManager(c), new ToastDisplayer(c),
+                operationScheduler());
     }
 }
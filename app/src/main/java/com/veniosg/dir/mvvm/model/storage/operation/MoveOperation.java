@@ -19,17 +19,26 @@ package com.veniosg.dir.mvvm.model.storage.operation;
 import android.content.Context;
 
 import com.veniosg.dir.android.util.MediaScannerUtils;
-import com.veniosg.dir.mvvm.model.FileHolder;
+import com.veniosg.dir.mvvm.model.storage.OperationManifest;
+import com.veniosg.dir.mvvm.model.storage.OperationManifest.Item;
+import com.veniosg.dir.mvvm.model.storage.operation.MovePlanner.Plan;
+import com.veniosg.dir.mvvm.model.storage.operation.argument.CopyArguments;
 import com.veniosg.dir.mvvm.model.storage.operation.argument.MoveArguments;
 import com.veniosg.dir.mvvm.model.storage.operation.ui.OperationStatusDisplayer;
 
 import java.io.File;
-import java.util.List;
+import java.io.InterruptedIOException;
+
+import io.reactivex.disposables.Disposable;
 
 import static com.veniosg.dir.android.fragment.FileListFragment.refresh;
-import static com.veniosg.dir.android.util.FileUtils.getPathsUnder;
 import static com.veniosg.dir.android.util.Notifier.clearNotification;
+import static com.veniosg.dir.mvvm.model.storage.DocumentFileUtils.providerMove;
 import static com.veniosg.dir.mvvm.model.storage.DocumentFileUtils.safAwareDelete;
+import static com.veniosg.dir.mvvm.model.storage.operation.MovePlanner.STRATEGY_COPY;
+import static com.veniosg.dir.mvvm.model.storage.operation.MovePlanner.STRATEGY_RENAME;
+import static com.veniosg.dir.mvvm.model.storage.operation.OperationJournal.journalFor;
+import static com.veniosg.dir.mvvm.model.storage.operation.TransferProgress.UNKNOWN;
 import static com.veniosg.dir.mvvm.model.storage.operation.argument.CopyArguments.copyArgs;
 import static com.veniosg.dir.mvvm.model.storage.operation.ui.OperationStatusDisplayerInjector.noOpStatusDisplayer;
 import static java.util.Collections.singletonList;
@@ -59,7 +68,10 @@ public class MoveOperation extends FileOperation<MoveArguments> {
 
     @Override
     public void onResult(boolean success, MoveArguments args) {
-        if (success) {
+        if (args.getControl().isCancelled()) {
+            statusDisplayer.showCancelled(id);
+            refresh(context, args.getTarget());
+        } else if (success) {
             statusDisplayer.showMoveSuccess(id, args.getTarget());
             refresh(context, args.getTarget());
         } else {
@@ -82,56 +94,138 @@ public class MoveOperation extends FileOperation<MoveArguments> {
     }
 
     private abstract class Mover {
+        private static final String JOURNAL_KIND = "move";
+
         boolean move(MoveArguments args) {
             boolean allSucceeded = true;
-            int fileIndex = 0;
 
             File from;
             File toFile;
             File target = args.getTarget();
-            List<FileHolder> files = args.getFilesToMove();
-            for (FileHolder fh : files) {
-                statusDisplayer.showMoveProgress(id, target, fh.getFile(),
-                        fileIndex++, files.size());
-
-                from = fh.getFile().getAbsoluteFile();
-                toFile = new File(target, fh.getName());
-                List<String> paths = getPathsUnder(from);
-
-                boolean fileMoved = moveSingle(fh, toFile);
-
-                if (fileMoved) {
-                    MediaScannerUtils.informPathsDeleted(context, paths);
-                    if (toFile.isDirectory()) {
-                        MediaScannerUtils.informFolderAdded(context, toFile);
-                    } else {
-                        MediaScannerUtils.informFileAdded(context, toFile);
+            OperationManifest manifest = args.getManifest();
+            OperationControl control = args.getControl();
+            TransferProgress progress = progressFor(args)
+                    .controlledBy(control)
+                    .trackedBy(args.getHandle());
+            Disposable shown = showProgress(args,
+                    p -> statusDisplayer.showMoveProgress(id, target, p));
+            OperationJournal journal = journalFor(context, JOURNAL_KIND, target,
+                    args.getFilesToMove());
+            try {
+                for (Item item : manifest.getItems()) {
+                    try {
+                        control.checkpoint();
+                    } catch (InterruptedIOException e) {
+                        allSucceeded = false;
+                        break;
                     }
-                }
 
-                allSucceeded &= fileMoved;
+                    from = item.getFile();
+                    // Moved by an interrupted run
+                    if (journal.isDone(from)) {
+                        progress.addFile();
+                        continue;
+                    }
+                    progress.startFile(from);
+
+                    toFile = new File(target, from.getName());
+
+                    boolean fileMoved = moveSingle(item, toFile, progress, args);
+
+                    if (fileMoved) {
+                        journal.markDone(from);
+                        MediaScannerUtils.informPathsDeleted(context, item.getPaths());
+                        MediaScannerUtils.informPathsAdded(context, item.getPathsUnder(toFile));
+                    }
+
+                    allSucceeded &= fileMoved;
+                }
+            } finally {
+                journal.end(control);
+                shown.dispose();
             }
 
             return allSucceeded;
         }
 
-        protected abstract boolean moveSingle(FileHolder what, File futureWhat);
+        /**
+         * Copy an item to where it's moving, then delete it.
+         */
+        boolean copyThenDelete(Item what, File futureWhat, TransferProgress progress,
+                               MoveArguments args) {
+            CopyArguments copyArgs = copyArgs(singletonList(what.getHolder()),
+                    futureWhat.getParentFile(), what.toManifest())
+                    .verifying(args.isVerified())
+                    .deletingSources(args.isPerFile()
+                            && args.getPlan().strategyOf(what) == STRATEGY_RENAME);
+            boolean copySucceeded = copy(copyArgs, progress, args.getControl());
+            // Only delete if full tree was copied. Spare files are bad, disappearing files are worse.
+            // When moving per file, this only removes the emptied directories.
+            return copySucceeded && safAwareDelete(context, what.getFile());
+        }
+
+        protected abstract TransferProgress progressFor(MoveArguments args);
+
+        protected abstract boolean moveSingle(Item what, File futureWhat,
+                                              TransferProgress progress, MoveArguments args);
+
+        protected abstract boolean copy(CopyArguments args, TransferProgress progress,
+                                        OperationControl control);
     }
 
     private class NormalMover extends Mover {
         @Override
-        protected boolean moveSingle(FileHolder what, File futureWhat) {
-            return what.getFile().renameTo(futureWhat);
+        protected TransferProgress progressFor(MoveArguments args) {
+            Plan plan = args.getPlan();
+            // Renames take no time per byte, so count each renamed item as a single file
+            long bytes = plan.getBytesToCopy() > 0 ? plan.getBytesToCopy() : UNKNOWN;
+            return new TransferProgress(bytes, plan.getRenameCount() + plan.getCopiedFileCount());
+        }
+
+        @Override
+        protected boolean moveSingle(Item what, File futureWhat, TransferProgress progress,
+                                     MoveArguments args) {
+            if (args.getPlan().strategyOf(what) == STRATEGY_COPY) {
+                return copyThenDelete(what, futureWhat, progress, args);
+            }
+
+            boolean moved = what.getFile().renameTo(futureWhat);
+            if (moved) progress.addFile();
+            return moved;
+        }
+
+        @Override
+        protected boolean copy(CopyArguments args, TransferProgress progress,
+                               OperationControl control) {
+            return new CopyOperation(context, noOpStatusDisplayer())
+                    .operate(args, progress, control);
         }
     }
 
     private class SafMover extends Mover {
         @Override
-        protected boolean moveSingle(FileHolder what, File futureWhat) {
-            boolean copySucceeded = new CopyOperation(context, noOpStatusDisplayer())
-                    .operateSaf(copyArgs(singletonList(what), futureWhat.getParentFile()));
-            // Only delete if full tree was copied. Spare files are bad, disappearing files are worse
-            return copySucceeded && safAwareDelete(context, what.getFile());
+        protected TransferProgress progressFor(MoveArguments args) {
+            OperationManifest manifest = args.getManifest();
+            return new TransferProgress(manifest.getSize(), manifest.getFileCount());
+        }
+
+        @Override
+        protected boolean moveSingle(Item what, File futureWhat, TransferProgress progress,
+                                     MoveArguments args) {
+            if (what.getFile().getName().equals(futureWhat.getName())
+                    && providerMove(context, what.getFile(), futureWhat.getParentFile())) {
+                progress.addBytes(what.getSize());
+                return true;
+            }
+
+            return copyThenDelete(what, futureWhat, progress, args);
+        }
+
+        @Override
+        protected boolean copy(CopyArguments args, TransferProgress progress,
+                               OperationControl control) {
+            return new CopyOperation(context, noOpStatusDisplayer())
+                    .operateSaf(args, progress, control);
         }
     }
 }
@@ -0,0 +1,114 @@
+package com.veniosg.dir.mvvm.model.storage.operation;
+
+import android.support.annotation.IntDef;
+import android.support.annotation.NonNull;
+
+import com.veniosg.dir.mvvm.model.storage.FileAttributeReader;
+import com.veniosg.dir.mvvm.model.storage.FileAttributes;
+import com.veniosg.dir.mvvm.model.storage.OperationManifest;
+import com.veniosg.dir.mvvm.model.storage.OperationManifest.Item;
+
+import java.io.File;
+import java.lang.annotation.Retention;
+import java.util.HashMap;
+import java.util.Map;
+
+import static com.veniosg.dir.mvvm.model.storage.FileAttributes.UNKNOWN_ID;
+import static java.lang.annotation.RetentionPolicy.SOURCE;
+
+/**
+ * Decides how each item of a move gets to its target, from the IDs of the devices they are on.
+ * Items on the target's device are renamed, which is atomic and takes no space. Others are
+ * copied, then deleted.
+ */
+public class MovePlanner {
+    @Retention(SOURCE)
+    @IntDef({STRATEGY_RENAME, STRATEGY_COPY})
+    public @interface Strategy {}
+    public static final int STRATEGY_RENAME = 0;
+    public static final int STRATEGY_COPY = 1;
+
+    private final FileAttributeReader attributeReader;
+
+    MovePlanner(@NonNull FileAttributeReader attributeReader) {
+        this.attributeReader = attributeReader;
+    }
+
+    /**
+     * Reads the device of the target and of each item once. Items whose device can't be read
+     * are copied, as renaming them might not work.
+     */
+    @NonNull
+    public Plan plan(@NonNull OperationManifest manifest, @NonNull File target) {
+        long targetDevice = deviceOf(attributeReader.read(target));
+        Plan plan = new Plan();
+        for (Item item : manifest.getItems()) {
+            // Renaming moves the link itself, so its own device is what matters
+            long device = deviceOf(attributeReader.readLink(item.getFile()));
+            boolean sameDevice = device != UNKNOWN_ID && device == targetDevice;
+            plan.add(item, sameDevice ? STRATEGY_RENAME : STRATEGY_COPY);
+        }
+        return plan;
+    }
+
+    private static long deviceOf(FileAttributes attributes) {
+        return attributes == null ? UNKNOWN_ID : attributes.device();
+    }
+
+    public static class Plan {
+        private final Map<File, Integer> strategies = new HashMap<>();
+        private int renameCount = 0;
+        private int copiedFileCount = 0;
+        private long bytesToCopy = 0;
+        private long largestItemToRename = 0;
+
+        private Plan() {
+        }
+
+        private void add(Item item, @Strategy int strategy) {
+            strategies.put(item.getFile(), strategy);
+            if (strategy == STRATEGY_RENAME) {
+                renameCount++;
+                largestItemToRename = Math.max(largestItemToRename, item.getSize());
+            } else {
+                copiedFileCount += item.getFileCount();
+                bytesToCopy += item.getSize();
+            }
+        }
+
+        /**
+         * @param item One of the items of the planned manifest.
+         */
+        @Strategy
+        public int strategyOf(@NonNull Item item) {
+            Integer strategy = strategies.get(item.getFile());
+            return strategy == null ? STRATEGY_COPY : strategy;
+        }
+
+        public int getRenameCount() {
+            return renameCount;
+        }
+
+        /**
+         * @return How many files are under the items to copy.
+         */
+        public int getCopiedFileCount() {
+            return copiedFileCount;
+        }
+
+        /**
+         * @return How many bytes the move needs free on the target.
+         */
+        public long getBytesToCopy() {
+            return bytesToCopy;
+        }
+
+        /**
+         * @return How many bytes the largest item to rename holds. Renaming needs no space, but
+         * copying it instead, where SAF can't rename, needs this much until its source goes.
+         */
+        public long getLargestItemToRename() {
+            return largestItemToRename;
+        }
+    }
+}
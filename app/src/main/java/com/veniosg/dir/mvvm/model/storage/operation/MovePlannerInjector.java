@@ -0,0 +1,14 @@
+package com.veniosg.dir.mvvm.model.storage.operation;
+
+import static com.veniosg.dir.mvvm.model.storage.FileAttributeReaderInjector.attributeReader;
+
+public abstract class MovePlannerInjector {
+    private static final MovePlanner PLANNER = new MovePlanner(attributeReader());
+
+    private MovePlannerInjector() {
+    }
+
+    public static MovePlanner movePlanner() {
+        return PLANNER;
+    }
+}
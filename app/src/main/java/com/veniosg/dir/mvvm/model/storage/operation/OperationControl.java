@@ -0,0 +1,158 @@
+package com.veniosg.dir.mvvm.model.storage.operation;
+
+import android.support.annotation.IntDef;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.veniosg.dir.mvvm.model.storage.IoArbiter;
+
+import java.io.InterruptedIOException;
+import java.lang.annotation.Retention;
+
+import static com.veniosg.dir.mvvm.model.storage.IoArbiterInjector.ioArbiter;
+import static java.lang.annotation.RetentionPolicy.SOURCE;
+
+/**
+ * Lets a running operation be cancelled, paused and resumed from elsewhere, such as its
+ * notification. Operations cooperate by calling {@link #checkpoint()} between chunks of work,
+ * so a cancelled operation stops within one buffer's worth of I/O. Those that report how much
+ * they transferred are also held back by the {@link IoArbiter}, to leave room for foreground
+ * work.
+ * <p>
+ * Safe to use from several threads.
+ */
+public class OperationControl {
+    @Retention(SOURCE)
+    @IntDef({DELETE_PARTIAL_OUTPUT, KEEP_PARTIAL_OUTPUT})
+    @interface CancelPolicy {}
+    /**
+     * Remove whatever the operation had only partly written.
+     */
+    public static final int DELETE_PARTIAL_OUTPUT = 0;
+    /**
+     * Leave partial output in place, along with the operation's journal, so that running the
+     * same operation again resumes it.
+     */
+    public static final int KEEP_PARTIAL_OUTPUT = 1;
+
+    @NonNull
+    private final IoArbiter arbiter;
+    private volatile boolean cancelled = false;
+    private volatile boolean paused = false;
+    @CancelPolicy
+    private int cancelPolicy = DELETE_PARTIAL_OUTPUT;
+    @Nullable
+    private Listener listener;
+
+    public OperationControl() {
+        this(ioArbiter());
+    }
+
+    OperationControl(@NonNull IoArbiter arbiter) {
+        this.arbiter = arbiter;
+    }
+
+    public void cancel() {
+        cancel(DELETE_PARTIAL_OUTPUT);
+    }
+
+    public synchronized void cancel(@CancelPolicy int policy) {
+        if (cancelled) return;
+
+        cancelPolicy = policy;
+        cancelled = true;
+        notifyAll();
+    }
+
+    public void pause() {
+        setPaused(true);
+    }
+
+    public void resume() {
+        setPaused(false);
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public boolean isPaused() {
+        return paused;
+    }
+
+    /**
+     * @return Whether the operation was cancelled and should remove its partial output.
+     */
+    public synchronized boolean deletesPartialOutput() {
+        return cancelled && cancelPolicy == DELETE_PARTIAL_OUTPUT;
+    }
+
+    /**
+     * @return Whether the operation was cancelled and should keep its partial output.
+     */
+    public synchronized boolean keepsPartialOutput() {
+        return cancelled && cancelPolicy == KEEP_PARTIAL_OUTPUT;
+    }
+
+    /**
+     * Wait while paused, then carry on unless cancelled.
+     *
+     * @throws InterruptedIOException If the operation was cancelled, or the waiting thread
+     *                                interrupted.
+     */
+    public void checkpoint() throws InterruptedIOException {
+        if (!paused && !cancelled) return;
+
+        synchronized (this) {
+            while (paused && !cancelled) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException();
+                }
+            }
+        }
+        if (cancelled) throw new InterruptedIOException("Operation cancelled");
+    }
+
+    /**
+     * Wait for as long as the {@link IoArbiter} asks after moving transferredBytes, then
+     * {@link #checkpoint()}.
+     */
+    public void checkpoint(long transferredBytes) throws InterruptedIOException {
+        arbiter.acquire(transferredBytes);
+        checkpoint();
+    }
+
+    /**
+     * @return How many bytes to move at most before the next checkpoint, given that preferred
+     * would be moved if nothing held the operation back.
+     */
+    public long chunkSize(long preferred) {
+        return Math.min(preferred, arbiter.chunkLimit());
+    }
+
+    /**
+     * @param listener Notified when the operation pauses or resumes, on the calling thread.
+     */
+    synchronized void listenedBy(@Nullable Listener listener) {
+        this.listener = listener;
+    }
+
+    private void setPaused(boolean paused) {
+        Listener listener;
+        synchronized (this) {
+            if (cancelled || this.paused == paused) return;
+
+            this.paused = paused;
+            notifyAll();
+            listener = this.listener;
+        }
+        if (listener != null) listener.onPausedChanged(paused);
+    }
+
+    interface Listener {
+        void onPausedChanged(boolean paused);
+    }
+}
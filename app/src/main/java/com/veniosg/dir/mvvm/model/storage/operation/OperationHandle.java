@@ -0,0 +1,75 @@
+package com.veniosg.dir.mvvm.model.storage.operation;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import io.reactivex.Flowable;
+import io.reactivex.Single;
+import io.reactivex.processors.FlowableProcessor;
+import io.reactivex.processors.ReplayProcessor;
+
+import static com.veniosg.dir.mvvm.model.storage.operation.OperationProgress.STATE_CANCELLED;
+import static com.veniosg.dir.mvvm.model.storage.operation.OperationProgress.STATE_FAILED;
+import static com.veniosg.dir.mvvm.model.storage.operation.OperationProgress.STATE_QUEUED;
+import static com.veniosg.dir.mvvm.model.storage.operation.OperationProgress.STATE_RUNNING;
+import static com.veniosg.dir.mvvm.model.storage.operation.OperationProgress.STATE_SUCCEEDED;
+
+/**
+ * Follows one invocation of an operation from anywhere, as a stream of
+ * {@link OperationProgress} that ends when the operation does.
+ * <p>
+ * Progress arrives as often as {@link TransferProgress} samples it. Subscribers that can't keep
+ * up get the latest progress once they can, and the final one is never dropped.
+ */
+public class OperationHandle {
+    // Keeps the latest progress for late subscribers, even once the operation is over
+    private final FlowableProcessor<OperationProgress> updates =
+            ReplayProcessor.<OperationProgress>createWithSize(1).toSerialized();
+    private volatile int operationId;
+    @Nullable
+    private volatile TransferProgress progress;
+
+    /**
+     * @return Progress so far, starting with the latest, completing once the operation is over.
+     */
+    @NonNull
+    public Flowable<OperationProgress> progress() {
+        return updates.onBackpressureLatest();
+    }
+
+    /**
+     * @return Whether the operation succeeded, once it's over.
+     */
+    @NonNull
+    public Single<Boolean> result() {
+        return updates.lastOrError()
+                .map(last -> last.getState() == STATE_SUCCEEDED);
+    }
+
+    void queued(int operationId) {
+        this.operationId = operationId;
+        publish(STATE_QUEUED);
+    }
+
+    void started(int operationId) {
+        this.operationId = operationId;
+        publish(STATE_RUNNING);
+    }
+
+    void finished(boolean success, boolean cancelled) {
+        publish(cancelled ? STATE_CANCELLED : success ? STATE_SUCCEEDED : STATE_FAILED);
+        updates.onComplete();
+    }
+
+    /**
+     * @param progress What the operation counts its work into.
+     */
+    void onProgress(@NonNull TransferProgress progress) {
+        this.progress = progress;
+        publish(STATE_RUNNING);
+    }
+
+    private void publish(@OperationProgress.State int state) {
+        updates.onNext(new OperationProgress(operationId, state, progress));
+    }
+}
@@ -0,0 +1,302 @@
+package com.veniosg.dir.mvvm.model.storage.operation;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.VisibleForTesting;
+
+import com.veniosg.dir.mvvm.model.FileHolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static com.veniosg.dir.android.util.Logger.log;
+import static com.veniosg.dir.mvvm.model.storage.operation.CopyVerifier.toHex;
+
+/**
+ * Append-only record of an operation's progress, so that an operation interrupted by the
+ * process dying can pick up where it stopped when it is run again with the same arguments.
+ * <p>
+ * One line is written per event: the destination chosen for each item, each entry completed,
+ * checkpoints within large files, and the digests of verified copies. Lines are only read when
+ * the journal is opened, and a line cut short by the process dying is ignored. Journals are
+ * discarded once their operation finishes, successfully or not, except when it is cancelled
+ * keeping its partial output, so that running it again picks up from there.
+ * <p>
+ * Safe to use from several threads.
+ */
+class OperationJournal {
+    private static final String DIRECTORY = "journals";
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final char BEGIN = 'B';
+    private static final char DESTINATION = 'M';
+    private static final char DONE = 'D';
+    private static final char CHECKPOINT = 'O';
+    private static final char DIGEST = 'H';
+
+    private final File file;
+    private final boolean interrupted;
+    private final Map<String, String> destinations = new HashMap<>();
+    private final Set<String> done = new HashSet<>();
+    private final Map<String, Checkpoint> checkpoints = new HashMap<>();
+    private final Map<String, String> digests = new HashMap<>();
+    @Nullable
+    private OutputStream out;
+
+    @VisibleForTesting
+    OperationJournal(@NonNull File file) {
+        this.file = file;
+        this.interrupted = file.exists();
+        if (interrupted) load();
+    }
+
+    /**
+     * @param kind Distinguishes operations with the same files, e.g. "copy".
+     * @return The journal of the operation described by the arguments, loaded with anything
+     * recorded by an earlier, interrupted run of it.
+     */
+    static OperationJournal journalFor(@NonNull Context context, @NonNull String kind,
+                                       @NonNull File target, @NonNull List<FileHolder> sources) {
+        StringBuilder key = new StringBuilder(kind).append('\n').append(target.getAbsolutePath());
+        for (FileHolder source : sources) {
+            key.append('\n').append(source.getFile().getAbsolutePath());
+        }
+
+        File directory = new File(context.getFilesDir(), DIRECTORY);
+        //noinspection ResultOfMethodCallIgnored
+        directory.mkdirs();
+        return new OperationJournal(new File(directory, digestOf(key.toString())));
+    }
+
+    /**
+     * @return Whether an earlier run of this operation was interrupted.
+     */
+    boolean wasInterrupted() {
+        return interrupted;
+    }
+
+    /**
+     * Record that the operation has started, for operations that record nothing else.
+     */
+    synchronized void begin() {
+        append(BEGIN);
+    }
+
+    /**
+     * @return The destination recorded for origin by an earlier run, or null.
+     */
+    @Nullable
+    synchronized File destinationOf(@NonNull File origin) {
+        String destination = destinations.get(origin.getAbsolutePath());
+        return destination == null ? null : new File(destination);
+    }
+
+    synchronized void recordDestination(@NonNull File origin, @NonNull File destination) {
+        destinations.put(origin.getAbsolutePath(), destination.getAbsolutePath());
+        append(DESTINATION, origin.getAbsolutePath(), destination.getAbsolutePath());
+    }
+
+    synchronized boolean isDone(@NonNull File entry) {
+        return done.contains(entry.getAbsolutePath());
+    }
+
+    synchronized void markDone(@NonNull File entry) {
+        done.add(entry.getAbsolutePath());
+        checkpoints.remove(entry.getAbsolutePath());
+        append(DONE, entry.getAbsolutePath());
+    }
+
+    /**
+     * @return The hex digest recorded for entry once it was verified, or null.
+     */
+    @Nullable
+    synchronized String recordedDigestOf(@NonNull File entry) {
+        return digests.get(entry.getAbsolutePath());
+    }
+
+    synchronized void recordDigest(@NonNull File entry, @NonNull String digest) {
+        digests.put(entry.getAbsolutePath(), digest);
+        append(DIGEST, entry.getAbsolutePath(), digest);
+    }
+
+    /**
+     * @return The offset up to which destination is known to hold the contents of source,
+     * or 0 if nothing is known or source has changed since.
+     */
+    synchronized long resumeOffset(@NonNull File source, @NonNull File destination) {
+        Checkpoint checkpoint = checkpoints.get(destination.getAbsolutePath());
+        if (checkpoint == null
+                || checkpoint.sourceSize != source.length()
+                || checkpoint.sourceModified != source.lastModified()
+                || destination.length() < checkpoint.offset) {
+            return 0;
+        }
+        return checkpoint.offset;
+    }
+
+    /**
+     * Record that everything in destination up to offset has been written and synced.
+     */
+    synchronized void checkpoint(@NonNull File source, @NonNull File destination, long offset) {
+        Checkpoint checkpoint = new Checkpoint(offset, source.length(), source.lastModified());
+        checkpoints.put(destination.getAbsolutePath(), checkpoint);
+        append(CHECKPOINT, destination.getAbsolutePath(), Long.toString(offset),
+                Long.toString(checkpoint.sourceSize), Long.toString(checkpoint.sourceModified));
+    }
+
+    /**
+     * Discard the journal once its operation is over, unless the operation was cancelled
+     * keeping its partial output. Running it again then resumes from this journal.
+     */
+    synchronized void end(@NonNull OperationControl control) {
+        if (control.keepsPartialOutput()) {
+            close();
+        } else {
+            discard();
+        }
+    }
+
+    synchronized void discard() {
+        close();
+        //noinspection ResultOfMethodCallIgnored
+        file.delete();
+        destinations.clear();
+        done.clear();
+        checkpoints.clear();
+        digests.clear();
+    }
+
+    private void append(char type, String... fields) {
+        StringBuilder line = new StringBuilder().append(type);
+        for (String field : fields) {
+            line.append('\t').append(escape(field));
+        }
+        line.append('\n');
+
+        try {
+            if (out == null) out = new FileOutputStream(file, true);
+            out.write(line.toString().getBytes(UTF_8));
+        } catch (IOException e) {
+            // Resuming is best effort, the operation itself can go on
+            log(e);
+        }
+    }
+
+    private void load() {
+        String contents;
+        try (InputStream in = new FileInputStream(file)) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8 * 1024];
+            int len;
+            while ((len = in.read(buffer)) > 0) {
+                bytes.write(buffer, 0, len);
+            }
+            contents = new String(bytes.toByteArray(), UTF_8);
+        } catch (IOException e) {
+            log(e);
+            return;
+        }
+
+        // Whatever follows the last line break was cut short
+        int end = contents.lastIndexOf('\n');
+        if (end == -1) return;
+        for (String line : contents.substring(0, end).split("\n")) {
+            String[] fields = line.split("\t", -1);
+            for (int i = 1; i < fields.length; i++) {
+                fields[i] = unescape(fields[i]);
+            }
+            apply(fields);
+        }
+    }
+
+    private void apply(String[] fields) {
+        if (fields[0].length() != 1) return;
+
+        try {
+            switch (fields[0].charAt(0)) {
+                case DESTINATION:
+                    if (fields.length == 3) destinations.put(fields[1], fields[2]);
+                    break;
+                case DONE:
+                    if (fields.length == 2) done.add(fields[1]);
+                    break;
+                case DIGEST:
+                    if (fields.length == 3) digests.put(fields[1], fields[2]);
+                    break;
+                case CHECKPOINT:
+                    if (fields.length == 5) {
+                        checkpoints.put(fields[1], new Checkpoint(Long.parseLong(fields[2]),
+                                Long.parseLong(fields[3]), Long.parseLong(fields[4])));
+                    }
+                    break;
+            }
+        } catch (NumberFormatException e) {
+            log(e);
+        }
+    }
+
+    private void close() {
+        if (out == null) return;
+
+        try {
+            out.close();
+        } catch (IOException e) {
+            log(e);
+        }
+        out = null;
+    }
+
+    private static String escape(String field) {
+        return field.replace("\\", "\\\\").replace("\t", "\\t").replace("\n", "\\n");
+    }
+
+    private static String unescape(String field) {
+        if (field.indexOf('\\') == -1) return field;
+
+        StringBuilder unescaped = new StringBuilder(field.length());
+        for (int i = 0; i < field.length(); i++) {
+            char c = field.charAt(i);
+            if (c == '\\' && i + 1 < field.length()) {
+                char next = field.charAt(++i);
+                unescaped.append(next == 't' ? '\t' : next == 'n' ? '\n' : next);
+            } else {
+                unescaped.append(c);
+            }
+        }
+        return unescaped.toString();
+    }
+
+    private static String digestOf(String key) {
+        try {
+            return toHex(MessageDigest.getInstance("SHA-1").digest(key.getBytes(UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            // Always available on Android
+            return Integer.toHexString(key.hashCode());
+        }
+    }
+
+    private static class Checkpoint {
+        final long offset;
+        final long sourceSize;
+        final long sourceModified;
+
+        Checkpoint(long offset, long sourceSize, long sourceModified) {
+            this.offset = offset;
+            this.sourceSize = sourceSize;
+            this.sourceModified = sourceModified;
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package com.veniosg.dir.mvvm.model.storage.operation;
+
+import android.support.annotation.IntDef;
+import android.support.annotation.Nullable;
+
+import java.io.File;
+import java.lang.annotation.Retention;
+
+import static com.veniosg.dir.mvvm.model.storage.operation.TransferProgress.UNKNOWN;
+import static java.lang.annotation.RetentionPolicy.SOURCE;
+
+/**
+ * Where an operation stood at one moment. Unlike {@link TransferProgress}, which keeps changing
+ * while the operation runs, this never changes and so can be handed to other threads.
+ */
+public class OperationProgress {
+    @Retention(SOURCE)
+    @IntDef({STATE_QUEUED, STATE_RUNNING, STATE_SUCCEEDED, STATE_FAILED, STATE_CANCELLED})
+    public @interface State {}
+    public static final int STATE_QUEUED = 0;
+    public static final int STATE_RUNNING = 1;
+    public static final int STATE_SUCCEEDED = 2;
+    public static final int STATE_FAILED = 3;
+    public static final int STATE_CANCELLED = 4;
+
+    private final int operationId;
+    @State
+    private final int state;
+    private final boolean paused;
+    private final long bytesDone;
+    private final long totalBytes;
+    private final int filesDone;
+    private final int totalFiles;
+    private final long bytesPerSecond;
+    private final long etaMillis;
+    @Nullable
+    private final File currentFile;
+
+    /**
+     * @param progress Null if the operation hasn't counted anything yet.
+     */
+    OperationProgress(int operationId, @State int state, @Nullable TransferProgress progress) {
+        this.operationId = operationId;
+        this.state = state;
+        if (progress != null) {
+            paused = progress.isPaused();
+            bytesDone = progress.getBytesDone();
+            totalBytes = progress.getTotalBytes();
+            filesDone = progress.getFilesDone();
+            totalFiles = progress.getTotalFiles();
+            bytesPerSecond = progress.getBytesPerSecond();
+            etaMillis = progress.getEtaMillis();
+            currentFile = progress.getCurrentFile();
+        } else {
+            paused = false;
+            bytesDone = 0;
+            totalBytes = UNKNOWN;
+            filesDone = 0;
+            totalFiles = 0;
+            bytesPerSecond = UNKNOWN;
+            etaMillis = UNKNOWN;
+            currentFile = null;
+        }
+    }
+
+    public int getOperationId() {
+        return operationId;
+    }
+
+    @State
+    public int getState() {
+        return state;
+    }
+
+    /**
+     * @return Whether the operation is over, one way or another.
+     */
+    public boolean isFinished() {
+        return state == STATE_SUCCEEDED || state == STATE_FAILED || state == STATE_CANCELLED;
+    }
+
+    public boolean isPaused() {
+        return paused;
+    }
+
+    public long getBytesDone() {
+        return bytesDone;
+    }
+
+    /**
+     * @return The total bytes, or {@link TransferProgress#UNKNOWN}.
+     */
+    public long getTotalBytes() {
+        return totalBytes;
+    }
+
+    public int getFilesDone() {
+        return filesDone;
+    }
+
+    public int getTotalFiles() {
+        return totalFiles;
+    }
+
+    /**
+     * @return How much of the operation was done, out of max. Measured in bytes if the total is
+     * known, and in files otherwise.
+     */
+    public int fractionOf(int max) {
+        if (totalBytes > 0) {
+            return (int) (Math.min(bytesDone, totalBytes) * max / totalBytes);
+        } else if (totalFiles > 0) {
+            return (int) ((long) Math.min(filesDone, totalFiles) * max / totalFiles);
+        } else {
+            return 0;
+        }
+    }
+
+    /**
+     * @return The smoothed rate, or {@link TransferProgress#UNKNOWN}.
+     */
+    public long getBytesPerSecond() {
+        return bytesPerSecond;
+    }
+
+    /**
+     * @return Estimated milliseconds until done, or {@link TransferProgress#UNKNOWN}.
+     */
+    public long getEtaMillis() {
+        return etaMillis;
+    }
+
+    @Nullable
+    public File getCurrentFile() {
+        return currentFile;
+    }
+
+    @Override
+    public String toString() {
+        return "OperationProgress{" +
+                "operationId=" + operationId +
+                ", state=" + state +
+                ", paused=" + paused +
+                ", bytesDone=" + bytesDone +
+                ", totalBytes=" + totalBytes +
+                ", filesDone=" + filesDone +
+                ", totalFiles=" + totalFiles +
+                '}';
+    }
+}
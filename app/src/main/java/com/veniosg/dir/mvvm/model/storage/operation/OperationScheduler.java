@@ -0,0 +1,238 @@
+package com.veniosg.dir.mvvm.model.storage.operation;
+
+import android.support.annotation.IntDef;
+import android.support.annotation.NonNull;
+
+import com.veniosg.dir.mvvm.model.storage.FileAttributeReader;
+import com.veniosg.dir.mvvm.model.storage.FileAttributes;
+
+import java.io.File;
+import java.lang.annotation.Retention;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+
+import static com.veniosg.dir.mvvm.model.storage.FileAttributes.UNKNOWN_ID;
+import static java.lang.annotation.RetentionPolicy.SOURCE;
+
+/**
+ * Runs jobs in the background, highest priority first, limiting how many run on each storage
+ * volume at once. Jobs on different volumes never wait for each other, so a quick copy isn't
+ * stuck behind a long archive job elsewhere.
+ * <p>
+ * Queued jobs can be listed, and their priority changed until they start.
+ */
+public class OperationScheduler {
+    @Retention(SOURCE)
+    @IntDef({PRIORITY_HIGH, PRIORITY_NORMAL, PRIORITY_LOW})
+    public @interface Priority {}
+    /**
+     * For jobs the user is waiting on. These may run on a volume one over its limit.
+     */
+    public static final int PRIORITY_HIGH = 0;
+    public static final int PRIORITY_NORMAL = 1;
+    /**
+     * For long jobs, such as archiving, that the user will check back on.
+     */
+    public static final int PRIORITY_LOW = 2;
+
+    private final Executor executor;
+    private final Executor volumeResolver;
+    private final FileAttributeReader attributeReader;
+    private final int volumeConcurrency;
+    private final List<Job> queue = new ArrayList<>();
+    private final Map<Long, Integer> runningPerVolume = new HashMap<>();
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private long nextOrder = 0;
+
+    /**
+     * @param volumeResolver Reads which volumes submitted jobs are on, before queueing them.
+     *                       Should run one task at a time, so jobs are queued as submitted.
+     * @param volumeConcurrency How many jobs may run on one volume at once.
+     */
+    OperationScheduler(@NonNull Executor executor, @NonNull Executor volumeResolver,
+                       @NonNull FileAttributeReader attributeReader, int volumeConcurrency) {
+        this.executor = executor;
+        this.volumeResolver = volumeResolver;
+        this.attributeReader = attributeReader;
+        this.volumeConcurrency = volumeConcurrency;
+    }
+
+    /**
+     * Doesn't touch storage, so it's safe to call from the main thread. The job is queued once
+     * the volumes of its files are known.
+     *
+     * @param files All files the job reads or writes, used to tell which volumes it occupies.
+     *              Files that don't exist yet count as being on their closest existing parent's
+     *              volume.
+     */
+    @NonNull
+    public Job submit(@Priority int priority, @NonNull List<File> files, @NonNull Runnable work) {
+        Job job = new Job(priority, work);
+        synchronized (this) {
+            job.order = nextOrder++;
+        }
+        volumeResolver.execute(() -> {
+            job.volumes = volumesOf(files);
+            synchronized (this) {
+                queue.add(job);
+            }
+            dispatch();
+        });
+        return job;
+    }
+
+    /**
+     * @return Jobs that haven't started yet, in the order they would start were there no
+     * volume limits. Jobs whose volumes are still being read are not listed yet.
+     */
+    @NonNull
+    public synchronized List<Job> getQueued() {
+        sortQueue();
+        return new ArrayList<>(queue);
+    }
+
+    /**
+     * Give a queued job another priority. It goes after the jobs already queued with that
+     * priority.
+     *
+     * @return Whether the job was still queued and so could be changed.
+     */
+    public boolean setPriority(@NonNull Job job, @Priority int priority) {
+        synchronized (this) {
+            if (!queue.contains(job)) return false;
+
+            job.priority = priority;
+            job.order = nextOrder++;
+        }
+        dispatch();
+        return true;
+    }
+
+    public void addListener(@NonNull Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(@NonNull Listener listener) {
+        listeners.remove(listener);
+    }
+
+    private void dispatch() {
+        List<Job> starting = new ArrayList<>();
+        synchronized (this) {
+            sortQueue();
+            // Volumes a job ahead is waiting for are kept for it, so it isn't starved
+            Set<Long> reserved = new HashSet<>();
+            for (Job job : queue) {
+                if (canStart(job, reserved)) {
+                    starting.add(job);
+                    for (long volume : job.volumes) {
+                        runningPerVolume.put(volume, runningOn(volume) + 1);
+                    }
+                } else {
+                    reserved.addAll(job.volumes);
+                }
+            }
+            queue.removeAll(starting);
+        }
+
+        for (Job job : starting) {
+            executor.execute(() -> run(job));
+        }
+        for (Listener listener : listeners) {
+            listener.onQueueChanged();
+        }
+    }
+
+    private void run(Job job) {
+        try {
+            job.work.run();
+        } finally {
+            synchronized (this) {
+                for (long volume : job.volumes) {
+                    runningPerVolume.put(volume, runningOn(volume) - 1);
+                }
+            }
+            for (Listener listener : listeners) {
+                listener.onJobFinished(job);
+            }
+            dispatch();
+        }
+    }
+
+    private boolean canStart(Job job, Set<Long> reserved) {
+        int limit = job.priority == PRIORITY_HIGH ? volumeConcurrency + 1 : volumeConcurrency;
+        for (long volume : job.volumes) {
+            if (reserved.contains(volume) || runningOn(volume) >= limit) return false;
+        }
+        return true;
+    }
+
+    private int runningOn(long volume) {
+        Integer running = runningPerVolume.get(volume);
+        return running == null ? 0 : running;
+    }
+
+    private void sortQueue() {
+        Collections.sort(queue, (job1, job2) -> job1.priority != job2.priority
+                ? Integer.compare(job1.priority, job2.priority)
+                : Long.compare(job1.order, job2.order));
+    }
+
+    private Set<Long> volumesOf(List<File> files) {
+        Set<Long> volumes = new HashSet<>();
+        for (File file : files) {
+            volumes.add(volumeOf(file.getAbsoluteFile()));
+        }
+        return volumes;
+    }
+
+    private long volumeOf(File file) {
+        for (File existing = file; existing != null; existing = existing.getParentFile()) {
+            FileAttributes attributes = attributeReader.read(existing);
+            if (attributes != null) return attributes.device();
+        }
+        // Unreadable files share one volume, which is at worst too careful
+        return UNKNOWN_ID;
+    }
+
+    public static class Job {
+        @Priority
+        private volatile int priority;
+        private long order;
+        // Set before the job is queued
+        private Set<Long> volumes;
+        @NonNull
+        private final Runnable work;
+
+        private Job(@Priority int priority, @NonNull Runnable work) {
+            this.priority = priority;
+            this.work = work;
+        }
+
+        @Priority
+        public int getPriority() {
+            return priority;
+        }
+    }
+
+    /**
+     * Called on the thread that changed the queue, or that ran the job.
+     */
+    public static abstract class Listener {
+        /**
+         * Called when jobs are added, reprioritised or started.
+         */
+        public void onQueueChanged() {
+        }
+
+        public void onJobFinished(@NonNull Job job) {
+        }
+    }
+}
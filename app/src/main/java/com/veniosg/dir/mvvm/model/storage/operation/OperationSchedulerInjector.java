@@ -0,0 +1,22 @@
+package com.veniosg.dir.mvvm.model.storage.operation;
+
+import static com.veniosg.dir.mvvm.model.storage.FileAttributeReaderInjector.attributeReader;
+import static java.util.concurrent.Executors.newCachedThreadPool;
+import static java.util.concurrent.Executors.newSingleThreadExecutor;
+
+public abstract class OperationSchedulerInjector {
+    /**
+     * Two jobs keep a volume busy while one of them is between files, any more just contend.
+     */
+    private static final int VOLUME_CONCURRENCY = 2;
+    private static final OperationScheduler SCHEDULER = new OperationScheduler(
+            newCachedThreadPool(), newSingleThreadExecutor(), attributeReader(),
+            VOLUME_CONCURRENCY);
+
+    private OperationSchedulerInjector() {
+    }
+
+    public static OperationScheduler operationScheduler() {
+        return SCHEDULER;
+    }
+}
@@ -0,0 +1,232 @@
+/*
+ * Copyright (C) 2018 George Venios
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.veniosg.dir.mvvm.model.storage.operation;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+import android.support.annotation.VisibleForTesting;
+
+import com.veniosg.dir.android.util.MediaScannerUtils;
+import com.veniosg.dir.mvvm.model.storage.OperationManifest;
+import com.veniosg.dir.mvvm.model.storage.OperationManifest.Entry;
+import com.veniosg.dir.mvvm.model.storage.OperationManifest.Item;
+import com.veniosg.dir.mvvm.model.storage.TreeWalker;
+import com.veniosg.dir.mvvm.model.storage.operation.argument.CopyArguments;
+import com.veniosg.dir.mvvm.model.storage.operation.argument.SyncArguments;
+import com.veniosg.dir.mvvm.model.storage.operation.ui.OperationStatusDisplayer;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import io.reactivex.disposables.Disposable;
+
+import static com.veniosg.dir.android.fragment.FileListFragment.refresh;
+import static com.veniosg.dir.android.util.Logger.log;
+import static com.veniosg.dir.android.util.Notifier.clearNotification;
+import static com.veniosg.dir.mvvm.model.storage.DocumentFileUtils.safAwareDelete;
+import static com.veniosg.dir.mvvm.model.storage.TreeWalker.treeWalker;
+import static com.veniosg.dir.mvvm.model.storage.operation.argument.CopyArguments.copyArgs;
+import static com.veniosg.dir.mvvm.model.storage.operation.ui.OperationStatusDisplayerInjector.noOpStatusDisplayer;
+
+/**
+ * Brings copies of files in the target up to date, copying only what is new or has changed
+ * since it was last copied. Unlike copying, the files keep their names and replace what's in
+ * the target.
+ */
+public class SyncOperation extends FileOperation<SyncArguments> {
+    private final Context context;
+    private final OperationStatusDisplayer statusDisplayer;
+
+    public SyncOperation(Context context, OperationStatusDisplayer statusDisplayer) {
+        this.context = context.getApplicationContext();
+        this.statusDisplayer = statusDisplayer;
+    }
+
+    @Override
+    public boolean operate(SyncArguments args) {
+        return sync(args, false);
+    }
+
+    @Override
+    public boolean operateSaf(SyncArguments args) {
+        return sync(args, true);
+    }
+
+    @Override
+    public void onStartOperation(SyncArguments args) {
+    }
+
+    @Override
+    public void onResult(boolean success, SyncArguments args) {
+        if (args.getControl().isCancelled()) {
+            statusDisplayer.showCancelled(id);
+            refresh(context, args.getTarget());
+        } else if (success) {
+            statusDisplayer.showSyncSuccess(id, args.getTarget());
+            refresh(context, args.getTarget());
+        } else {
+            statusDisplayer.showSyncFailure(id, args.getTarget());
+        }
+    }
+
+    @Override
+    public void onAccessDenied() {
+    }
+
+    @Override
+    public void onRequestingAccess() {
+        clearNotification(id, context);
+    }
+
+    @Override
+    public boolean needsWriteAccess() {
+        return true;
+    }
+
+    /**
+     * @return Where source is kept in target. Unlike a copy, it has the same name.
+     */
+    @NonNull
+    static File mirrorOf(@NonNull File source, @NonNull File target) {
+        return new File(target, source.getName());
+    }
+
+    /**
+     * @return Whether mirror is the same size as source, and has either been written since
+     * source last changed or has the same contents, if comparing those.
+     */
+    static boolean isUpToDate(@NonNull File source, @NonNull File mirror,
+                              boolean comparingContents, @NonNull OperationControl control) {
+        if (!mirror.isFile() || mirror.length() != source.length()) return false;
+        if (!comparingContents) return mirror.lastModified() >= source.lastModified();
+
+        try {
+            return CopyVerifier.sameContents(source, mirror, control);
+        } catch (IOException e) {
+            // Copying again is never wrong
+            return false;
+        }
+    }
+
+    /**
+     * Collect what's in the mirror of item but not in item itself.
+     *
+     * @return False if the walk was cancelled before it saw everything.
+     */
+    @VisibleForTesting
+    static boolean findExtras(@NonNull Item item, @NonNull File mirror,
+                              @NonNull TreeWalker walker, @NonNull List<File> extras)
+            throws IOException {
+        return walker.walk(mirror, new ExtrasLister(item, extras));
+    }
+
+    private boolean sync(SyncArguments args, boolean saf) {
+        File target = args.getTarget();
+        OperationManifest manifest = args.getManifest();
+        OperationControl control = args.getControl();
+        TransferProgress progress =
+                new TransferProgress(manifest.getSize(), manifest.getFileCount());
+        progress.controlledBy(control)
+                .trackedBy(args.getHandle());
+        CopyArguments copyArgs = copyArgs(args.getFilesToSync(), target, manifest)
+                .mirroring(true)
+                .comparingContents(args.isComparingContents());
+
+        CopyOperation copy = new CopyOperation(context, noOpStatusDisplayer());
+        Disposable shown = showProgress(args,
+                p -> statusDisplayer.showSyncProgress(id, target, p));
+        try {
+            boolean copied = saf
+                    ? copy.operateSaf(copyArgs, progress, control)
+                    : copy.operate(copyArgs, progress, control);
+            // What looks extra may be what failed to copy under a different name, so leave it be
+            return copied
+                    && (!args.isDeletingExtras() || deleteExtras(manifest, target, control));
+        } finally {
+            shown.dispose();
+        }
+    }
+
+    /**
+     * Delete what's in the copies of the items but not in the items themselves.
+     *
+     * @return Whether everything extra was deleted.
+     */
+    private boolean deleteExtras(OperationManifest manifest, File target,
+                                 OperationControl control) {
+        boolean deletedAll = true;
+        for (Item item : manifest.getItems()) {
+            if (!item.isReadable() || control.isCancelled()) continue;
+
+            File mirror = mirrorOf(item.getFile(), target);
+            List<File> extras = new ArrayList<>();
+            try {
+                boolean walkedAll = findExtras(item, mirror,
+                        treeWalker().cancellableBy(control::isCancelled), extras);
+                if (!walkedAll) return false;
+            } catch (IOException e) {
+                log(e);
+                deletedAll = false;
+                continue;
+            }
+
+            List<String> deletedPaths = new ArrayList<>(extras.size());
+            for (File extra : extras) {
+                if (safAwareDelete(context, extra)) {
+                    deletedPaths.add(extra.getAbsolutePath());
+                } else {
+                    deletedAll = false;
+                }
+            }
+            MediaScannerUtils.informPathsDeleted(context, deletedPaths);
+        }
+        return deletedAll;
+    }
+
+    /**
+     * Collects the entries of a copy that its item doesn't have, without entering extra
+     * directories as they're deleted whole.
+     */
+    private static class ExtrasLister extends TreeWalker.Visitor {
+        private final Set<String> wanted = new HashSet<>();
+        private final List<File> extras;
+
+        ExtrasLister(@NonNull Item item, @NonNull List<File> extras) {
+            for (Entry entry : item.getEntries()) {
+                wanted.add(entry.getRelativePath());
+            }
+            this.extras = extras;
+        }
+
+        @Override
+        public boolean preVisitDirectory(@NonNull TreeWalker.Entry directory) {
+            if (wanted.contains(directory.getRelativePath())) return true;
+
+            extras.add(directory.getFile());
+            return false;
+        }
+
+        @Override
+        public void visitFile(@NonNull TreeWalker.Entry file) {
+            if (!wanted.contains(file.getRelativePath())) extras.add(file.getFile());
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package com.veniosg.dir.mvvm.model.storage.operation;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.io.File;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * How far an operation has got in files and bytes, and how fast it is going.
+ * <p>
+ * The rate is an exponentially weighted moving average of the throughput between samples, so
+ * that the ETA neither jumps around with every small file nor takes long to catch up with
+ * a change of pace. Samples are taken as bytes are added, at most every
+ * {@link #SAMPLE_INTERVAL_MS}, and each one is passed on to the {@link OperationHandle} of the
+ * operation, along with every file started.
+ * <p>
+ * Safe to update from several threads.
+ */
+public class TransferProgress {
+    public static final long UNKNOWN = -1;
+    static final long SAMPLE_INTERVAL_MS = 500;
+    // Weight of the newest sample. About the last five seconds matter
+    private static final double SMOOTHING = 0.1;
+
+    private final long totalBytes;
+    private final int totalFiles;
+    private final AtomicLong bytesDone = new AtomicLong();
+    private final AtomicInteger filesDone = new AtomicInteger();
+    @Nullable
+    private volatile File current;
+    @Nullable
+    private volatile OperationHandle handle;
+    @Nullable
+    private volatile OperationControl control;
+
+    private final Object sampleLock = new Object();
+    private long lastSampleNanos;
+    private long lastSampleBytes = 0;
+    private volatile double bytesPerSecond = UNKNOWN;
+
+    /**
+     * @param totalBytes How many bytes the operation will process, or {@link #UNKNOWN}.
+     * @param totalFiles How many files the operation will process.
+     */
+    public TransferProgress(long totalBytes, int totalFiles) {
+        this(totalBytes, totalFiles, System.nanoTime());
+    }
+
+    TransferProgress(long totalBytes, int totalFiles, long startNanos) {
+        this.totalBytes = totalBytes;
+        this.totalFiles = totalFiles;
+        this.lastSampleNanos = startNanos;
+    }
+
+    /**
+     * Report every new sample to handle, on the thread that added the bytes, starting now.
+     */
+    public TransferProgress trackedBy(@NonNull OperationHandle handle) {
+        this.handle = handle;
+        handle.onProgress(this);
+        return this;
+    }
+
+    /**
+     * Reflect whether control is paused, and report whenever that changes as no new samples
+     * arrive meanwhile.
+     */
+    public TransferProgress controlledBy(@NonNull OperationControl control) {
+        this.control = control;
+        control.listenedBy(paused -> {
+            // Time spent paused shouldn't count towards the rate
+            if (!paused) restartSampling(System.nanoTime());
+            notifySample();
+        });
+        return this;
+    }
+
+    /**
+     * Mark file as the one being processed now, and report it.
+     */
+    public void startFile(@NonNull File file) {
+        current = file;
+        notifySample();
+    }
+
+    public void addBytes(long bytes) {
+        addBytes(bytes, System.nanoTime());
+    }
+
+    void addBytes(long bytes, long nowNanos) {
+        long done = bytesDone.addAndGet(bytes);
+        if (sample(done, nowNanos)) notifySample();
+    }
+
+    public void addFile() {
+        filesDone.incrementAndGet();
+    }
+
+    private boolean sample(long done, long nowNanos) {
+        synchronized (sampleLock) {
+            long elapsedNanos = nowNanos - lastSampleNanos;
+            if (elapsedNanos < MILLISECONDS.toNanos(SAMPLE_INTERVAL_MS)) return false;
+
+            double rate = (done - lastSampleBytes) * 1e9 / elapsedNanos;
+            bytesPerSecond = bytesPerSecond == UNKNOWN ? rate
+                    : SMOOTHING * rate + (1 - SMOOTHING) * bytesPerSecond;
+            lastSampleNanos = nowNanos;
+            lastSampleBytes = done;
+            return true;
+        }
+    }
+
+    private void notifySample() {
+        OperationHandle handle = this.handle;
+        if (handle != null) handle.onProgress(this);
+    }
+
+    private void restartSampling(long nowNanos) {
+        synchronized (sampleLock) {
+            lastSampleNanos = nowNanos;
+            lastSampleBytes = bytesDone.get();
+        }
+    }
+
+    @Nullable
+    public File getCurrentFile() {
+        return current;
+    }
+
+    public boolean isPaused() {
+        OperationControl control = this.control;
+        return control != null && control.isPaused();
+    }
+
+    public long getBytesDone() {
+        return bytesDone.get();
+    }
+
+    /**
+     * @return The total bytes, or {@link #UNKNOWN}.
+     */
+    public long getTotalBytes() {
+        return totalBytes;
+    }
+
+    public int getFilesDone() {
+        return filesDone.get();
+    }
+
+    public int getTotalFiles() {
+        return totalFiles;
+    }
+
+    /**
+     * @return The smoothed rate, or {@link #UNKNOWN} until enough time has passed to tell.
+     */
+    public long getBytesPerSecond() {
+        double rate = bytesPerSecond;
+        return rate == UNKNOWN ? UNKNOWN : (long) rate;
+    }
+
+    /**
+     * @return Estimated milliseconds until done, or {@link #UNKNOWN}.
+     */
+    public long getEtaMillis() {
+        double rate = bytesPerSecond;
+        if (rate <= 0 || totalBytes == UNKNOWN) return UNKNOWN;
+
+        long remaining = Math.max(0, totalBytes - bytesDone.get());
+        return NANOSECONDS.toMillis((long) (remaining * 1e9 / rate));
+    }
+}
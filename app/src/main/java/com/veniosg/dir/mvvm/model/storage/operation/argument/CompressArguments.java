@@ -41,4 +41,10 @@ public class CompressArguments extends FileOperation.Arguments {
     public List<FileHolder> getToCompress() {
         return toCompress;
     }
-}
\ No newline at end of file
+
+    @NonNull
+    @Override
+    public List<File> getSources() {
+        return filesOf(toCompress);
+    }
+}
@@ -17,30 +17,116 @@
 package com.veniosg.dir.mvvm.model.storage.operation.argument;
 
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 
 import com.veniosg.dir.mvvm.model.FileHolder;
+import com.veniosg.dir.mvvm.model.storage.OperationManifest;
 import com.veniosg.dir.mvvm.model.storage.operation.FileOperation;
 
 import java.io.File;
 import java.util.List;
 
+import static com.veniosg.dir.mvvm.model.storage.OperationManifest.manifestOf;
 import static java.util.Collections.unmodifiableList;
 
 public class CopyArguments extends FileOperation.Arguments {
     @NonNull
     private final List<FileHolder> filesToCopy;
+    @Nullable
+    private OperationManifest manifest;
+    private boolean verified = false;
+    private boolean deletingSources = false;
+    private boolean mirroring = false;
+    private boolean comparingContents = false;
 
-    private CopyArguments(@NonNull List<FileHolder> toCopy, @NonNull File to) {
+    private CopyArguments(@NonNull List<FileHolder> toCopy, @NonNull File to,
+                          @Nullable OperationManifest manifest) {
         super(to);
         this.filesToCopy = toCopy;
+        this.manifest = manifest;
     }
 
     public static CopyArguments copyArgs(@NonNull List<FileHolder> toCopy, @NonNull File to) {
-        return new CopyArguments(toCopy, to);
+        return new CopyArguments(toCopy, to, null);
+    }
+
+    /**
+     * @param manifest Already read from toCopy, to save walking them again.
+     */
+    public static CopyArguments copyArgs(@NonNull List<FileHolder> toCopy, @NonNull File to,
+                                         @NonNull OperationManifest manifest) {
+        return new CopyArguments(toCopy, to, manifest);
+    }
+
+    /**
+     * @param verified Whether to check each copy against its source after writing it.
+     */
+    public CopyArguments verifying(boolean verified) {
+        this.verified = verified;
+        return this;
+    }
+
+    public boolean isVerified() {
+        return verified;
+    }
+
+    /**
+     * @param deletingSources Whether to delete each source file once it's copied, turning the
+     *                        copy into a move. Whatever is copied is then kept if cancelled.
+     */
+    public CopyArguments deletingSources(boolean deletingSources) {
+        this.deletingSources = deletingSources;
+        return this;
+    }
+
+    public boolean isDeletingSources() {
+        return deletingSources;
+    }
+
+    /**
+     * @param mirroring Whether to copy each file onto the same name in the target, skipping
+     *                  those already there unchanged, instead of alongside under a new name.
+     */
+    public CopyArguments mirroring(boolean mirroring) {
+        this.mirroring = mirroring;
+        return this;
+    }
+
+    public boolean isMirroring() {
+        return mirroring;
+    }
+
+    /**
+     * @param comparingContents When mirroring, whether to tell unchanged files by their contents
+     *                          rather than by when they were modified.
+     */
+    public CopyArguments comparingContents(boolean comparingContents) {
+        this.comparingContents = comparingContents;
+        return this;
+    }
+
+    public boolean isComparingContents() {
+        return comparingContents;
     }
 
     @NonNull
     public List<FileHolder> getFilesToCopy() {
         return unmodifiableList(filesToCopy);
     }
+
+    /**
+     * @return Everything under the files, read on first use if not given.
+     */
+    @NonNull
+    public OperationManifest getManifest() {
+        // Copies take what links point to
+        if (manifest == null) manifest = manifestOf(filesToCopy, true);
+        return manifest;
+    }
+
+    @NonNull
+    @Override
+    public List<File> getSources() {
+        return filesOf(filesToCopy);
+    }
 }
@@ -41,4 +41,10 @@ public class ExtractArguments extends FileOperation.Arguments {
     public List<FileHolder> getZipFiles() {
         return zipFiles;
     }
-}
\ No newline at end of file
+
+    @NonNull
+    @Override
+    public List<File> getSources() {
+        return filesOf(zipFiles);
+    }
+}
@@ -17,30 +17,106 @@
 package com.veniosg.dir.mvvm.model.storage.operation.argument;
 
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 
 import com.veniosg.dir.mvvm.model.FileHolder;
+import com.veniosg.dir.mvvm.model.storage.OperationManifest;
 import com.veniosg.dir.mvvm.model.storage.operation.FileOperation;
+import com.veniosg.dir.mvvm.model.storage.operation.MovePlanner.Plan;
 
 import java.io.File;
 import java.util.List;
 
+import static com.veniosg.dir.mvvm.model.storage.OperationManifest.manifestOf;
+import static com.veniosg.dir.mvvm.model.storage.operation.MovePlannerInjector.movePlanner;
 import static java.util.Collections.unmodifiableList;
 
 public class MoveArguments extends FileOperation.Arguments {
     @NonNull
     private final List<FileHolder> filesToMove;
+    @Nullable
+    private OperationManifest manifest;
+    @Nullable
+    private Plan plan;
+    private boolean verified = false;
+    private boolean perFile = false;
 
-    private MoveArguments(@NonNull List<FileHolder> toMove, @NonNull File to) {
+    private MoveArguments(@NonNull List<FileHolder> toMove, @NonNull File to,
+                          @Nullable OperationManifest manifest) {
         super(to);
         this.filesToMove = toMove;
+        this.manifest = manifest;
     }
 
     public static MoveArguments moveArgs(List<FileHolder> toMove, File to) {
-        return new MoveArguments(toMove, to);
+        return new MoveArguments(toMove, to, null);
+    }
+
+    /**
+     * @param manifest Already read from toMove, to save walking them again.
+     */
+    public static MoveArguments moveArgs(@NonNull List<FileHolder> toMove, @NonNull File to,
+                                         @NonNull OperationManifest manifest) {
+        return new MoveArguments(toMove, to, manifest);
+    }
+
+    /**
+     * @param verified Whether to check each copy against its source before deleting the source,
+     *                 when moving across storage.
+     */
+    public MoveArguments verifying(boolean verified) {
+        this.verified = verified;
+        return this;
+    }
+
+    public boolean isVerified() {
+        return verified;
+    }
+
+    /**
+     * @param perFile Whether items on the target's device that have to be copied, as they can't
+     *                be renamed, delete each source file as soon as it's copied instead of once
+     *                the whole item is. As the space freed is on the target's device, only the
+     *                largest file then needs to fit, but an interrupted move leaves items split
+     *                between source and target. Items on other devices are unaffected, as
+     *                deleting their files frees nothing on the target.
+     */
+    public MoveArguments movingPerFile(boolean perFile) {
+        this.perFile = perFile;
+        return this;
+    }
+
+    public boolean isPerFile() {
+        return perFile;
     }
 
     @NonNull
     public List<FileHolder> getFilesToMove() {
         return unmodifiableList(filesToMove);
     }
+
+    /**
+     * @return Everything under the files, read on first use if not given.
+     */
+    @NonNull
+    public OperationManifest getManifest() {
+        // Moves across storage are copies, which take what links point to
+        if (manifest == null) manifest = manifestOf(filesToMove, true);
+        return manifest;
+    }
+
+    /**
+     * @return Whether to rename or copy each item, planned on first use.
+     */
+    @NonNull
+    public Plan getPlan() {
+        if (plan == null) plan = movePlanner().plan(getManifest(), getTarget());
+        return plan;
+    }
+
+    @NonNull
+    @Override
+    public List<File> getSources() {
+        return filesOf(filesToMove);
+    }
 }
@@ -0,0 +1,104 @@
+/*
+ * Copyright (C) 2018 George Venios
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.veniosg.dir.mvvm.model.storage.operation.argument;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.veniosg.dir.mvvm.model.FileHolder;
+import com.veniosg.dir.mvvm.model.storage.OperationManifest;
+import com.veniosg.dir.mvvm.model.storage.operation.FileOperation;
+
+import java.io.File;
+import java.util.List;
+
+import static com.veniosg.dir.mvvm.model.storage.OperationManifest.manifestOf;
+import static java.util.Collections.unmodifiableList;
+
+public class SyncArguments extends FileOperation.Arguments {
+    @NonNull
+    private final List<FileHolder> filesToSync;
+    @Nullable
+    private OperationManifest manifest;
+    private boolean deletingExtras = false;
+    private boolean comparingContents = false;
+
+    private SyncArguments(@NonNull List<FileHolder> toSync, @NonNull File to,
+                          @Nullable OperationManifest manifest) {
+        super(to);
+        this.filesToSync = toSync;
+        this.manifest = manifest;
+    }
+
+    public static SyncArguments syncArgs(@NonNull List<FileHolder> toSync, @NonNull File to) {
+        return new SyncArguments(toSync, to, null);
+    }
+
+    /**
+     * @param manifest Already read from toSync, to save walking them again.
+     */
+    public static SyncArguments syncArgs(@NonNull List<FileHolder> toSync, @NonNull File to,
+                                         @NonNull OperationManifest manifest) {
+        return new SyncArguments(toSync, to, manifest);
+    }
+
+    /**
+     * @param deletingExtras Whether to delete what's in the target's copies but no longer in
+     *                       the files synced, making the copies exact mirrors.
+     */
+    public SyncArguments deletingExtras(boolean deletingExtras) {
+        this.deletingExtras = deletingExtras;
+        return this;
+    }
+
+    public boolean isDeletingExtras() {
+        return deletingExtras;
+    }
+
+    /**
+     * @param comparingContents Whether to tell unchanged files by their contents rather than by
+     *                          when they were modified. Slower, as both sides are read.
+     */
+    public SyncArguments comparingContents(boolean comparingContents) {
+        this.comparingContents = comparingContents;
+        return this;
+    }
+
+    public boolean isComparingContents() {
+        return comparingContents;
+    }
+
+    @NonNull
+    public List<FileHolder> getFilesToSync() {
+        return unmodifiableList(filesToSync);
+    }
+
+    /**
+     * @return Everything under the files, read on first use if not given.
+     */
+    @NonNull
+    public OperationManifest getManifest() {
+        if (manifest == null) manifest = manifestOf(filesToSync, true);
+        return manifest;
+    }
+
+    @NonNull
+    @Override
+    public List<File> getSources() {
+        return filesOf(filesToSync);
+    }
+}
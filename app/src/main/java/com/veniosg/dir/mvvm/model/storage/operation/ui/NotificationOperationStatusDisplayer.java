@@ -7,12 +7,17 @@ import android.app.PendingIntent;
 import android.content.Context;
 import android.content.Intent;
 import android.net.Uri;
+import android.support.annotation.DrawableRes;
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 import android.support.v4.app.NotificationCompat;
+import android.util.SparseArray;
+import android.util.SparseBooleanArray;
 import android.util.SparseLongArray;
 
 import com.veniosg.dir.R;
 import com.veniosg.dir.android.activity.FileManagerActivity;
+import com.veniosg.dir.mvvm.model.storage.operation.OperationProgress;
 
 import java.io.File;
 
@@ -26,13 +31,26 @@ import static android.os.Build.VERSION.SDK_INT;
 import static android.os.Build.VERSION_CODES.O;
 import static android.support.v4.app.NotificationCompat.PRIORITY_DEFAULT;
 import static android.support.v4.app.NotificationCompat.PRIORITY_HIGH;
+import static android.text.format.DateUtils.formatElapsedTime;
+import static com.veniosg.dir.android.util.FileUtils.formatSize;
+import static com.veniosg.dir.mvvm.model.storage.operation.TransferProgress.UNKNOWN;
+import static com.veniosg.dir.mvvm.model.storage.operation.ui.OperationControlReceiver.ACTION_CANCEL;
+import static com.veniosg.dir.mvvm.model.storage.operation.ui.OperationControlReceiver.ACTION_PAUSE;
+import static com.veniosg.dir.mvvm.model.storage.operation.ui.OperationControlReceiver.ACTION_RESUME;
+import static com.veniosg.dir.mvvm.model.storage.operation.ui.OperationControlReceiver.ACTION_START_NOW;
+import static com.veniosg.dir.mvvm.model.storage.operation.ui.OperationControlReceiver.controlIntent;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static java.lang.System.currentTimeMillis;
 
 public class NotificationOperationStatusDisplayer implements OperationStatusDisplayer {
     public static final String CHANNEL_FILEOPS = "com.veniosg.dof.notif_channel.FILEOPS";
     private static final int LONG_OPERATION_MIN_DURATION_MS = 500;
+    private static final int PROGRESS_MAX = 1000;
 
     private final SparseLongArray startTimes = new SparseLongArray();
+    private final SparseArray<NotificationCompat.Builder> progressBuilders = new SparseArray<>();
+    // Whether each builder has the resume action rather than the pause one
+    private final SparseBooleanArray pausedBuilders = new SparseBooleanArray();
     private final NotificationManager notificationManager;
     private final Context context;
 
@@ -52,12 +70,39 @@ public class NotificationOperationStatusDisplayer implements OperationStatusDisp
     }
 
     @Override
-    public void showCopyProgress(int operationId, File destDir, File copying, int progress, int max) {
-        Notification notification = generateOperationProgressNotification(
+    public void showQueued(int operationId, int ahead) {
+        String title = context.getString(R.string.notif_queued);
+        String position = ahead == 0
+                ? context.getString(R.string.notif_queued_next)
+                : context.getResources().getQuantityString(R.plurals.notif_queued_ahead,
+                ahead, ahead);
+        Notification notification = new NotificationCompat.Builder(context, CHANNEL_FILEOPS)
+                .setAutoCancel(false)
+                .setContentTitle(title)
+                .setContentText(position)
+                .setOngoing(true)
+                .setPriority(PRIORITY_DEFAULT)
+                .setSmallIcon(R.drawable.ic_stat_notify_paste)
+                .setTicker(title)
+                .setOnlyAlertOnce(true)
+                .addAction(android.R.drawable.ic_media_play,
+                        context.getString(R.string.notif_action_start_now),
+                        controlIntent(context, operationId, ACTION_START_NOW))
+                .build();
+
+        // The operation's duration counts from when it starts, not from when it's queued
+        notificationManager.notify(operationId, notification);
+    }
+
+    @Override
+    public void showCopyProgress(int operationId, File destDir, OperationProgress progress) {
+        String copying = currentFileName(progress);
+        Notification notification = generateOperationProgressNotification(operationId,
                 context.getString(R.string.copying),
-                context.getString(R.string.notif_copying_item, copying.getName(), destDir.getAbsolutePath()),
+                context.getString(R.string.notif_copying_item, copying, destDir.getAbsolutePath()),
                 copying,
-                progress, max);
+                R.drawable.ic_stat_notify_paste,
+                progress);
 
         show(operationId, notification);
     }
@@ -85,12 +130,14 @@ public class NotificationOperationStatusDisplayer implements OperationStatusDisp
     }
 
     @Override
-    public void showMoveProgress(int operationId, File destDir, File moving, int progress, int max) {
-        Notification notification = generateOperationProgressNotification(
+    public void showMoveProgress(int operationId, File destDir, OperationProgress progress) {
+        String moving = currentFileName(progress);
+        Notification notification = generateOperationProgressNotification(operationId,
                 context.getString(R.string.moving),
-                context.getString(R.string.notif_moving_item, moving.getName(), destDir.getAbsolutePath()),
+                context.getString(R.string.notif_moving_item, moving, destDir.getAbsolutePath()),
                 moving,
-                progress, max);
+                R.drawable.ic_stat_notify_paste,
+                progress);
 
         show(operationId, notification);
     }
@@ -117,39 +164,213 @@ public class NotificationOperationStatusDisplayer implements OperationStatusDisp
         clearOperationTimer(operationId);
     }
 
-    private Notification generateOperationProgressNotification(String title,
+    @Override
+    public void showSyncProgress(int operationId, File destDir, OperationProgress progress) {
+        String syncing = currentFileName(progress);
+        Notification notification = generateOperationProgressNotification(operationId,
+                context.getString(R.string.syncing),
+                context.getString(R.string.notif_syncing_item, syncing, destDir.getAbsolutePath()),
+                syncing,
+                R.drawable.ic_stat_notify_paste,
+                progress);
+
+        show(operationId, notification);
+    }
+
+    @Override
+    public void showSyncSuccess(int operationId, File destDir) {
+        if (isLongOperation(operationId)) {
+            String msg = context.getString(R.string.synced);
+            Notification notification = generateOperationDoneNotification(destDir, msg);
+            show(operationId, notification);
+        } else {
+            hide(operationId);
+        }
+
+        clearOperationTimer(operationId);
+    }
+
+    @Override
+    public void showSyncFailure(int operationId, File destDir) {
+        String msg = context.getString(R.string.sync_error);
+        Notification notification = generateOperationDoneNotification(destDir, msg);
+        show(operationId, notification);
+
+        clearOperationTimer(operationId);
+    }
+
+    @Override
+    public void showCompressProgress(int operationId, File zipFile, OperationProgress progress) {
+        Notification notification = generateOperationProgressNotification(operationId,
+                context.getString(R.string.compressing),
+                context.getString(R.string.notif_compressing_into,
+                        currentFileName(progress), zipFile.getName()),
+                zipFile.getName(),
+                R.drawable.ic_stat_notify_compress,
+                progress);
+
+        show(operationId, notification);
+    }
+
+    @Override
+    public void showCompressSuccess(int operationId, File zipFile) {
+        if (isLongOperation(operationId)) {
+            String msg = context.getString(R.string.notif_compressed_success);
+            Notification notification = generateOperationDoneNotification(zipFile.getParentFile(),
+                    zipFile.getName(), msg, R.drawable.ic_stat_notify_compress_5);
+            show(operationId, notification);
+        } else {
+            hide(operationId);
+        }
+
+        clearOperationTimer(operationId);
+    }
+
+    @Override
+    public void showCompressFailure(int operationId, File zipFile) {
+        String msg = context.getString(R.string.notif_compressed_fail);
+        Notification notification = generateOperationDoneNotification(zipFile.getParentFile(),
+                zipFile.getName(), msg, R.drawable.ic_stat_notify_compress_5);
+        show(operationId, notification);
+
+        clearOperationTimer(operationId);
+    }
+
+    @Override
+    public void showExtractProgress(int operationId, File zipFile, OperationProgress progress) {
+        Notification notification = generateOperationProgressNotification(operationId,
+                context.getString(R.string.extracting),
+                context.getString(R.string.notif_extracting_from,
+                        currentFileName(progress), zipFile.getName()),
+                zipFile.getName(),
+                R.drawable.ic_stat_notify_extract,
+                progress);
+
+        show(operationId, notification);
+    }
+
+    @Override
+    public void showExtractSuccess(int operationId, File destDir) {
+        if (isLongOperation(operationId)) {
+            String msg = context.getString(R.string.notif_extracted_success);
+            Notification notification = generateOperationDoneNotification(destDir,
+                    destDir.getName(), msg, R.drawable.ic_stat_notify_compress_5);
+            show(operationId, notification);
+        } else {
+            hide(operationId);
+        }
+
+        clearOperationTimer(operationId);
+    }
+
+    @Override
+    public void showExtractFailure(int operationId, File destDir) {
+        String msg = context.getString(R.string.notif_extracted_fail);
+        Notification notification = generateOperationDoneNotification(destDir,
+                destDir.getName(), msg, R.drawable.ic_stat_notify_compress_5);
+        show(operationId, notification);
+
+        clearOperationTimer(operationId);
+    }
+
+    @Override
+    public void showCancelled(int operationId) {
+        hide(operationId);
+
+        clearOperationTimer(operationId);
+    }
+
+    /**
+     * Builders are kept per operation and only their changing parts are set on each update.
+     * A new one is made when the operation pauses or resumes, to swap the actions.
+     */
+    private Notification generateOperationProgressNotification(int operationId,
+                                                               String title,
                                                                String longText,
-                                                               File operatingOn,
-                                                               int progress, int max) {
-        return new NotificationCompat.Builder(context, CHANNEL_FILEOPS)
-                .setAutoCancel(false)
-                .setContentTitle(title)
-                .setContentText(operatingOn.getName())
-                .setProgress(max, progress, false)
-                .setOngoing(true)
-                .setPriority(PRIORITY_HIGH)
-                .setSmallIcon(R.drawable.ic_stat_notify_paste)
-                .setStyle(new NotificationCompat.BigTextStyle()
-                        .bigText(longText))
-                .setTicker(title)
-                .setOnlyAlertOnce(true)
-                .build();
+                                                               String shortText,
+                                                               @DrawableRes int icon,
+                                                               OperationProgress progress) {
+        synchronized (progressBuilders) {
+            boolean paused = progress.isPaused();
+            NotificationCompat.Builder builder = progressBuilders.get(operationId);
+            if (builder == null || pausedBuilders.get(operationId) != paused) {
+                builder = new NotificationCompat.Builder(context, CHANNEL_FILEOPS)
+                        .setAutoCancel(false)
+                        .setContentTitle(title)
+                        .setOngoing(true)
+                        .setPriority(PRIORITY_HIGH)
+                        .setSmallIcon(icon)
+                        .setTicker(title)
+                        .setOnlyAlertOnce(true);
+                if (paused) {
+                    builder.addAction(android.R.drawable.ic_media_play,
+                            context.getString(R.string.notif_action_resume),
+                            controlIntent(context, operationId, ACTION_RESUME));
+                } else {
+                    builder.addAction(android.R.drawable.ic_media_pause,
+                            context.getString(R.string.notif_action_pause),
+                            controlIntent(context, operationId, ACTION_PAUSE));
+                }
+                builder.addAction(android.R.drawable.ic_menu_close_clear_cancel,
+                        context.getString(android.R.string.cancel),
+                        controlIntent(context, operationId, ACTION_CANCEL));
+                progressBuilders.put(operationId, builder);
+                pausedBuilders.put(operationId, paused);
+            }
+
+            return builder
+                    .setContentText(shortText)
+                    .setSubText(paused
+                            ? context.getString(R.string.notif_paused)
+                            : rateText(progress))
+                    .setProgress(PROGRESS_MAX, progress.fractionOf(PROGRESS_MAX), false)
+                    .setStyle(new NotificationCompat.BigTextStyle().bigText(longText))
+                    .build();
+        }
     }
 
     @NonNull
     private Notification generateOperationDoneNotification(File destDir, String msg) {
+        return generateOperationDoneNotification(destDir, destDir.getAbsolutePath(), msg,
+                R.drawable.ic_stat_notify_paste_5);
+    }
+
+    @NonNull
+    private Notification generateOperationDoneNotification(File browseDir, String text,
+                                                           String msg, @DrawableRes int icon) {
         return new NotificationCompat.Builder(context, CHANNEL_FILEOPS)
                 .setAutoCancel(true)
                 .setContentTitle(msg)
-                .setContentText(destDir.getAbsolutePath())
-                .setContentIntent(browsePendingIntent(destDir))
+                .setContentText(text)
+                .setContentIntent(browsePendingIntent(browseDir))
                 .setOngoing(false)
                 .setPriority(PRIORITY_DEFAULT)
-                .setSmallIcon(R.drawable.ic_stat_notify_paste_5)
+                .setSmallIcon(icon)
                 .setTicker(msg)
                 .build();
     }
 
+    /**
+     * @return The rate and time left, or null until they're known.
+     */
+    @Nullable
+    private String rateText(OperationProgress progress) {
+        long bytesPerSecond = progress.getBytesPerSecond();
+        if (bytesPerSecond == UNKNOWN) return null;
+
+        String rate = formatSize(context, bytesPerSecond);
+        long etaMillis = progress.getEtaMillis();
+        if (etaMillis == UNKNOWN) return context.getString(R.string.notif_transfer_rate, rate);
+
+        return context.getString(R.string.notif_transfer_rate_eta, rate,
+                formatElapsedTime(MILLISECONDS.toSeconds(etaMillis)));
+    }
+
+    private String currentFileName(OperationProgress progress) {
+        File current = progress.getCurrentFile();
+        return current == null ? "" : current.getName();
+    }
+
     @NonNull
     private PendingIntent browsePendingIntent(File destDir) {
         Intent browseIntent = new Intent(context, FileManagerActivity.class);
@@ -183,5 +404,9 @@ public class NotificationOperationStatusDisplayer implements OperationStatusDisp
 
     private void clearOperationTimer(int operationId) {
         startTimes.delete(operationId);
+        synchronized (progressBuilders) {
+            progressBuilders.delete(operationId);
+            pausedBuilders.delete(operationId);
+        }
     }
 }
@@ -0,0 +1,66 @@
+package com.veniosg.dir.mvvm.model.storage.operation.ui;
+
+import android.app.PendingIntent;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.support.annotation.NonNull;
+
+import com.veniosg.dir.mvvm.model.storage.operation.OperationControl;
+import com.veniosg.dir.mvvm.model.storage.operation.OperationScheduler.Job;
+
+import static android.app.PendingIntent.FLAG_UPDATE_CURRENT;
+import static com.veniosg.dir.mvvm.model.storage.operation.FileOperationRunner.controlOf;
+import static com.veniosg.dir.mvvm.model.storage.operation.FileOperationRunner.queuedJobOf;
+import static com.veniosg.dir.mvvm.model.storage.operation.OperationScheduler.PRIORITY_HIGH;
+import static com.veniosg.dir.mvvm.model.storage.operation.OperationSchedulerInjector.operationScheduler;
+
+/**
+ * Applies the actions of operation notifications to the running or queued operation.
+ */
+public class OperationControlReceiver extends BroadcastReceiver {
+    static final String ACTION_CANCEL = "com.veniosg.dir.action.CANCEL_OPERATION";
+    static final String ACTION_PAUSE = "com.veniosg.dir.action.PAUSE_OPERATION";
+    static final String ACTION_RESUME = "com.veniosg.dir.action.RESUME_OPERATION";
+    static final String ACTION_START_NOW = "com.veniosg.dir.action.START_OPERATION_NOW";
+    private static final String EXTRA_OPERATION_ID = "com.veniosg.dir.action.OPERATION_ID";
+
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        int operationId = intent.getIntExtra(EXTRA_OPERATION_ID, 0);
+        if (ACTION_START_NOW.equals(intent.getAction())) {
+            Job job = queuedJobOf(operationId);
+            // Started meanwhile otherwise
+            if (job != null) operationScheduler().setPriority(job, PRIORITY_HIGH);
+            return;
+        }
+
+        OperationControl control = controlOf(operationId);
+        // Finished meanwhile
+        if (control == null || intent.getAction() == null) return;
+
+        switch (intent.getAction()) {
+            case ACTION_CANCEL:
+                control.cancel();
+                break;
+            case ACTION_PAUSE:
+                control.pause();
+                break;
+            case ACTION_RESUME:
+                control.resume();
+                break;
+        }
+    }
+
+    /**
+     * @param action One of the actions this receiver handles.
+     */
+    @NonNull
+    static PendingIntent controlIntent(Context context, int operationId, String action) {
+        Intent intent = new Intent(action)
+                .setClass(context, OperationControlReceiver.class)
+                .putExtra(EXTRA_OPERATION_ID, operationId);
+        // Operation ids as request codes keep the intents of concurrent operations apart
+        return PendingIntent.getBroadcast(context, operationId, intent, FLAG_UPDATE_CURRENT);
+    }
+}
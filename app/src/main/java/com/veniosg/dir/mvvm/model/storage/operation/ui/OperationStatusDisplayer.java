@@ -1,15 +1,36 @@
 package com.veniosg.dir.mvvm.model.storage.operation.ui;
 
+import com.veniosg.dir.mvvm.model.storage.operation.OperationProgress;
+
 import java.io.File;
 
 public interface OperationStatusDisplayer {
     void initChannels();
 
-    void showCopyProgress(int operationId, File destDir, File copying, int progress, int max);
+    /**
+     * @param ahead How many queued operations would start before this one.
+     */
+    void showQueued(int operationId, int ahead);
+
+    void showCopyProgress(int operationId, File destDir, OperationProgress progress);
     void showCopySuccess(int operationId, File destDir);
     void showCopyFailure(int operationId, File destDir);
 
-    void showMoveProgress(int operationId, File destDir, File moving, int progress, int max);
+    void showMoveProgress(int operationId, File destDir, OperationProgress progress);
     void showMoveSuccess(int operationId, File destDir);
     void showMoveFailure(int operationId, File destDir);
+
+    void showSyncProgress(int operationId, File destDir, OperationProgress progress);
+    void showSyncSuccess(int operationId, File destDir);
+    void showSyncFailure(int operationId, File destDir);
+
+    void showCompressProgress(int operationId, File zipFile, OperationProgress progress);
+    void showCompressSuccess(int operationId, File zipFile);
+    void showCompressFailure(int operationId, File zipFile);
+
+    void showExtractProgress(int operationId, File zipFile, OperationProgress progress);
+    void showExtractSuccess(int operationId, File destDir);
+    void showExtractFailure(int operationId, File destDir);
+
+    void showCancelled(int operationId);
 }
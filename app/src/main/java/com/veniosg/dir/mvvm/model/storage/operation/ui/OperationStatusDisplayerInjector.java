@@ -2,14 +2,27 @@ package com.veniosg.dir.mvvm.model.storage.operation.ui;
 
 import android.content.Context;
 
+import com.veniosg.dir.mvvm.model.storage.operation.OperationProgress;
+
 import java.io.File;
 
+import io.reactivex.schedulers.Schedulers;
+
 public abstract class OperationStatusDisplayerInjector {
+    private static final long PROGRESS_INTERVAL_MS = 250;
     private static final OperationStatusDisplayer NO_OP_DISPLAYER = new OperationStatusDisplayer() {
         @Override
         public void initChannels() {
         }
 
+        @Override
+        public void showQueued(int operationId, int ahead) {
+        }
+
+        @Override
+        public void showCopyProgress(int operationId, File destDir, OperationProgress progress) {
+        }
+
         @Override
         public void showCopySuccess(int operationId, File destDir) {
         }
@@ -19,7 +32,7 @@ public abstract class OperationStatusDisplayerInjector {
         }
 
         @Override
-        public void showMoveProgress(int operationId, File destDir, File moving, int progress, int max) {
+        public void showMoveProgress(int operationId, File destDir, OperationProgress progress) {
         }
 
         @Override
@@ -31,7 +44,43 @@ public abstract class OperationStatusDisplayerInjector {
         }
 
         @Override
-        public void showCopyProgress(int operationId, File destDir, File copying, int progress, int max) {
+        public void showSyncProgress(int operationId, File destDir, OperationProgress progress) {
+        }
+
+        @Override
+        public void showSyncSuccess(int operationId, File destDir) {
+        }
+
+        @Override
+        public void showSyncFailure(int operationId, File destDir) {
+        }
+
+        @Override
+        public void showCompressProgress(int operationId, File zipFile, OperationProgress progress) {
+        }
+
+        @Override
+        public void showCompressSuccess(int operationId, File zipFile) {
+        }
+
+        @Override
+        public void showCompressFailure(int operationId, File zipFile) {
+        }
+
+        @Override
+        public void showExtractProgress(int operationId, File zipFile, OperationProgress progress) {
+        }
+
+        @Override
+        public void showExtractSuccess(int operationId, File destDir) {
+        }
+
+        @Override
+        public void showExtractFailure(int operationId, File destDir) {
+        }
+
+        @Override
+        public void showCancelled(int operationId) {
         }
     };
 
@@ -39,7 +88,10 @@ public abstract class OperationStatusDisplayerInjector {
     }
 
     public static OperationStatusDisplayer operationStatusDisplayer(Context context) {
-        return new NotificationOperationStatusDisplayer(context);
+        return new ThrottlingOperationStatusDisplayer(
+                new NotificationOperationStatusDisplayer(context),
+                Schedulers.computation(),
+                PROGRESS_INTERVAL_MS);
     }
 
     public static OperationStatusDisplayer noOpStatusDisplayer() {
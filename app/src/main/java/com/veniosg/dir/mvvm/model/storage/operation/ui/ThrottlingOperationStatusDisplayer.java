@@ -0,0 +1,168 @@
+package com.veniosg.dir.mvvm.model.storage.operation.ui;
+
+import android.support.annotation.NonNull;
+
+import com.veniosg.dir.mvvm.model.storage.operation.OperationProgress;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+
+import io.reactivex.Scheduler;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * Passes progress on to another displayer at most once per interval for each operation, as
+ * posting notifications is costly for us and for the system. Progress that arrives too soon is
+ * held back and shown once the interval passes, so the latest state is never lost. Results are
+ * always shown immediately, and drop any held back progress.
+ */
+class ThrottlingOperationStatusDisplayer implements OperationStatusDisplayer {
+    private final OperationStatusDisplayer displayer;
+    private final Scheduler scheduler;
+    private final long intervalMillis;
+    private final Map<Integer, Throttle> throttles = new HashMap<>();
+
+    ThrottlingOperationStatusDisplayer(@NonNull OperationStatusDisplayer displayer,
+                                       @NonNull Scheduler scheduler, long intervalMillis) {
+        this.displayer = displayer;
+        this.scheduler = scheduler;
+        this.intervalMillis = intervalMillis;
+    }
+
+    @Override
+    public void initChannels() {
+        displayer.initChannels();
+    }
+
+    @Override
+    public void showQueued(int operationId, int ahead) {
+        throttle(operationId, () -> displayer.showQueued(operationId, ahead));
+    }
+
+    @Override
+    public void showCopyProgress(int operationId, File destDir, OperationProgress progress) {
+        throttle(operationId, () -> displayer.showCopyProgress(operationId, destDir, progress));
+    }
+
+    @Override
+    public void showCopySuccess(int operationId, File destDir) {
+        finish(operationId, () -> displayer.showCopySuccess(operationId, destDir));
+    }
+
+    @Override
+    public void showCopyFailure(int operationId, File destDir) {
+        finish(operationId, () -> displayer.showCopyFailure(operationId, destDir));
+    }
+
+    @Override
+    public void showMoveProgress(int operationId, File destDir, OperationProgress progress) {
+        throttle(operationId, () -> displayer.showMoveProgress(operationId, destDir, progress));
+    }
+
+    @Override
+    public void showMoveSuccess(int operationId, File destDir) {
+        finish(operationId, () -> displayer.showMoveSuccess(operationId, destDir));
+    }
+
+    @Override
+    public void showMoveFailure(int operationId, File destDir) {
+        finish(operationId, () -> displayer.showMoveFailure(operationId, destDir));
+    }
+
+    @Override
+    public void showSyncProgress(int operationId, File destDir, OperationProgress progress) {
+        throttle(operationId, () -> displayer.showSyncProgress(operationId, destDir, progress));
+    }
+
+    @Override
+    public void showSyncSuccess(int operationId, File destDir) {
+        finish(operationId, () -> displayer.showSyncSuccess(operationId, destDir));
+    }
+
+    @Override
+    public void showSyncFailure(int operationId, File destDir) {
+        finish(operationId, () -> displayer.showSyncFailure(operationId, destDir));
+    }
+
+    @Override
+    public void showCompressProgress(int operationId, File zipFile, OperationProgress progress) {
+        throttle(operationId, () -> displayer.showCompressProgress(operationId, zipFile, progress));
+    }
+
+    @Override
+    public void showCompressSuccess(int operationId, File zipFile) {
+        finish(operationId, () -> displayer.showCompressSuccess(operationId, zipFile));
+    }
+
+    @Override
+    public void showCompressFailure(int operationId, File zipFile) {
+        finish(operationId, () -> displayer.showCompressFailure(operationId, zipFile));
+    }
+
+    @Override
+    public void showExtractProgress(int operationId, File zipFile, OperationProgress progress) {
+        throttle(operationId, () -> displayer.showExtractProgress(operationId, zipFile, progress));
+    }
+
+    @Override
+    public void showExtractSuccess(int operationId, File destDir) {
+        finish(operationId, () -> displayer.showExtractSuccess(operationId, destDir));
+    }
+
+    @Override
+    public void showExtractFailure(int operationId, File destDir) {
+        finish(operationId, () -> displayer.showExtractFailure(operationId, destDir));
+    }
+
+    @Override
+    public void showCancelled(int operationId) {
+        finish(operationId, () -> displayer.showCancelled(operationId));
+    }
+
+    /**
+     * Updates are shown while holding the lock, so that late progress can't replace a result.
+     */
+    private synchronized void throttle(int operationId, Runnable update) {
+        Throttle throttle = throttles.get(operationId);
+        if (throttle == null) {
+            throttle = new Throttle();
+            throttles.put(operationId, throttle);
+        }
+
+        long now = scheduler.now(MILLISECONDS);
+        long wait = throttle.lastShownAt + intervalMillis - now;
+        if (wait <= 0 && throttle.pending == null) {
+            throttle.lastShownAt = now;
+            update.run();
+        } else {
+            boolean flushScheduled = throttle.pending != null;
+            throttle.pending = update;
+            if (!flushScheduled) {
+                Throttle scheduled = throttle;
+                scheduler.scheduleDirect(() -> flush(operationId, scheduled),
+                        Math.max(0, wait), MILLISECONDS);
+            }
+        }
+    }
+
+    private synchronized void flush(int operationId, Throttle throttle) {
+        // Operation may have finished meanwhile
+        if (throttles.get(operationId) != throttle || throttle.pending == null) return;
+
+        throttle.lastShownAt = scheduler.now(MILLISECONDS);
+        throttle.pending.run();
+        throttle.pending = null;
+    }
+
+    private synchronized void finish(int operationId, Runnable result) {
+        throttles.remove(operationId);
+        result.run();
+    }
+
+    private static class Throttle {
+        long lastShownAt = Long.MIN_VALUE / 2;
+        Runnable pending;
+    }
+}
@@ -2,21 +2,54 @@ package com.veniosg.dir.mvvm.viewmodel.search;
 
 import android.arch.lifecycle.LiveData;
 import android.arch.lifecycle.ViewModel;
+import android.support.annotation.IntDef;
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 import android.support.annotation.VisibleForTesting;
 
+import com.veniosg.dir.android.misc.MimeTypes;
+import com.veniosg.dir.mvvm.model.search.SearchFilter;
 import com.veniosg.dir.mvvm.model.search.SearchState;
 import com.veniosg.dir.mvvm.model.search.Searcher;
+import com.veniosg.dir.mvvm.model.search.Searcher.SearchRequest;
+import com.veniosg.dir.mvvm.model.storage.PruneRules;
 
 import java.io.File;
+import java.lang.annotation.Retention;
 
+import static com.veniosg.dir.mvvm.model.search.Searcher.SearchRequest.contentSearchRequest;
+import static com.veniosg.dir.mvvm.model.search.Searcher.SearchRequest.rankedSearchRequest;
 import static com.veniosg.dir.mvvm.model.search.Searcher.SearchRequest.searchRequest;
+import static java.lang.annotation.RetentionPolicy.SOURCE;
 
 public class SearchViewModel extends ViewModel {
+    @Retention(SOURCE)
+    @IntDef({MATCH_NAMES, MATCH_BEST_NAMES, MATCH_CONTENTS})
+    public @interface MatchType {}
+    public static final int MATCH_NAMES = 0;
+    public static final int MATCH_BEST_NAMES = 1;
+    public static final int MATCH_CONTENTS = 2;
+
+    @Retention(SOURCE)
+    @IntDef({FIND_ANYTHING, FIND_FILES, FIND_DIRECTORIES})
+    public @interface FindType {}
+    public static final int FIND_ANYTHING = 0;
+    public static final int FIND_FILES = 1;
+    public static final int FIND_DIRECTORIES = 2;
+
     private Searcher searcher;
     private LiveData<SearchState> liveResults;
     private File searchRoot;
+    @Nullable
+    private MimeTypes mimeTypes;
     private String currentQuery;
+    @MatchType
+    private int matchType = MATCH_NAMES;
+    @FindType
+    private int findType = FIND_ANYTHING;
+    private boolean includingArchives = false;
+    private boolean followingSymlinks = false;
+    private boolean skippingClutter = false;
 
     @SuppressWarnings("unused")
     public SearchViewModel() {
@@ -28,28 +61,138 @@ public class SearchViewModel extends ViewModel {
         this.searcher = searcher;
     }
 
-    public void init(File searchIn) {
+    /**
+     * @param mimeTypes Used by content searches to skip known binary files. May be null.
+     */
+    public void init(File searchIn, @Nullable MimeTypes mimeTypes) {
         if (liveResults != null) return;
 
         this.searchRoot = searchIn;
+        this.mimeTypes = mimeTypes;
         liveResults = searcher.getResults();
     }
 
     /**
      * Start a new search, using the passed query. If the current search uses the same query, this does nothing.
-     * @param query The text to search filenames for.
+     * @param query The text to search names or contents for, depending on the match type.
      * @return True if this triggers a new search, false if not.
      */
     public boolean updateQuery(@NonNull String query) {
         if (!query.equals(currentQuery)) {
-            searcher.updateQuery(searchRequest(searchRoot, query));
             currentQuery = query;
+            searcher.updateQuery(requestFor(query));
             return true;
         } else {
             return false;
         }
     }
 
+    /**
+     * Each of the option setters below searches again for the current query, if there is one
+     * and the option changed.
+     *
+     * @return True if this triggers a new search, false if not.
+     */
+    public boolean setMatchType(@MatchType int matchType) {
+        if (this.matchType == matchType) return false;
+
+        this.matchType = matchType;
+        return searchAgain();
+    }
+
+    public boolean setFindType(@FindType int findType) {
+        if (this.findType == findType) return false;
+
+        this.findType = findType;
+        return searchAgain();
+    }
+
+    public boolean setIncludingArchives(boolean includingArchives) {
+        if (this.includingArchives == includingArchives) return false;
+
+        this.includingArchives = includingArchives;
+        return searchAgain();
+    }
+
+    public boolean setFollowingSymlinks(boolean followingSymlinks) {
+        if (this.followingSymlinks == followingSymlinks) return false;
+
+        this.followingSymlinks = followingSymlinks;
+        return searchAgain();
+    }
+
+    /**
+     * @see PruneRules#commonClutter()
+     */
+    public boolean setSkippingClutter(boolean skippingClutter) {
+        if (this.skippingClutter == skippingClutter) return false;
+
+        this.skippingClutter = skippingClutter;
+        return searchAgain();
+    }
+
+    @MatchType
+    public int getMatchType() {
+        return matchType;
+    }
+
+    @FindType
+    public int getFindType() {
+        return findType;
+    }
+
+    public boolean isIncludingArchives() {
+        return includingArchives;
+    }
+
+    public boolean isFollowingSymlinks() {
+        return followingSymlinks;
+    }
+
+    public boolean isSkippingClutter() {
+        return skippingClutter;
+    }
+
+    private boolean searchAgain() {
+        if (currentQuery == null) return false;
+
+        searcher.updateQuery(requestFor(currentQuery));
+        return true;
+    }
+
+    @NonNull
+    private SearchRequest requestFor(@NonNull String query) {
+        SearchRequest request;
+        switch (matchType) {
+            case MATCH_BEST_NAMES:
+                request = rankedSearchRequest(searchRoot, query);
+                break;
+            case MATCH_CONTENTS:
+                request = contentSearchRequest(searchRoot, query, mimeTypes);
+                break;
+            case MATCH_NAMES:
+            default:
+                request = searchRequest(searchRoot, query);
+                break;
+        }
+
+        switch (findType) {
+            case FIND_FILES:
+                request.filteredBy(SearchFilter.anything().filesOnly());
+                break;
+            case FIND_DIRECTORIES:
+                request.filteredBy(SearchFilter.anything().directoriesOnly());
+                break;
+            case FIND_ANYTHING:
+            default:
+                break;
+        }
+        if (includingArchives) request.includingArchives();
+        if (followingSymlinks) request.followingSymlinks();
+        if (skippingClutter) request.prunedBy(PruneRules.commonClutter());
+        return request;
+    }
+
     @Override
     protected void onCleared() {
         super.onCleared();
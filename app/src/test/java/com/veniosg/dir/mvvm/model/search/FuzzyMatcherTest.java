@@ -0,0 +1,63 @@
+package com.veniosg.dir.mvvm.model.search;
+
+import org.junit.Test;
+
+import static com.veniosg.dir.mvvm.model.search.FuzzyMatcher.NO_MATCH;
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+
+public class FuzzyMatcherTest {
+    @Test
+    public void matchesSubsequence() {
+        FuzzyMatcher matcher = new FuzzyMatcher("invce");
+
+        assertTrue(matcher.score("invoice_2017.pdf") > 0);
+    }
+
+    @Test
+    public void rejectsMissingCharacters() {
+        FuzzyMatcher matcher = new FuzzyMatcher("invce");
+
+        assertEquals(NO_MATCH, matcher.score("income.pdf"));
+    }
+
+    @Test
+    public void rejectsWrongOrder() {
+        FuzzyMatcher matcher = new FuzzyMatcher("abc");
+
+        assertEquals(NO_MATCH, matcher.score("cba"));
+    }
+
+    @Test
+    public void isCaseInsensitive() {
+        FuzzyMatcher matcher = new FuzzyMatcher("Photo");
+
+        assertTrue(matcher.score("PHOTO.JPG") > 0);
+    }
+
+    @Test
+    public void scoresNamesThatChangeLengthWhenLowercased() {
+        FuzzyMatcher matcher = new FuzzyMatcher("jpg");
+
+        assertTrue(matcher.score("\u0130ZM\u0130R.jpg") > 0);
+    }
+
+    @Test
+    public void prefersExactOverSubstringOverScattered() {
+        FuzzyMatcher matcher = new FuzzyMatcher("notes");
+
+        int exact = matcher.score("notes");
+        int substring = matcher.score("old_notes.txt");
+        int scattered = matcher.score("no_tes_t.txt");
+
+        assertTrue(exact > substring);
+        assertTrue(substring > scattered);
+    }
+
+    @Test
+    public void prefersWordStarts() {
+        FuzzyMatcher matcher = new FuzzyMatcher("mp");
+
+        assertTrue(matcher.score("MyPhoto") > matcher.score("timespan"));
+    }
+}
@@ -0,0 +1,74 @@
+package com.veniosg.dir.mvvm.model.search;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+
+public class PathListTest {
+    @Test
+    public void returnsPathsAsAdded() {
+        List<String> paths = asList("/sdcard/DCIM/photo.jpg", "/sdcard/DCIM", "/file", "/",
+                "relative/path", "/archive.zip!/dir/entry", "/double//slash", "/trailing/");
+        PathList list = new PathList();
+
+        list.appendAll(paths);
+
+        assertEquals(paths, list);
+    }
+
+    @Test
+    public void keepsOrderAcrossChunks() {
+        List<String> paths = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            paths.add("/storage/emulated/0/dir" + (i % 7) + "/file" + i);
+        }
+        PathList list = new PathList();
+
+        list.appendAll(paths);
+
+        assertEquals(paths, list);
+    }
+
+    @Test
+    public void snapshotsDoNotChange() {
+        PathList list = new PathList();
+        list.append("/a/1");
+        PathList snapshot = list.snapshot();
+
+        list.append("/a/2");
+        list.reset();
+        list.append("/b/3");
+
+        assertEquals(asList("/a/1"), snapshot);
+        assertEquals(asList("/b/3"), list);
+    }
+
+    @Test
+    public void changingSnapshotsLeavesOriginalAlone() {
+        PathList list = new PathList();
+        list.append("/a/1");
+        PathList snapshot = list.snapshot();
+
+        snapshot.append("/a/2");
+        list.append("/a/3");
+
+        assertEquals(asList("/a/1", "/a/2"), snapshot);
+        assertEquals(asList("/a/1", "/a/3"), list);
+    }
+
+    @Test
+    public void findsFirstDifference() {
+        PathList list = new PathList();
+        list.appendAll(asList("/a/1", "/a/2"));
+        PathList before = list.snapshot();
+        list.append("/a/3");
+
+        assertEquals(2, list.snapshot().firstDifferentIndex(before));
+        assertEquals(-1, before.firstDifferentIndex(asList("/a/1", "/a/2")));
+        assertEquals(1, before.firstDifferentIndex(asList("/a/1", "/b/2")));
+    }
+}
@@ -3,6 +3,9 @@ package com.veniosg.dir.mvvm.model.search;
 import android.arch.core.executor.testing.InstantTaskExecutorRule;
 import android.arch.lifecycle.MutableLiveData;
 
+import com.veniosg.dir.mvvm.model.storage.JavaFileAttributeReader;
+import com.veniosg.dir.mvvm.model.storage.PruneRules;
+
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Rule;
@@ -12,11 +15,23 @@ import org.mockito.InOrder;
 import org.mockito.Mock;
 
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
 import java.io.IOException;
+import java.io.Writer;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
+import static com.veniosg.dir.mvvm.model.search.Searcher.SearchRequest.contentSearchRequest;
+import static com.veniosg.dir.mvvm.model.search.Searcher.SearchRequest.rankedSearchRequest;
 import static com.veniosg.dir.mvvm.model.search.Searcher.SearchRequest.searchRequest;
 import static io.reactivex.schedulers.Schedulers.trampoline;
+import static java.nio.file.Files.createSymbolicLink;
+import static org.junit.Assume.assumeTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.ArgumentMatchers.refEq;
+import static org.mockito.Mockito.atLeastOnce;
 import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.verify;
 import static org.mockito.MockitoAnnotations.initMocks;
@@ -55,7 +70,8 @@ public class SearcherTest {
         file4 = new File(testFileRoot, "thisIsFile3");
         file4.createNewFile();
 
-        searcher = new Searcher(mockResults, trampoline(), trampoline());
+        searcher = new Searcher(mockResults, trampoline(), trampoline(),
+                new JavaFileAttributeReader());
     }
 
     @After
@@ -121,6 +137,212 @@ public class SearcherTest {
         verify(mockResults).setValue(refEq(expectedSearchState));
     }
 
+    @SuppressWarnings("ResultOfMethodCallIgnored")
+    @Test
+    public void refinesFinishedSearchWithoutTraversing() throws Exception {
+        InOrder inOrder = inOrder(mockResults);
+        searcher.updateQuery(searchRequest(testFileRoot, "file"));
+        inOrder.verify(mockResults, atLeastOnce()).setValue(any(SearchState.class));
+        // Would be found if the refined query traversed the tree again
+        new File(testFileRoot, "anotherFile3").createNewFile();
+        SearchState expectedSearchState = new SearchState();
+        expectedSearchState.addResult(file4.getAbsolutePath());
+        expectedSearchState.setFinished();
+
+        searcher.updateQuery(searchRequest(testFileRoot, "file3"));
+
+        inOrder.verify(mockResults).setValue(refEq(expectedSearchState));
+    }
+
+    @Test
+    public void searchesAgainIfQueryIsNotStricter() throws Exception {
+        InOrder inOrder = inOrder(mockResults);
+        searcher.updateQuery(searchRequest(testFileRoot, "file3"));
+        inOrder.verify(mockResults, atLeastOnce()).setValue(any(SearchState.class));
+        SearchState expectedSearchState = new SearchState();
+        expectedSearchState.addResult(file2.getAbsolutePath());
+        expectedSearchState.setFinished();
+
+        searcher.updateQuery(searchRequest(testFileRoot, "second"));
+
+        inOrder.verify(mockResults).setValue(refEq(expectedSearchState));
+    }
+
+    @Test
+    public void filterExcludesSmallFiles() throws Exception {
+        write(file1, "some contents");
+        SearchState expectedSearchState = new SearchState();
+        expectedSearchState.addResult(file1.getAbsolutePath());
+        expectedSearchState.setFinished();
+
+        searcher.updateQuery(searchRequest(testFileRoot, "file")
+                .filteredBy(SearchFilter.anything().largerThan(1)));
+
+        verify(mockResults).setValue(refEq(expectedSearchState));
+    }
+
+    @Test
+    public void filterFindsOnlyDirectories() throws Exception {
+        SearchState expectedSearchState = new SearchState();
+        expectedSearchState.addResult(new File(testFileRoot, "dir1").getAbsolutePath());
+        expectedSearchState.setFinished();
+
+        searcher.updateQuery(searchRequest(testFileRoot, "dir1")
+                .filteredBy(SearchFilter.anything().directoriesOnly()));
+
+        verify(mockResults).setValue(refEq(expectedSearchState));
+    }
+
+    @Test
+    public void findsEntriesInArchives() throws Exception {
+        File archive = new File(testFileRoot, "archive.zip");
+        try (ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(archive))) {
+            zip.putNextEntry(new ZipEntry("docs/"));
+            zip.putNextEntry(new ZipEntry("docs/zippedFile.txt"));
+            zip.write("contents".getBytes());
+            zip.closeEntry();
+        }
+        SearchState expectedSearchState = new SearchState();
+        expectedSearchState.addResult(archive.getAbsolutePath() + "!/docs/zippedFile.txt");
+        expectedSearchState.setFinished();
+
+        searcher.updateQuery(searchRequest(testFileRoot, "zipped").includingArchives());
+
+        verify(mockResults).setValue(refEq(expectedSearchState));
+    }
+
+    @Test
+    public void skipsSymlinksByDefault() throws Exception {
+        createSymbolicLink(new File(testFileRoot, "linkToDir1").toPath(),
+                new File(testFileRoot, "dir1").getAbsoluteFile().toPath());
+        SearchState expectedSearchState = new SearchState();
+        expectedSearchState.addResult(file2.getAbsolutePath());
+        expectedSearchState.setFinished();
+
+        searcher.updateQuery(searchRequest(testFileRoot, "aSecondOne"));
+
+        verify(mockResults).setValue(refEq(expectedSearchState));
+    }
+
+    @Test
+    public void doesNotSearchExcludedDirectories() throws Exception {
+        SearchState expectedSearchState = new SearchState();
+        expectedSearchState.addResult(file4.getAbsolutePath());
+        expectedSearchState.addResult(file3.getAbsolutePath());
+        expectedSearchState.setFinished();
+
+        searcher.updateQuery(searchRequest(testFileRoot, "file")
+                .prunedBy(PruneRules.none().excluding("dir1")));
+
+        verify(mockResults).setValue(refEq(expectedSearchState));
+    }
+
+    @Test
+    public void finishesEarlyWhenOutOfResultBudget() throws Exception {
+        SearchState expectedSearchState = new SearchState();
+        expectedSearchState.addResult(file4.getAbsolutePath());
+        expectedSearchState.setPartial();
+        expectedSearchState.setFinished();
+
+        searcher.updateQuery(searchRequest(testFileRoot, "file")
+                .prunedBy(PruneRules.none().withResultBudget(1)));
+
+        verify(mockResults).setValue(refEq(expectedSearchState));
+    }
+
+    @Test
+    public void searchesAgainIfLastSearchRanOutOfBudget() throws Exception {
+        PruneRules rules = PruneRules.none().withResultBudget(1);
+        InOrder inOrder = inOrder(mockResults);
+        searcher.updateQuery(searchRequest(testFileRoot, "file").prunedBy(rules));
+        inOrder.verify(mockResults, atLeastOnce()).setValue(any(SearchState.class));
+
+        // Not among the truncated results of the last search
+        searcher.updateQuery(searchRequest(testFileRoot, "aFile").prunedBy(rules));
+
+        inOrder.verify(mockResults, atLeastOnce()).setValue(argThat(state -> state.isFinished()
+                && state.results().contains(file3.getAbsolutePath())));
+    }
+
+    @Test
+    public void rankedFindsSubsequenceMatches() throws Exception {
+        SearchState expectedSearchState = new SearchState();
+        expectedSearchState.addResult(file3.getAbsolutePath());
+        expectedSearchState.setFinished();
+
+        searcher.updateQuery(rankedSearchRequest(testFileRoot, "afle"));
+
+        verify(mockResults).setValue(refEq(expectedSearchState));
+    }
+
+    @Test
+    public void rankedOrdersBestFirst() throws Exception {
+        SearchState expectedSearchState = new SearchState();
+        expectedSearchState.addResult(file1.getAbsolutePath());
+        expectedSearchState.addResult(file3.getAbsolutePath());
+        expectedSearchState.addResult(file4.getAbsolutePath());
+        expectedSearchState.setFinished();
+
+        searcher.updateQuery(rankedSearchRequest(testFileRoot, "file"));
+
+        verify(mockResults).setValue(refEq(expectedSearchState));
+    }
+
+    @Test
+    public void rankedKeepsOnlyBestResults() throws Exception {
+        SearchState expectedSearchState = new SearchState();
+        expectedSearchState.addResult(file1.getAbsolutePath());
+        expectedSearchState.setFinished();
+
+        searcher.updateQuery(rankedSearchRequest(testFileRoot, "file", 1));
+
+        verify(mockResults).setValue(refEq(expectedSearchState));
+    }
+
+    @Test
+    public void contentFindsMatchingLine() throws Exception {
+        write(file1, "first line\nsecond Line with Needle\nthird line\n");
+        write(file3, "nothing to see here\n");
+        SearchState expectedSearchState = new SearchState();
+        expectedSearchState.addContentMatch(
+                new ContentMatch(file1.getAbsolutePath(), 2, "second Line with Needle"));
+        expectedSearchState.setFinished();
+
+        searcher.updateQuery(contentSearchRequest(testFileRoot, "needle", null));
+
+        verify(mockResults).setValue(refEq(expectedSearchState));
+    }
+
+    @Test
+    public void contentSkipsBinaryFiles() throws Exception {
+        write(file1, "needle\u0000\u0000");
+        SearchState expectedSearchState = new SearchState();
+        expectedSearchState.setFinished();
+
+        searcher.updateQuery(contentSearchRequest(testFileRoot, "needle", null));
+
+        verify(mockResults).setValue(refEq(expectedSearchState));
+    }
+
+    @Test(timeout = 10000)
+    public void contentSkipsSpecialFiles() throws Exception {
+        File fifo = new File(testFileRoot, "needle.fifo");
+        assumeTrue(new ProcessBuilder("mkfifo", fifo.getPath()).start().waitFor() == 0);
+        SearchState expectedSearchState = new SearchState();
+        expectedSearchState.setFinished();
+
+        // Reading a pipe nobody writes to would never return
+        searcher.updateQuery(contentSearchRequest(testFileRoot, "needle", null));
+
+        verify(mockResults).setValue(refEq(expectedSearchState));
+    }
+
+    private void write(File file, String contents) throws IOException {
+        try (Writer writer = new FileWriter(file)) {
+            writer.write(contents);
+        }
+    }
+
     private void deleteRecursive(File f) throws IOException {
         if (f.isDirectory()) {
             for (File c : f.listFiles())
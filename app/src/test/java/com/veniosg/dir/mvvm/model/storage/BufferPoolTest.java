@@ -0,0 +1,48 @@
+package com.veniosg.dir.mvvm.model.storage;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class BufferPoolTest {
+    private final BufferPool pool = new BufferPool(1);
+
+    @Test
+    public void reusesGivenArrays() {
+        byte[] array = pool.takeArray(16);
+        pool.giveArray(array);
+
+        assertSame(array, pool.takeArray(16));
+        assertEquals(32, pool.takeArray(32).length);
+    }
+
+    @Test
+    public void keepsOnlyUpToLimit() {
+        byte[] first = pool.takeArray(16);
+        byte[] second = pool.takeArray(16);
+        pool.giveArray(first);
+        pool.giveArray(second);
+
+        assertSame(first, pool.takeArray(16));
+        assertNotSame(second, pool.takeArray(16));
+    }
+
+    @Test
+    public void directBuffersComeBackCleared() {
+        ByteBuffer buffer = pool.takeDirect(16);
+        buffer.put(new byte[10]).flip();
+        pool.giveDirect(buffer);
+
+        ByteBuffer taken = pool.takeDirect(16);
+
+        assertSame(buffer, taken);
+        assertTrue(taken.isDirect());
+        assertEquals(0, taken.position());
+        assertEquals(16, taken.limit());
+    }
+}
@@ -0,0 +1,74 @@
+package com.veniosg.dir.mvvm.model.storage;
+
+import org.junit.Test;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class IoArbiterTest {
+    private static final long MB = 1024 * 1024;
+
+    private final FakeClock clock = new FakeClock();
+    private final IoArbiter arbiter = new IoArbiter(clock);
+
+    @Test
+    public void doesNotHoldBackWhenIdleAndUncapped() throws Exception {
+        arbiter.acquire(100 * MB);
+
+        assertEquals(0, clock.slept);
+        assertEquals(Long.MAX_VALUE, arbiter.chunkLimit());
+    }
+
+    @Test
+    public void yieldsToForegroundWork() throws Exception {
+        arbiter.enterForeground();
+
+        arbiter.acquire(4 * MB);
+
+        assertEquals(SECONDS.toNanos(2), clock.slept, MILLISECONDS.toNanos(1));
+        assertTrue(arbiter.chunkLimit() < 4 * MB);
+    }
+
+    @Test
+    public void keepsYieldingForAWhileAfterForegroundWork() throws Exception {
+        arbiter.enterForeground();
+        arbiter.exitForeground();
+
+        arbiter.acquire(MB);
+        long sleptRightAfter = clock.slept;
+        clock.now += SECONDS.toNanos(1);
+        arbiter.acquire(MB);
+
+        assertTrue(sleptRightAfter > 0);
+        assertEquals(sleptRightAfter, clock.slept);
+    }
+
+    @Test
+    public void capsBackgroundBandwidth() throws Exception {
+        arbiter.setBandwidthCap(MB);
+
+        for (int i = 0; i < 4; i++) {
+            arbiter.acquire(MB);
+        }
+
+        assertEquals(SECONDS.toNanos(4), clock.slept, MILLISECONDS.toNanos(1));
+    }
+
+    private static class FakeClock extends IoArbiter.Clock {
+        long now = SECONDS.toNanos(100);
+        long slept = 0;
+
+        @Override
+        long nanoTime() {
+            return now;
+        }
+
+        @Override
+        void sleep(long nanos) {
+            now += nanos;
+            slept += nanos;
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.veniosg.dir.mvvm.model.storage;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class LongHashSetTest {
+    @Test
+    public void addsOnlyOnce() {
+        LongHashSet set = new LongHashSet();
+
+        assertTrue(set.add(42));
+        assertFalse(set.add(42));
+        assertEquals(1, set.size());
+    }
+
+    @Test
+    public void holdsZero() {
+        LongHashSet set = new LongHashSet();
+
+        assertFalse(set.contains(0));
+        assertTrue(set.add(0));
+        assertTrue(set.contains(0));
+        assertFalse(set.add(0));
+    }
+
+    @Test
+    public void keepsEverythingWhenGrowing() {
+        LongHashSet set = new LongHashSet();
+        for (long i = 1; i <= 10000; i++) {
+            set.add(i);
+        }
+
+        assertEquals(10000, set.size());
+        for (long i = 1; i <= 10000; i++) {
+            assertTrue(set.contains(i));
+        }
+        assertFalse(set.contains(10001));
+        assertFalse(set.contains(-1));
+    }
+}
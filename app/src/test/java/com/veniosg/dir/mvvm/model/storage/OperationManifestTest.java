@@ -0,0 +1,123 @@
+package com.veniosg.dir.mvvm.model.storage;
+
+import android.support.annotation.NonNull;
+
+import com.veniosg.dir.mvvm.model.FileHolder;
+import com.veniosg.dir.mvvm.model.storage.OperationManifest.Entry;
+import com.veniosg.dir.mvvm.model.storage.OperationManifest.Item;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+import static com.veniosg.dir.mvvm.model.storage.TreeWalker.treeWalker;
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class OperationManifestTest {
+    private File root;
+    private final TreeWalker walker = treeWalker(new JavaFileAttributeReader());
+
+    @SuppressWarnings("ResultOfMethodCallIgnored")
+    @Before
+    public void setUp() throws Exception {
+        root = new File("manifestRoot");
+        new File(root, "a/aa").mkdirs();
+        new File(root, "b").mkdirs();
+        write(new File(root, "a/file1"), 10);
+        write(new File(root, "b/file2"), 20);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        walker.walk(root, new TreeWalker.Visitor() {
+            @Override
+            public void visitFile(@NonNull TreeWalker.Entry file) {
+                file.getFile().delete();
+            }
+
+            @Override
+            public void postVisitDirectory(@NonNull TreeWalker.Entry directory) {
+                directory.getFile().delete();
+            }
+        });
+    }
+
+    @Test
+    public void totalsFilesOfAllItems() {
+        OperationManifest manifest = OperationManifest.manifestOf(
+                asList(holderOf(new File(root, "a")), holderOf(new File(root, "b/file2"))), walker);
+
+        assertEquals(2, manifest.getItems().size());
+        assertEquals(2, manifest.getFileCount());
+        assertEquals(30, manifest.getSize());
+    }
+
+    @Test
+    public void listsDirectoriesBeforeTheirContents() {
+        Item item = OperationManifest.manifestOf(asList(holderOf(root)), walker).getItems().get(0);
+
+        List<Entry> entries = item.getEntries();
+        assertEquals(6, entries.size());
+        assertEquals("", entries.get(0).getRelativePath());
+        for (int i = 1; i < entries.size(); i++) {
+            String path = entries.get(i).getRelativePath();
+            String parent = path.contains("/") ? path.substring(0, path.lastIndexOf('/')) : "";
+            assertTrue(indexOf(entries, parent) < i);
+        }
+    }
+
+    @Test
+    public void countsChildrenOfDirectories() {
+        Item item = OperationManifest.manifestOf(asList(holderOf(root)), walker).getItems().get(0);
+
+        List<Entry> entries = item.getEntries();
+        assertEquals(2, entries.get(indexOf(entries, "a")).getChildCount());
+        assertEquals(0, entries.get(indexOf(entries, "a/aa")).getChildCount());
+        assertEquals(-1, entries.get(indexOf(entries, "a/file1")).getChildCount());
+    }
+
+    @Test
+    public void relocatesPaths() {
+        Item item = OperationManifest.manifestOf(asList(holderOf(new File(root, "b"))), walker)
+                .getItems().get(0);
+
+        List<String> paths = item.getPathsUnder(new File("elsewhere"));
+
+        assertEquals(asList(new File("elsewhere").getAbsolutePath(),
+                new File("elsewhere/file2").getAbsolutePath()), paths);
+    }
+
+    @Test
+    public void missingItemIsNotReadable() {
+        Item item = OperationManifest.manifestOf(asList(holderOf(new File(root, "missing"))), walker)
+                .getItems().get(0);
+
+        assertFalse(item.isReadable());
+        assertTrue(item.getEntries().isEmpty());
+    }
+
+    private static int indexOf(List<Entry> entries, String relativePath) {
+        for (int i = 0; i < entries.size(); i++) {
+            if (entries.get(i).getRelativePath().equals(relativePath)) return i;
+        }
+        return -1;
+    }
+
+    private static FileHolder holderOf(File file) {
+        return new FileHolder(file, "", null);
+    }
+
+    private static void write(File file, int length) throws IOException {
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(new byte[length]);
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package com.veniosg.dir.mvvm.model.storage;
+
+import android.support.annotation.NonNull;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static com.veniosg.dir.mvvm.model.storage.TreeWalker.treeWalker;
+import static java.nio.file.Files.createSymbolicLink;
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TreeWalkerTest {
+    private File root;
+    private final JavaFileAttributeReader attributeReader = new JavaFileAttributeReader();
+
+    @SuppressWarnings("ResultOfMethodCallIgnored")
+    @Before
+    public void setUp() throws Exception {
+        root = new File("walkRoot");
+        new File(root, "a/aa").mkdirs();
+        new File(root, "b").mkdirs();
+        new File(root, "a/file1").createNewFile();
+        new File(root, "a/aa/file2").createNewFile();
+        new File(root, "b/file3").createNewFile();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        treeWalker(attributeReader).walk(root, new TreeWalker.Visitor() {
+            @Override
+            public void visitFile(@NonNull TreeWalker.Entry file) {
+                file.getFile().delete();
+            }
+
+            @Override
+            public void postVisitDirectory(@NonNull TreeWalker.Entry directory) {
+                directory.getFile().delete();
+            }
+        });
+    }
+
+    @Test
+    public void visitsDirectoriesBeforeAndAfterTheirChildren() throws Exception {
+        Recorder recorder = new Recorder();
+
+        treeWalker(attributeReader).walk(new File(root, "a"), recorder);
+
+        List<String> events = recorder.events;
+        assertEquals(6, events.size());
+        assertEquals("pre ", events.get(0));
+        assertEquals("post ", events.get(5));
+        assertTrue(events.indexOf("pre aa") < events.indexOf("file aa/file2"));
+        assertTrue(events.indexOf("file aa/file2") < events.indexOf("post aa"));
+    }
+
+    @Test
+    public void visitsLevelByLevelBreadthFirst() throws Exception {
+        Recorder recorder = new Recorder();
+
+        treeWalker(attributeReader).breadthFirst().walk(root, recorder);
+
+        int previousDepth = 0;
+        for (String event : recorder.events) {
+            String path = event.substring(event.indexOf(' ') + 1);
+            int depth = path.isEmpty() ? 0 : path.split("/").length;
+            assertFalse(event + " after a deeper entry", depth < previousDepth);
+            previousDepth = depth;
+        }
+        assertEquals(7, recorder.events.size());
+    }
+
+    @Test
+    public void doesNotEnterPrunedDirectories() throws Exception {
+        Recorder recorder = new Recorder() {
+            @Override
+            public boolean preVisitDirectory(@NonNull TreeWalker.Entry directory) {
+                super.preVisitDirectory(directory);
+                return !directory.getFile().getName().equals("a");
+            }
+        };
+
+        treeWalker(attributeReader).walk(root, recorder);
+
+        assertFalse(recorder.events.contains("file a/file1"));
+        assertFalse(recorder.events.contains("post a"));
+        assertTrue(recorder.events.contains("file b/file3"));
+    }
+
+    @Test
+    public void stopsAtMaxDepth() throws Exception {
+        Recorder recorder = new Recorder();
+
+        treeWalker(attributeReader).maxDepth(1).walk(root, recorder);
+
+        Collections.sort(recorder.events);
+        assertEquals(asList("post ", "pre ", "pre a", "pre b"), recorder.events);
+    }
+
+    @Test
+    public void skipsExcludedEntriesWithoutVisitingThem() throws Exception {
+        Recorder recorder = new Recorder();
+
+        treeWalker(attributeReader)
+                .pruning(PruneRules.none().excluding("a/aa", "file?"))
+                .walk(root, recorder);
+
+        Collections.sort(recorder.events);
+        assertEquals(asList("post ", "post a", "post b", "pre ", "pre a", "pre b"),
+                recorder.events);
+    }
+
+    @SuppressWarnings("ResultOfMethodCallIgnored")
+    @Test
+    public void skipsHiddenDirectories() throws Exception {
+        new File(root, ".hidden").mkdir();
+        new File(root, ".hidden/file4").createNewFile();
+        Recorder recorder = new Recorder();
+
+        treeWalker(attributeReader)
+                .pruning(PruneRules.none().skippingHiddenDirectories())
+                .walk(root, recorder);
+
+        assertFalse(recorder.events.contains("pre .hidden"));
+        assertFalse(recorder.events.contains("file .hidden/file4"));
+        assertTrue(recorder.events.contains("file a/aa/file2"));
+    }
+
+    @Test
+    public void followsSymlinkedRootOnly() throws Exception {
+        File link = new File(root, "link");
+        createSymbolicLink(link.toPath(), new File(root, "a").getAbsoluteFile().toPath());
+        Recorder linkRecorder = new Recorder();
+        Recorder rootRecorder = new Recorder();
+
+        treeWalker(attributeReader).walk(link, linkRecorder);
+        treeWalker(attributeReader).walk(root, rootRecorder);
+
+        assertTrue(linkRecorder.events.contains("file file1"));
+        assertTrue(linkRecorder.events.contains("file aa/file2"));
+        assertTrue(rootRecorder.events.contains("file link"));
+        assertFalse(rootRecorder.events.contains("file link/file1"));
+    }
+
+    @Test
+    public void canWalkSymlinkedRootAsLink() throws Exception {
+        File link = new File(root, "link");
+        createSymbolicLink(link.toPath(), new File(root, "a").getAbsoluteFile().toPath());
+        Recorder recorder = new Recorder();
+
+        treeWalker(attributeReader).followingRoot(false).walk(link, recorder);
+
+        assertEquals(singletonList("file "), recorder.events);
+    }
+
+    @Test
+    public void visitsEverythingInParallel() throws Exception {
+        Recorder recorder = new Recorder();
+
+        treeWalker(attributeReader).breadthFirst().parallelism(4).walk(root, recorder);
+
+        Collections.sort(recorder.events);
+        assertEquals(asList("file a/aa/file2", "file a/file1", "file b/file3",
+                "pre ", "pre a", "pre a/aa", "pre b"), recorder.events);
+    }
+
+    @Test
+    public void walksPastTheQueueLimitDepthFirst() throws Exception {
+        Recorder recorder = new Recorder();
+        Recorder parallelRecorder = new Recorder();
+
+        treeWalker(attributeReader).breadthFirst().maxPendingDirectories(1)
+                .walk(root, recorder);
+        treeWalker(attributeReader).breadthFirst().maxPendingDirectories(1).parallelism(4)
+                .walk(root, parallelRecorder);
+
+        List<String> everything = asList("file a/aa/file2", "file a/file1", "file b/file3",
+                "pre ", "pre a", "pre a/aa", "pre b");
+        Collections.sort(recorder.events);
+        Collections.sort(parallelRecorder.events);
+        assertEquals(everything, recorder.events);
+        assertEquals(everything, parallelRecorder.events);
+    }
+
+    @Test
+    public void reportsCancellation() throws Exception {
+        Recorder recorder = new Recorder();
+
+        boolean completed = treeWalker(attributeReader)
+                .cancellableBy(() -> recorder.events.size() >= 2)
+                .walk(root, recorder);
+
+        assertFalse(completed);
+        assertEquals(2, recorder.events.size());
+    }
+
+    @Test(expected = FileNotFoundException.class)
+    public void failsForMissingRoot() throws Exception {
+        treeWalker(attributeReader).walk(new File(root, "missing"), new Recorder());
+    }
+
+    private static class Recorder extends TreeWalker.Visitor {
+        final List<String> events = Collections.synchronizedList(new ArrayList<>());
+
+        @Override
+        public boolean preVisitDirectory(@NonNull TreeWalker.Entry directory) {
+            events.add("pre " + directory.getRelativePath());
+            return true;
+        }
+
+        @Override
+        public void visitFile(@NonNull TreeWalker.Entry file) {
+            events.add("file " + file.getRelativePath());
+        }
+
+        @Override
+        public void postVisitDirectory(@NonNull TreeWalker.Entry directory) {
+            events.add("post " + directory.getRelativePath());
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.veniosg.dir.mvvm.model.storage.operation;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+public class CopyVerifierTest {
+    private static final byte[] CONTENT = "Some bytes to copy".getBytes();
+
+    private final OperationControl control = mock(OperationControl.class);
+    private File source;
+
+    @Before
+    public void setUp() throws Exception {
+        source = new File("verifierSource");
+        write(source, CONTENT);
+    }
+
+    @SuppressWarnings("ResultOfMethodCallIgnored")
+    @After
+    public void tearDown() {
+        source.delete();
+    }
+
+    @Test
+    public void acceptsIdenticalCopy() throws Exception {
+        MessageDigest digest = CopyVerifier.newDigest();
+        digest.update(CONTENT);
+        String expected = CopyVerifier.toHex(MessageDigest.getInstance("SHA-256").digest(CONTENT));
+
+        String result =
+                CopyVerifier.check(digest, new ByteArrayInputStream(CONTENT), source, control);
+
+        assertEquals(expected, result);
+    }
+
+    @Test(expected = CopyVerifier.MismatchException.class)
+    public void rejectsDifferingCopy() throws Exception {
+        MessageDigest digest = CopyVerifier.newDigest();
+        digest.update(CONTENT);
+        byte[] copy = CONTENT.clone();
+        copy[3] ^= 1;
+
+        CopyVerifier.check(digest, new ByteArrayInputStream(copy), source, control);
+    }
+
+    @SuppressWarnings("ResultOfMethodCallIgnored")
+    @Test
+    public void comparesFilesByteForByte() throws Exception {
+        File same = new File("verifierSame");
+        File different = new File("verifierDifferent");
+        byte[] changed = CONTENT.clone();
+        changed[CONTENT.length - 1] ^= 1;
+        try {
+            write(same, CONTENT);
+            write(different, changed);
+
+            assertTrue(CopyVerifier.sameContents(source, same, control));
+            assertFalse(CopyVerifier.sameContents(source, different, control));
+        } finally {
+            same.delete();
+            different.delete();
+        }
+    }
+
+    @Test
+    public void digestsResumedPrefixAsIfCopied() throws Exception {
+        MessageDigest resumed = CopyVerifier.newDigest();
+        try (FileInputStream in = new FileInputStream(source)) {
+            in.getChannel().position(5);
+            CopyVerifier.update(resumed, in.getChannel(), 5, control);
+            assertEquals(5, in.getChannel().position());
+        }
+        resumed.update(CONTENT, 5, CONTENT.length - 5);
+
+        CopyVerifier.check(resumed, new ByteArrayInputStream(CONTENT), source, control);
+    }
+
+    private static void write(File file, byte[] content) throws IOException {
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(content);
+        }
+    }
+}
@@ -2,23 +2,45 @@ package com.veniosg.dir.mvvm.model.storage.operation;
 
 import com.veniosg.dir.android.ui.toast.ToastDisplayer;
 import com.veniosg.dir.mvvm.model.storage.access.StorageAccessManager;
+import com.veniosg.dir.mvvm.model.storage.operation.OperationScheduler.Job;
 
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InOrder;
 import org.mockito.Mock;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import io.reactivex.subscribers.TestSubscriber;
 
 import static com.veniosg.dir.mvvm.model.storage.operation.FakeStorageAccessManager.aFakeStorageAccessManager;
+import static com.veniosg.dir.mvvm.model.storage.operation.FileOperationRunner.controlOf;
+import static com.veniosg.dir.mvvm.model.storage.operation.FileOperationRunner.queuedJobOf;
+import static com.veniosg.dir.mvvm.model.storage.operation.OperationProgress.STATE_CANCELLED;
+import static com.veniosg.dir.mvvm.model.storage.operation.OperationProgress.STATE_QUEUED;
+import static com.veniosg.dir.mvvm.model.storage.operation.OperationProgress.STATE_RUNNING;
+import static com.veniosg.dir.mvvm.model.storage.operation.OperationProgress.STATE_SUCCEEDED;
+import static com.veniosg.dir.mvvm.model.storage.operation.OperationScheduler.PRIORITY_LOW;
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
 import static org.mockito.MockitoAnnotations.initMocks;
 
 public class FileOperationRunnerTest {
@@ -30,6 +52,8 @@ public class FileOperationRunnerTest {
     @Mock
     private ToastDisplayer mockToastDisplayer;
     @Mock
+    private OperationScheduler mockScheduler;
+    @Mock
     private FileOperation<FakeArguments> mockOperation;
     private FileOperationRunner runner;
     private final FakeStorageAccessManager fakeStorageAccessManager = aFakeStorageAccessManager();
@@ -37,7 +61,7 @@ public class FileOperationRunnerTest {
     @Before
     public void setUp() {
         initMocks(this);
-        runner = new FileOperationRunner(mockStorageAccessManager, mockToastDisplayer);
+        runner = new FileOperationRunner(mockStorageAccessManager, mockToastDisplayer, mockScheduler);
     }
 
     @Test
@@ -148,7 +172,7 @@ public class FileOperationRunnerTest {
 
     @Test
     public void onRequestWriteAccess_callBackWhenDenied() {
-        runner = new FileOperationRunner(fakeStorageAccessManager, mockToastDisplayer);
+        runner = new FileOperationRunner(fakeStorageAccessManager, mockToastDisplayer, mockScheduler);
         givenOperateFails();
         givenOperationNeedsWriteAccess();
         givenNoStorageWriteAccess();
@@ -167,7 +191,7 @@ public class FileOperationRunnerTest {
 
     @Test
     public void onRequestWriteAccess_trySafWhenGranted() {
-        runner = new FileOperationRunner(fakeStorageAccessManager, mockToastDisplayer);
+        runner = new FileOperationRunner(fakeStorageAccessManager, mockToastDisplayer, mockScheduler);
         givenOperateFails();
         givenOperationNeedsWriteAccess();
         givenNoStorageWriteAccess();
@@ -190,7 +214,7 @@ public class FileOperationRunnerTest {
 
     @Test
     public void onRequestWriteAccess_requestsAgainAndToastsOnError() {
-        runner = new FileOperationRunner(fakeStorageAccessManager, mockToastDisplayer);
+        runner = new FileOperationRunner(fakeStorageAccessManager, mockToastDisplayer, mockScheduler);
         givenOperateFails();
         givenOperationNeedsWriteAccess();
         givenNoStorageWriteAccess();
@@ -209,10 +233,127 @@ public class FileOperationRunnerTest {
         inorder.verify(mockOperation).onRequestingAccess();
     }
 
+    @Test
+    public void cancelledFailure_needsToWrite_doesNotRetry() {
+        givenOperateGetsCancelled();
+        givenOperationNeedsWriteAccess();
+
+        whenRunnerRuns();
+
+        verify(mockOperation).onStartOperation(fakeArgs);
+        verify(mockOperation).operate(fakeArgs);
+        verify(mockOperation).onResult(false, fakeArgs);
+        verifyNoMoreInteractions(mockOperation);
+        verifyZeroInteractions(mockStorageAccessManager);
+        verifyZeroInteractions(mockToastDisplayer);
+    }
+
+    @Test
+    public void controlIsFoundOnlyWhileRunning() {
+        final OperationControl[] controlWhileRunning = {null};
+        when(mockOperation.operate(any())).thenAnswer(invocation -> {
+            controlWhileRunning[0] = controlOf(mockOperation.id);
+            return true;
+        });
+
+        whenRunnerRuns();
+
+        assertSame(fakeArgs.getControl(), controlWhileRunning[0]);
+        assertNull(controlOf(mockOperation.id));
+    }
+
+    @Test
+    public void submitted_runsOnSchedulerOnTargetVolume() {
+        givenOperateSucceeds();
+        ArgumentCaptor<Runnable> work = ArgumentCaptor.forClass(Runnable.class);
+
+        runner.submit(mockOperation, fakeArgs, PRIORITY_LOW);
+
+        verify(mockScheduler).submit(eq(PRIORITY_LOW), eq(singletonList(target)), work.capture());
+        verifyZeroInteractions(mockOperation);
+        work.getValue().run();
+        verify(mockOperation).onResult(true, fakeArgs);
+    }
+
+    @Test
+    public void submittedHearsPlaceInQueueUntilStarted() {
+        givenOperateSucceeds();
+        Job job = mock(Job.class);
+        ArgumentCaptor<Runnable> work = ArgumentCaptor.forClass(Runnable.class);
+        ArgumentCaptor<OperationScheduler.Listener> watcher =
+                ArgumentCaptor.forClass(OperationScheduler.Listener.class);
+        when(mockScheduler.submit(eq(PRIORITY_LOW), any(), work.capture())).thenReturn(job);
+        when(mockScheduler.getQueued()).thenReturn(asList(mock(Job.class), job));
+
+        runner.submit(mockOperation, fakeArgs, PRIORITY_LOW);
+
+        verify(mockOperation).onQueued(fakeArgs, 1);
+        assertSame(job, queuedJobOf(mockOperation.id));
+        verify(mockScheduler).addListener(watcher.capture());
+        work.getValue().run();
+        watcher.getValue().onQueueChanged();
+        verify(mockOperation).onQueued(eq(fakeArgs), anyInt());
+        verify(mockScheduler).removeListener(watcher.getValue());
+        assertNull(queuedJobOf(mockOperation.id));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void handleReportsQueuedOperationById() {
+        FileOperation<FakeArguments> operation =
+                mock(FileOperation.class, withSettings().useConstructor());
+        TestSubscriber<OperationProgress> progress = fakeArgs.getHandle().progress().test();
+
+        runner.submit(operation, fakeArgs, PRIORITY_LOW);
+
+        progress.assertValue(queued -> queued.getState() == STATE_QUEUED
+                && queued.getOperationId() == operation.id);
+    }
+
+    @Test
+    public void handleFollowsRunUntilResult() {
+        givenOperateSucceeds();
+        TestSubscriber<OperationProgress> progress = fakeArgs.getHandle().progress().test();
+
+        whenRunnerRuns();
+
+        progress.assertComplete();
+        assertEquals(asList(STATE_RUNNING, STATE_SUCCEEDED), statesOf(progress.values()));
+        fakeArgs.getHandle().result().test().assertValue(true);
+    }
+
+    @Test
+    public void handleReportsCancellation() {
+        givenOperateGetsCancelled();
+        givenOperationNeedsWriteAccess();
+
+        whenRunnerRuns();
+
+        fakeArgs.getHandle().progress().test()
+                .assertValueCount(1)
+                .assertValue(last -> last.getState() == STATE_CANCELLED)
+                .assertComplete();
+    }
+
+    private static List<Integer> statesOf(List<OperationProgress> progress) {
+        List<Integer> states = new ArrayList<>();
+        for (OperationProgress p : progress) {
+            states.add(p.getState());
+        }
+        return states;
+    }
+
     private void givenOperateFails() {
         when(mockOperation.operate(any())).thenReturn(false);
     }
 
+    private void givenOperateGetsCancelled() {
+        when(mockOperation.operate(any())).thenAnswer(invocation -> {
+            fakeArgs.getControl().cancel();
+            return false;
+        });
+    }
+
     private void givenOperateSucceeds() {
         when(mockOperation.operate(any())).thenReturn(true);
     }
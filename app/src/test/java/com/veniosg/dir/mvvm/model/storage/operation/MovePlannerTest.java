@@ -0,0 +1,85 @@
+package com.veniosg.dir.mvvm.model.storage.operation;
+
+import com.veniosg.dir.mvvm.model.storage.FileAttributeReader;
+import com.veniosg.dir.mvvm.model.storage.FileAttributes;
+import com.veniosg.dir.mvvm.model.storage.OperationManifest;
+import com.veniosg.dir.mvvm.model.storage.OperationManifest.Item;
+import com.veniosg.dir.mvvm.model.storage.operation.MovePlanner.Plan;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+
+import static com.veniosg.dir.mvvm.model.storage.operation.MovePlanner.STRATEGY_COPY;
+import static com.veniosg.dir.mvvm.model.storage.operation.MovePlanner.STRATEGY_RENAME;
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class MovePlannerTest {
+    private static final File TARGET = new File("/volume1/target");
+
+    private final FileAttributeReader reader = mock(FileAttributeReader.class);
+    private MovePlanner planner;
+
+    @Before
+    public void setUp() {
+        FileAttributes onTargetDevice = attributesOn(1);
+        when(reader.read(TARGET)).thenReturn(onTargetDevice);
+        planner = new MovePlanner(reader);
+    }
+
+    @Test
+    public void renamesOnSameDeviceAndCopiesAcross() {
+        Item local = item("/volume1/local", 1, 100);
+        Item remote = item("/volume2/remote", 2, 300);
+        Item unreadable = item("/volume3/unreadable", -1, 50);
+
+        Plan plan = planner.plan(manifestOf(local, remote, unreadable), TARGET);
+
+        assertEquals(STRATEGY_RENAME, plan.strategyOf(local));
+        assertEquals(STRATEGY_COPY, plan.strategyOf(remote));
+        assertEquals(STRATEGY_COPY, plan.strategyOf(unreadable));
+        assertEquals(1, plan.getRenameCount());
+        assertEquals(350, plan.getBytesToCopy());
+        assertEquals(100, plan.getLargestItemToRename());
+    }
+
+    @Test
+    public void unreadableTargetIsCopiedTo() {
+        when(reader.read(TARGET)).thenReturn(null);
+        Item local = item("/volume1/local", 1, 100);
+
+        Plan plan = planner.plan(manifestOf(local), TARGET);
+
+        assertEquals(STRATEGY_COPY, plan.strategyOf(local));
+        assertEquals(100, plan.getBytesToCopy());
+    }
+
+    private Item item(String path, long device, long size) {
+        File file = new File(path);
+        if (device >= 0) {
+            FileAttributes attributes = attributesOn(device);
+            when(reader.readLink(file)).thenReturn(attributes);
+        }
+        Item item = mock(Item.class);
+        when(item.getFile()).thenReturn(file);
+        when(item.getSize()).thenReturn(size);
+        when(item.getFileCount()).thenReturn(2);
+        return item;
+    }
+
+    private static OperationManifest manifestOf(Item... items) {
+        OperationManifest manifest = mock(OperationManifest.class);
+        when(manifest.getItems()).thenReturn(asList(items));
+        return manifest;
+    }
+
+    private static FileAttributes attributesOn(long device) {
+        FileAttributes attributes = mock(FileAttributes.class);
+        when(attributes.device()).thenReturn(device);
+        return attributes;
+    }
+}
@@ -0,0 +1,90 @@
+package com.veniosg.dir.mvvm.model.storage.operation;
+
+import org.junit.Test;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.CountDownLatch;
+
+import static com.veniosg.dir.mvvm.model.storage.operation.OperationControl.KEEP_PARTIAL_OUTPUT;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class OperationControlTest {
+    private final OperationControl control = new OperationControl();
+
+    @Test
+    public void checkpointPassesWhileRunning() throws Exception {
+        control.checkpoint();
+    }
+
+    @Test(expected = InterruptedIOException.class)
+    public void checkpointThrowsOnceCancelled() throws Exception {
+        control.cancel();
+
+        control.checkpoint();
+    }
+
+    @Test
+    public void checkpointWaitsUntilResumed() throws Exception {
+        control.pause();
+        CountDownLatch passed = new CountDownLatch(1);
+        Thread worker = new Thread(() -> {
+            try {
+                control.checkpoint();
+                passed.countDown();
+            } catch (InterruptedIOException ignored) {
+            }
+        });
+        worker.start();
+
+        assertFalse(passed.await(100, MILLISECONDS));
+        control.resume();
+        assertTrue(passed.await(5, SECONDS));
+    }
+
+    @Test
+    public void cancellingReleasesPausedCheckpoint() throws Exception {
+        control.pause();
+        CountDownLatch threw = new CountDownLatch(1);
+        Thread worker = new Thread(() -> {
+            try {
+                control.checkpoint();
+            } catch (InterruptedIOException e) {
+                threw.countDown();
+            }
+        });
+        worker.start();
+
+        control.cancel();
+
+        assertTrue(threw.await(5, SECONDS));
+    }
+
+    @Test
+    public void notifiesOnlyActualChanges() {
+        final int[] changes = {0};
+        control.listenedBy(paused -> changes[0]++);
+
+        control.pause();
+        control.pause();
+        control.resume();
+        control.cancel();
+        control.pause();
+
+        assertEquals(2, changes[0]);
+    }
+
+    @Test
+    public void followsCancelPolicy() {
+        assertFalse(control.deletesPartialOutput());
+        assertFalse(control.keepsPartialOutput());
+
+        control.cancel(KEEP_PARTIAL_OUTPUT);
+
+        assertFalse(control.deletesPartialOutput());
+        assertTrue(control.keepsPartialOutput());
+    }
+}
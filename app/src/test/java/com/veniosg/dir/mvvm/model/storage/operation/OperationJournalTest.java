@@ -0,0 +1,116 @@
+package com.veniosg.dir.mvvm.model.storage.operation;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class OperationJournalTest {
+    private File journalFile;
+    private File source;
+    private File destination;
+
+    @Before
+    public void setUp() throws Exception {
+        journalFile = new File("journalTest");
+        source = new File("journalSource");
+        destination = new File("journalDestination");
+        write(source, 100);
+        write(destination, 50);
+    }
+
+    @SuppressWarnings("ResultOfMethodCallIgnored")
+    @After
+    public void tearDown() throws Exception {
+        journalFile.delete();
+        source.delete();
+        destination.delete();
+    }
+
+    @Test
+    public void newJournalWasNotInterrupted() {
+        OperationJournal journal = new OperationJournal(journalFile);
+
+        assertFalse(journal.wasInterrupted());
+        assertFalse(journal.isDone(source));
+        assertNull(journal.destinationOf(source));
+    }
+
+    @Test
+    public void reopenedJournalRemembersProgress() {
+        OperationJournal journal = new OperationJournal(journalFile);
+        journal.recordDestination(source, new File("a\tb\nc\\d"));
+        journal.markDone(source);
+        journal.checkpoint(source, destination, 40);
+        journal.recordDigest(destination, "00ff");
+
+        OperationJournal reopened = new OperationJournal(journalFile);
+
+        assertTrue(reopened.wasInterrupted());
+        assertTrue(reopened.isDone(source));
+        assertEquals("00ff", reopened.recordedDigestOf(destination));
+        assertEquals(new File("a\tb\nc\\d").getAbsoluteFile(), reopened.destinationOf(source));
+        assertEquals(40, reopened.resumeOffset(source, destination));
+    }
+
+    @Test
+    public void ignoresLineCutShort() throws Exception {
+        OperationJournal journal = new OperationJournal(journalFile);
+        journal.markDone(source);
+        journal.discard();
+        try (FileOutputStream out = new FileOutputStream(journalFile)) {
+            out.write(("D\t" + source.getAbsolutePath()).getBytes("UTF-8"));
+        }
+
+        OperationJournal reopened = new OperationJournal(journalFile);
+
+        assertTrue(reopened.wasInterrupted());
+        assertFalse(reopened.isDone(source));
+    }
+
+    @Test
+    public void doesNotResumeFromChangedSource() throws Exception {
+        OperationJournal journal = new OperationJournal(journalFile);
+        journal.checkpoint(source, destination, 40);
+        write(source, 200);
+
+        OperationJournal reopened = new OperationJournal(journalFile);
+
+        assertEquals(0, reopened.resumeOffset(source, destination));
+    }
+
+    @Test
+    public void doesNotResumeBeyondDestination() {
+        OperationJournal journal = new OperationJournal(journalFile);
+        journal.checkpoint(source, destination, 80);
+
+        OperationJournal reopened = new OperationJournal(journalFile);
+
+        assertEquals(0, reopened.resumeOffset(source, destination));
+    }
+
+    @Test
+    public void discardForgetsEverything() {
+        OperationJournal journal = new OperationJournal(journalFile);
+        journal.markDone(source);
+
+        journal.discard();
+
+        assertFalse(journalFile.exists());
+        assertFalse(new OperationJournal(journalFile).isDone(source));
+    }
+
+    private static void write(File file, int length) throws IOException {
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(new byte[length]);
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.veniosg.dir.mvvm.model.storage.operation;
+
+import com.veniosg.dir.mvvm.model.storage.FileAttributeReader;
+import com.veniosg.dir.mvvm.model.storage.FileAttributes;
+import com.veniosg.dir.mvvm.model.storage.operation.OperationScheduler.Job;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static com.veniosg.dir.mvvm.model.storage.operation.OperationScheduler.PRIORITY_HIGH;
+import static com.veniosg.dir.mvvm.model.storage.operation.OperationScheduler.PRIORITY_LOW;
+import static com.veniosg.dir.mvvm.model.storage.operation.OperationScheduler.PRIORITY_NORMAL;
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class OperationSchedulerTest {
+    private static final File ON_VOLUME_1 = new File("/volume1/file");
+    private static final File ON_VOLUME_2 = new File("/volume2/file");
+    private static final File NOT_YET_ON_VOLUME_2 = new File("/volume2/new/file");
+
+    private final List<Runnable> started = new ArrayList<>();
+    private final List<String> finished = new ArrayList<>();
+    private FileAttributeReader reader;
+    private OperationScheduler scheduler;
+
+    @Before
+    public void setUp() {
+        reader = mock(FileAttributeReader.class);
+        givenDevice(reader, ON_VOLUME_1, 1);
+        givenDevice(reader, ON_VOLUME_2, 2);
+        givenDevice(reader, ON_VOLUME_2.getParentFile(), 2);
+        Executor executor = started::add;
+        scheduler = new OperationScheduler(executor, Runnable::run, reader, 1);
+    }
+
+    @Test
+    public void jobsOnDifferentVolumesRunTogether() {
+        scheduler.submit(PRIORITY_LOW, singletonList(ON_VOLUME_1), job("archive"));
+        scheduler.submit(PRIORITY_NORMAL, asList(ON_VOLUME_2, NOT_YET_ON_VOLUME_2), job("copy"));
+
+        assertEquals(2, started.size());
+    }
+
+    @Test
+    public void jobsOnBusyVolumeWait() {
+        scheduler.submit(PRIORITY_NORMAL, singletonList(ON_VOLUME_1), job("first"));
+        scheduler.submit(PRIORITY_NORMAL, asList(ON_VOLUME_1, ON_VOLUME_2), job("second"));
+
+        assertEquals(1, started.size());
+        runStarted(0);
+        assertEquals(2, started.size());
+        runStarted(1);
+        assertEquals(asList("first", "second"), finished);
+    }
+
+    @Test
+    public void higherPriorityStartsFirst() {
+        scheduler.submit(PRIORITY_NORMAL, singletonList(ON_VOLUME_1), job("running"));
+        scheduler.submit(PRIORITY_LOW, singletonList(ON_VOLUME_1), job("low"));
+        scheduler.submit(PRIORITY_NORMAL, singletonList(ON_VOLUME_1), job("normal"));
+
+        runStarted(0);
+        runStarted(1);
+
+        assertEquals(asList("running", "normal"), finished);
+    }
+
+    @Test
+    public void highPriorityMayGoOverLimit() {
+        scheduler.submit(PRIORITY_LOW, singletonList(ON_VOLUME_1), job("archive"));
+        scheduler.submit(PRIORITY_HIGH, singletonList(ON_VOLUME_1), job("quick"));
+
+        assertEquals(2, started.size());
+    }
+
+    @Test
+    public void queuedJobsCanBeReprioritised() {
+        scheduler.submit(PRIORITY_NORMAL, singletonList(ON_VOLUME_1), job("running"));
+        Job low = scheduler.submit(PRIORITY_LOW, singletonList(ON_VOLUME_1), job("low"));
+        Job normal = scheduler.submit(PRIORITY_NORMAL, singletonList(ON_VOLUME_1), job("normal"));
+        assertEquals(asList(normal, low), scheduler.getQueued());
+
+        assertTrue(scheduler.setPriority(low, PRIORITY_HIGH));
+
+        assertEquals(singletonList(normal), scheduler.getQueued());
+        assertEquals(2, started.size());
+        runStarted(1);
+        assertEquals(singletonList("low"), finished);
+    }
+
+    @Test
+    public void startedJobsCannotBeReprioritised() {
+        Job running = scheduler.submit(PRIORITY_NORMAL, singletonList(ON_VOLUME_1), job("running"));
+
+        assertFalse(scheduler.setPriority(running, PRIORITY_HIGH));
+        assertEquals(PRIORITY_NORMAL, running.getPriority());
+    }
+
+    @Test
+    public void readsVolumesOffSubmittingThread() {
+        List<Runnable> resolving = new ArrayList<>();
+        scheduler = new OperationScheduler(started::add, resolving::add, reader, 1);
+
+        scheduler.submit(PRIORITY_NORMAL, singletonList(ON_VOLUME_1), job("copy"));
+
+        verify(reader, never()).read(any(File.class));
+        assertEquals(0, started.size());
+        resolving.get(0).run();
+        assertEquals(1, started.size());
+    }
+
+    private Runnable job(String name) {
+        return () -> finished.add(name);
+    }
+
+    private void runStarted(int index) {
+        started.get(index).run();
+    }
+
+    private static void givenDevice(FileAttributeReader reader, File file, long device) {
+        FileAttributes attributes = mock(FileAttributes.class);
+        when(attributes.device()).thenReturn(device);
+        when(reader.read(file.getAbsoluteFile())).thenReturn(attributes);
+    }
+}
@@ -0,0 +1,135 @@
+package com.veniosg.dir.mvvm.model.storage.operation;
+
+import android.support.annotation.NonNull;
+
+import com.veniosg.dir.mvvm.model.storage.JavaFileAttributeReader;
+import com.veniosg.dir.mvvm.model.storage.OperationManifest.Entry;
+import com.veniosg.dir.mvvm.model.storage.OperationManifest.Item;
+import com.veniosg.dir.mvvm.model.storage.TreeWalker;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+import static com.veniosg.dir.mvvm.model.storage.TreeWalker.treeWalker;
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class SyncOperationTest {
+    private static final long EARLIER = 1500000000000L;
+    private static final long LATER = EARLIER + 60 * 1000;
+
+    private final OperationControl control = mock(OperationControl.class);
+    private final JavaFileAttributeReader attributeReader = new JavaFileAttributeReader();
+    private File root;
+    private File source;
+    private File target;
+
+    @SuppressWarnings("ResultOfMethodCallIgnored")
+    @Before
+    public void setUp() {
+        root = new File("syncRoot");
+        source = new File(root, "source/photos");
+        target = new File(root, "target");
+        source.mkdirs();
+        target.mkdirs();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        treeWalker(attributeReader).walk(root, new TreeWalker.Visitor() {
+            @SuppressWarnings("ResultOfMethodCallIgnored")
+            @Override
+            public void visitFile(@NonNull TreeWalker.Entry file) {
+                file.getFile().delete();
+            }
+
+            @SuppressWarnings("ResultOfMethodCallIgnored")
+            @Override
+            public void postVisitDirectory(@NonNull TreeWalker.Entry directory) {
+                directory.getFile().delete();
+            }
+        });
+    }
+
+    @Test
+    public void skipsUnchangedFile() throws Exception {
+        File original = write(new File(source, "a.jpg"), "photo", EARLIER);
+        File mirror = write(new File(target, "a.jpg"), "photo", LATER);
+
+        assertTrue(SyncOperation.isUpToDate(original, mirror, false, control));
+    }
+
+    @Test
+    public void replacesChangedFileUnderItsOwnName() throws Exception {
+        File original = write(new File(source, "a.jpg"), "edited", LATER);
+        File mirror = write(new File(target, "a.jpg"), "photo!", EARLIER);
+        File resized = write(new File(source, "b.jpg"), "resized", EARLIER);
+        File resizedMirror = write(new File(target, "b.jpg"), "photo", LATER);
+
+        assertFalse(SyncOperation.isUpToDate(original, mirror, false, control));
+        assertFalse(SyncOperation.isUpToDate(resized, resizedMirror, false, control));
+        assertEquals(new File(target, "photos"), SyncOperation.mirrorOf(source, target));
+    }
+
+    @Test
+    public void comparesContentsWhenAsked() throws Exception {
+        File original = write(new File(source, "a.jpg"), "edited", EARLIER);
+        File mirror = write(new File(target, "a.jpg"), "photo!", LATER);
+
+        assertFalse(SyncOperation.isUpToDate(original, mirror, true, control));
+    }
+
+    @SuppressWarnings("ResultOfMethodCallIgnored")
+    @Test
+    public void findsOnlyExtras() throws Exception {
+        File mirror = new File(target, "photos");
+        new File(mirror, "kept").mkdirs();
+        new File(mirror, "removed").mkdirs();
+        write(new File(mirror, "a.jpg"), "photo", LATER);
+        write(new File(mirror, "kept/b.jpg"), "photo", LATER);
+        write(new File(mirror, "kept/c.jpg"), "photo", LATER);
+        write(new File(mirror, "removed/d.jpg"), "photo", LATER);
+        Item item = itemWithPaths("", "a.jpg", "kept", "kept/b.jpg");
+        List<File> extras = new ArrayList<>();
+
+        boolean walkedAll =
+                SyncOperation.findExtras(item, mirror, treeWalker(attributeReader), extras);
+
+        assertTrue(walkedAll);
+        assertEquals(new HashSet<>(asList(new File(mirror, "kept/c.jpg"),
+                new File(mirror, "removed"))), new HashSet<>(extras));
+    }
+
+    private static Item itemWithPaths(String... relativePaths) {
+        List<Entry> entries = new ArrayList<>();
+        for (String path : relativePaths) {
+            Entry entry = mock(Entry.class);
+            when(entry.getRelativePath()).thenReturn(path);
+            entries.add(entry);
+        }
+        Item item = mock(Item.class);
+        when(item.getEntries()).thenReturn(entries);
+        return item;
+    }
+
+    @SuppressWarnings("ResultOfMethodCallIgnored")
+    private static File write(File file, String content, long lastModified) throws IOException {
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(content.getBytes());
+        }
+        file.setLastModified(lastModified);
+        return file;
+    }
+}
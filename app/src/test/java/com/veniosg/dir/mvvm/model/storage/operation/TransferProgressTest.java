@@ -0,0 +1,99 @@
+package com.veniosg.dir.mvvm.model.storage.operation;
+
+import org.junit.Test;
+
+import java.io.File;
+
+import io.reactivex.subscribers.TestSubscriber;
+
+import static com.veniosg.dir.mvvm.model.storage.operation.OperationProgress.STATE_RUNNING;
+import static com.veniosg.dir.mvvm.model.storage.operation.TransferProgress.UNKNOWN;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TransferProgressTest {
+    private static final long START = 1000;
+
+    @Test
+    public void measuresInBytesWhenTotalIsKnown() {
+        TransferProgress progress = new TransferProgress(1000, 2, START);
+
+        progress.addBytes(250, START);
+        progress.addFile();
+
+        assertEquals(25, snapshotOf(progress).fractionOf(100));
+    }
+
+    @Test
+    public void measuresInFilesWhenTotalBytesAreUnknown() {
+        TransferProgress progress = new TransferProgress(UNKNOWN, 4, START);
+
+        progress.addFile();
+
+        assertEquals(25, snapshotOf(progress).fractionOf(100));
+    }
+
+    @Test
+    public void rateIsUnknownBeforeFirstSample() {
+        TransferProgress progress = new TransferProgress(1000, 1, START);
+
+        progress.addBytes(100, START + 1);
+
+        assertEquals(UNKNOWN, progress.getBytesPerSecond());
+        assertEquals(UNKNOWN, progress.getEtaMillis());
+    }
+
+    @Test
+    public void estimatesFromSteadyRate() {
+        TransferProgress progress = new TransferProgress(10000, 1, START);
+
+        progress.addBytes(1000, START + SECONDS.toNanos(1));
+        progress.addBytes(1000, START + SECONDS.toNanos(2));
+
+        assertEquals(1000, progress.getBytesPerSecond());
+        assertEquals(SECONDS.toMillis(8), progress.getEtaMillis());
+    }
+
+    @Test
+    public void smoothsSuddenChanges() {
+        TransferProgress progress = new TransferProgress(100000, 1, START);
+
+        progress.addBytes(1000, START + SECONDS.toNanos(1));
+        progress.addBytes(10000, START + SECONDS.toNanos(2));
+
+        long rate = progress.getBytesPerSecond();
+        assertTrue(rate > 1000 && rate < 10000);
+    }
+
+    @Test
+    public void reportsOnlySamplesToHandle() {
+        OperationHandle handle = new OperationHandle();
+        TestSubscriber<OperationProgress> reported = handle.progress().test();
+        TransferProgress progress = new TransferProgress(10000, 1, START).trackedBy(handle);
+
+        progress.addBytes(100, START + 1);
+        progress.addBytes(100, START + 2);
+        progress.addBytes(100, START + SECONDS.toNanos(1));
+
+        // Once when tracking starts, once for the sample
+        reported.assertValueCount(2);
+    }
+
+    @Test
+    public void reportsEveryFileStarted() {
+        OperationHandle handle = new OperationHandle();
+        TestSubscriber<OperationProgress> reported = handle.progress().test();
+        TransferProgress progress = new TransferProgress(10000, 2, START).trackedBy(handle);
+        File file = new File("file");
+
+        progress.startFile(file);
+
+        reported.assertValueCount(2);
+        assertEquals(file, reported.values().get(1).getCurrentFile());
+    }
+
+    private static OperationProgress snapshotOf(TransferProgress progress) {
+        return new OperationProgress(1, STATE_RUNNING, progress);
+    }
+}
@@ -0,0 +1,85 @@
+package com.veniosg.dir.mvvm.model.storage.operation.ui;
+
+import com.veniosg.dir.mvvm.model.storage.operation.OperationProgress;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+
+import java.io.File;
+
+import io.reactivex.schedulers.TestScheduler;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class ThrottlingOperationStatusDisplayerTest {
+    private static final int INTERVAL = 250;
+    private static final int ID = 1;
+    private static final File DEST = new File("/dest");
+
+    private final TestScheduler scheduler = new TestScheduler();
+    private final OperationProgress progress = mock(OperationProgress.class);
+    private OperationStatusDisplayer target;
+    private ThrottlingOperationStatusDisplayer displayer;
+
+    @Before
+    public void setUp() {
+        target = mock(OperationStatusDisplayer.class);
+        displayer = new ThrottlingOperationStatusDisplayer(target, scheduler, INTERVAL);
+    }
+
+    @Test
+    public void showsFirstProgressImmediately() {
+        displayer.showCopyProgress(ID, DEST, progress);
+
+        verify(target).showCopyProgress(ID, DEST, progress);
+    }
+
+    @Test
+    public void coalescesProgressWithinInterval() {
+        for (int i = 0; i < 10; i++) {
+            displayer.showCopyProgress(ID, DEST, progress);
+        }
+        scheduler.advanceTimeBy(INTERVAL, MILLISECONDS);
+
+        verify(target, times(2)).showCopyProgress(ID, DEST, progress);
+    }
+
+    @Test
+    public void deliversLatestProgressAfterInterval() {
+        displayer.showCopyProgress(ID, DEST, progress);
+        displayer.showCopyProgress(ID, DEST, progress);
+        verify(target, times(1)).showCopyProgress(ID, DEST, progress);
+
+        scheduler.advanceTimeBy(INTERVAL, MILLISECONDS);
+
+        verify(target, times(2)).showCopyProgress(ID, DEST, progress);
+    }
+
+    @Test
+    public void throttlesOperationsSeparately() {
+        displayer.showCopyProgress(ID, DEST, progress);
+        displayer.showMoveProgress(ID + 1, DEST, progress);
+
+        verify(target).showCopyProgress(ID, DEST, progress);
+        verify(target).showMoveProgress(ID + 1, DEST, progress);
+    }
+
+    @Test
+    public void resultDropsPendingProgress() {
+        displayer.showCopyProgress(ID, DEST, progress);
+        displayer.showCopyProgress(ID, DEST, progress);
+        displayer.showCopySuccess(ID, DEST);
+        scheduler.advanceTimeBy(INTERVAL, MILLISECONDS);
+
+        InOrder inOrder = inOrder(target);
+        inOrder.verify(target).showCopyProgress(ID, DEST, progress);
+        inOrder.verify(target).showCopySuccess(ID, DEST);
+        inOrder.verify(target, never()).showCopyProgress(ID, DEST, progress);
+    }
+}
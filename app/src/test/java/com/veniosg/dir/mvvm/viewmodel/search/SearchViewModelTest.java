@@ -5,6 +5,7 @@ import android.arch.lifecycle.MutableLiveData;
 
 import com.veniosg.dir.mvvm.model.search.SearchState;
 import com.veniosg.dir.mvvm.model.search.Searcher;
+import com.veniosg.dir.mvvm.model.search.Searcher.SearchRequest;
 import com.veniosg.dir.mvvm.viewmodel.search.SearchViewModel;
 
 import org.junit.Before;
@@ -13,11 +14,15 @@ import org.mockito.Mock;
 
 import java.io.File;
 
+import static com.veniosg.dir.mvvm.model.search.Searcher.SearchRequest.contentSearchRequest;
 import static com.veniosg.dir.mvvm.model.search.Searcher.SearchRequest.searchRequest;
+import static com.veniosg.dir.mvvm.viewmodel.search.SearchViewModel.MATCH_CONTENTS;
 import static junit.framework.Assert.assertEquals;
 import static junit.framework.Assert.assertFalse;
 import static junit.framework.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.refEq;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.mockito.MockitoAnnotations.initMocks;
@@ -39,7 +44,7 @@ public class SearchViewModelTest {
         LiveData<SearchState> searcherLiveResults = new MutableLiveData<>();
         when(mockSearcher.getResults()).thenReturn(searcherLiveResults);
 
-        viewModel.init(searchRoot);
+        viewModel.init(searchRoot, null);
 
         assertEquals(searcherLiveResults, viewModel.getLiveResults());
     }
@@ -54,7 +59,7 @@ public class SearchViewModelTest {
     @Test
     public void updateQueryDelegatesToSearcher() {
         String newQuery = "query2";
-        viewModel.init(searchRoot);
+        viewModel.init(searchRoot, null);
 
         viewModel.updateQuery(newQuery);
 
@@ -64,7 +69,7 @@ public class SearchViewModelTest {
     @Test
     public void onlyStartsOneSearchForSameQuery() {
         String query = "query";
-        viewModel.init(searchRoot);
+        viewModel.init(searchRoot, null);
 
         boolean firstSearchStarted = viewModel.updateQuery(query);
         boolean secondSearchStarted = viewModel.updateQuery(query);
@@ -73,4 +78,26 @@ public class SearchViewModelTest {
         assertFalse(secondSearchStarted);
         verify(mockSearcher).updateQuery(refEq(searchRequest(searchRoot, query)));
     }
+
+    @Test
+    public void changingOptionSearchesAgain() {
+        String query = "query";
+        viewModel.init(searchRoot, null);
+        viewModel.updateQuery(query);
+
+        boolean searchStarted = viewModel.setMatchType(MATCH_CONTENTS);
+
+        assertTrue(searchStarted);
+        verify(mockSearcher).updateQuery(refEq(contentSearchRequest(searchRoot, query, null)));
+    }
+
+    @Test
+    public void changingOptionBeforeQueryDoesNotSearch() {
+        viewModel.init(searchRoot, null);
+
+        boolean searchStarted = viewModel.setIncludingArchives(true);
+
+        assertFalse(searchStarted);
+        verify(mockSearcher, never()).updateQuery(any(SearchRequest.class));
+    }
 }
\ No newline at end of file